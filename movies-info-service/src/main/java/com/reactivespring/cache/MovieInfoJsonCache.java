@@ -0,0 +1,148 @@
+package com.reactivespring.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of the JSON encoded movie infos, written as is to the responses, so that a hit costs
+ * neither a Mongo read nor a serialization, and a revalidation with a matching ETag costs a map lookup.
+ * The bytes come from the same ObjectMapper as the regular responses. Entries are invalidated by {@link com.reactivespring.service.MoviesInfoService} on update and delete.
+ * <p>
+ * A hit moves the entry in the LRU order, so even a read takes a lock : the ids are spread over stripes, each an
+ * LRU of its share of maxEntries behind its own lock, so that concurrent reads of different movies rarely wait.
+ * <p>
+ * The invalidations only reach the cache of the instance which handled the write, so entries also expire after
+ * ttl : that bounds how long the other instances serve an old version. A ttl shorter than the Cache-Control
+ * max-age would not serve anyone fresher, the clients keep the response that long anyway, so it is raised to it.
+ */
+@Component
+public class MovieInfoJsonCache {
+
+    private static final int STRIPES = 16;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+    private final Stripe[] stripes;
+
+    @Autowired
+    public MovieInfoJsonCache(ObjectMapper objectMapper,
+                              @Value("${movieInfo.cache.enabled:true}") boolean enabled,
+                              @Value("${movieInfo.cache.maxEntries:10000}") int maxEntries,
+                              @Value("${movieInfo.cache.ttl:60s}") Duration ttl,
+                              @Value("${movieInfo.cacheControl.maxAge:0s}") Duration cacheControlMaxAge) {
+        this(objectMapper, enabled, maxEntries, STRIPES, ttl.compareTo(cacheControlMaxAge) < 0 ? cacheControlMaxAge : ttl,
+                System::nanoTime);
+    }
+
+    MovieInfoJsonCache(ObjectMapper objectMapper, boolean enabled, int maxEntries, int stripeCount, Duration ttl,
+                       LongSupplier nanoTime) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(Math.max(1, maxEntries / stripeCount));
+        }
+    }
+
+    /**
+     * Returns the cached JSON of the movie info, or loads, encodes and caches it. Completes empty if the loader does.
+     */
+    public Mono<TaggedJson> get(String id, Function<String, Mono<MovieInfo>> loader) {
+        return getJson(id, movieInfoId -> loader.apply(movieInfoId).map(this::toJson));
+    }
+
+    /**
+     * Same as {@link #get(String, Function)}, for a loader which produces the JSON itself.
+     */
+    public Mono<TaggedJson> getJson(String id, Function<String, Mono<byte[]>> jsonLoader) {
+        if (!enabled) {
+            return jsonLoader.apply(id).map(TaggedJson::of);
+        }
+        return Mono.defer(() -> {
+            var stripe = stripe(id);
+            Entry entry;
+            long invalidationsBeforeLoad;
+            synchronized (stripe) {
+                entry = stripe.entries.get(id);
+                if (entry != null && entry.expiresAt - nanoTime.getAsLong() <= 0) {
+                    stripe.entries.remove(id);
+                    entry = null;
+                }
+                invalidationsBeforeLoad = stripe.invalidations;
+            }
+            if (entry != null) {
+                return Mono.just(entry.json);
+            }
+            return jsonLoader.apply(id)
+                    .map(TaggedJson::of)
+                    .doOnNext(loadedJson -> {
+                        synchronized (stripe) {
+                            if (stripe.invalidations == invalidationsBeforeLoad) {
+                                stripe.entries.put(id, new Entry(loadedJson, nanoTime.getAsLong() + ttlNanos));
+                            }
+                        }
+                    });
+        });
+    }
+
+    public void invalidate(String id) {
+        var stripe = stripe(id);
+        synchronized (stripe) {
+            stripe.invalidations++;
+            stripe.entries.remove(id);
+        }
+    }
+
+    private Stripe stripe(String id) {
+        return stripes[(id.hashCode() & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private byte[] toJson(MovieInfo movieInfo) {
+        try {
+            return objectMapper.writeValueAsBytes(movieInfo);
+        } catch (JsonProcessingException ex) {
+            throw Exceptions.propagate(ex);
+        }
+    }
+
+    private static class Entry {
+        private final TaggedJson json;
+        private final long expiresAt;
+
+        private Entry(TaggedJson json, long expiresAt) {
+            this.json = json;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Stripe {
+        private final Map<String, Entry> entries;
+        // bumped on every invalidation of the stripe, so that a load which raced with a write does not cache the old version
+        private long invalidations;
+
+        private Stripe(int maxEntries) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+}
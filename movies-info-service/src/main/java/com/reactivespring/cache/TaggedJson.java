@@ -0,0 +1,46 @@
+package com.reactivespring.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * JSON of a movie info with its strong ETag, a hash of the bytes, computed once for as long as the entry is cached.
+ */
+public final class TaggedJson {
+
+    private final byte[] json;
+    private final String etag;
+
+    private TaggedJson(byte[] json, String etag) {
+        this.json = json;
+        this.etag = etag;
+    }
+
+    public static TaggedJson of(byte[] json) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(json);
+            // 128 bits are plenty to tell two versions of the same resource apart
+            var hash = Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+            return new TaggedJson(json, "\"" + hash + "\"");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public String toString() {
+        return etag + " " + new String(json, StandardCharsets.UTF_8);
+    }
+}
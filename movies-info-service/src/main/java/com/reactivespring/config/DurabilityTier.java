@@ -0,0 +1,31 @@
+package com.reactivespring.config;
+
+import com.mongodb.WriteConcern;
+
+/**
+ * Durability tiers a write can be performed with, from the safest and slowest to the fastest.
+ */
+public enum DurabilityTier {
+    // acknowledged by a majority of the replica set and written to the journal
+    MAJORITY(WriteConcern.MAJORITY.withJournal(true)),
+    // acknowledged by the primary once written to its journal
+    JOURNALED(WriteConcern.JOURNALED),
+    // acknowledged by the primary, in memory only
+    ACKNOWLEDGED(WriteConcern.ACKNOWLEDGED),
+    // fire and forget
+    UNACKNOWLEDGED(WriteConcern.UNACKNOWLEDGED);
+
+    private final WriteConcern writeConcern;
+
+    DurabilityTier(WriteConcern writeConcern) {
+        this.writeConcern = writeConcern;
+    }
+
+    public WriteConcern getWriteConcern() {
+        return writeConcern;
+    }
+
+    public boolean isAtLeastAsDurableAs(DurabilityTier other) {
+        return ordinal() <= other.ordinal();
+    }
+}
@@ -0,0 +1,39 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.Metrics;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * With server.http2.enabled and no SSL, Spring Boot serves h2c next to HTTP/1.1, by prior knowledge or upgrade :
+ * the other services then send their calls as streams multiplexed over a few connections.
+ */
+@Configuration
+public class Http2ServerConfig {
+
+    // TCP connections currently open, whatever their protocol
+    private final AtomicInteger activeConnections = Metrics.gauge("http.server.connections.active", new AtomicInteger());
+    // HTTP/2 streams currently open, one per request in flight over h2c
+    private final AtomicInteger activeStreams = Metrics.gauge("http.server.streams.active", new AtomicInteger());
+
+    @Bean
+    public NettyServerCustomizer http2ServerCustomizer(@Value("${movieInfo.http2.maxConcurrentStreams:100}") long maxConcurrentStreams) {
+        return httpServer -> httpServer
+                .http2Settings(settings -> settings.maxConcurrentStreams(maxConcurrentStreams))
+                .doOnChannelInit((connectionObserver, channel, remoteAddress) -> {
+                    activeConnections.incrementAndGet();
+                    channel.closeFuture().addListener(future -> activeConnections.decrementAndGet());
+                })
+                .doOnConnection(connection -> {
+                    if (connection.channel() instanceof Http2StreamChannel) {
+                        activeStreams.incrementAndGet();
+                        connection.onDispose(activeStreams::decrementAndGet);
+                    }
+                });
+    }
+}
@@ -0,0 +1,25 @@
+package com.reactivespring.config;
+
+import com.reactivespring.filter.RateLimitFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+@Configuration
+@ConditionalOnProperty(name = "rateLimit.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    /**
+     * Ahead of every other filter, the concurrency limit among them, so that the requests of a client over its
+     * limit never take a slot.
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public RateLimitFilter rateLimitFilter(RateLimitProperties rateLimitProperties) {
+        return new RateLimitFilter(rateLimitProperties);
+    }
+}
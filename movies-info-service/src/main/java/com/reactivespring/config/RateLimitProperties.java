@@ -0,0 +1,45 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpMethod;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rateLimit section of application.yml, a list of routes each with its own limit per client.
+ */
+@Data
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // the client id, set by a gateway in front, only read from the requests of the trustedProxies
+    private String clientIdHeader = "X-Client-Id";
+
+    // the addresses of the gateways allowed to set clientIdHeader, the remote address is the client without them
+    private List<String> trustedProxies = new ArrayList<>();
+
+    // clients tracked per route, the new ones beyond it share a bucket until the next sweep
+    private int maxClients = 1_000_000;
+
+    // how often the clients whose bucket is full again are forgotten
+    private Duration sweepInterval = Duration.ofSeconds(10);
+
+    // the first route matching the path and the method of a request applies, no route means no limit
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+
+        private String path;
+        // all of them when empty
+        private List<HttpMethod> methods = new ArrayList<>();
+        private double requestsPerSecond;
+        // requests a client may send at once after being idle
+        private int burst;
+    }
+}
@@ -1,26 +1,39 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.cache.MovieInfoJsonCache;
+import com.reactivespring.cache.TaggedJson;
+import com.reactivespring.config.DurabilityTemplates;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.passthrough.MovieInfoFields;
+import com.reactivespring.passthrough.MovieInfoPassthrough;
+import com.reactivespring.service.MovieInfoEvents;
 import com.reactivespring.service.MoviesInfoService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.NotAcceptableStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import javax.validation.Valid;
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @RequestMapping("/v1")
@@ -28,16 +41,34 @@ import javax.validation.Valid;
 public class MoviesInfoController {
 
     private final MoviesInfoService moviesInfoService;
+    private final MovieInfoJsonCache movieInfoJsonCache;
+    private final MovieInfoPassthrough movieInfoPassthrough;
+    private final MovieInfoEvents movieInfoEvents;
 
-    Sinks.Many<MovieInfo> movieInfoSink = Sinks.many().replay().latest();
+    @Value("${search.maxLimit:50}")
+    private int maxSearchLimit;
 
-    public MoviesInfoController(MoviesInfoService moviesInfoService) {
+    @Value("${movieInfo.cacheControl.maxAge:0s}")
+    private Duration cacheControlMaxAge;
+
+    public MoviesInfoController(MoviesInfoService moviesInfoService, MovieInfoJsonCache movieInfoJsonCache,
+                                MovieInfoPassthrough movieInfoPassthrough, MovieInfoEvents movieInfoEvents) {
         this.moviesInfoService = moviesInfoService;
+        this.movieInfoJsonCache = movieInfoJsonCache;
+        this.movieInfoPassthrough = movieInfoPassthrough;
+        this.movieInfoEvents = movieInfoEvents;
     }
 
+    /**
+     * Only reached with fields= when the client accepts neither JSON nor NDJSON, which the projections are written as.
+     */
     @GetMapping("/movieinfo")
-    public Flux<MovieInfo> getAllMovieInfo(@RequestParam(value = "year", required = false) Integer year) {
+    public Flux<MovieInfo> getAllMovieInfo(@RequestParam(value = "year", required = false) Integer year,
+                                           @RequestParam(value = "fields", required = false) String fields) {
 
+        if (fields != null) {
+            throw new NotAcceptableStatusException(List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON));
+        }
         log.info("year : {} ", year);
         if (year != null) {
             return moviesInfoService.getMovieInfoByYear(year).log();
@@ -45,36 +76,77 @@ public class MoviesInfoController {
         return moviesInfoService.getAllMovieInfo();
     }
 
+    /**
+     * A MovieInfo mapped from a projected document would be written with nulls in place of the missing
+     * fields, so the projected reads always take the passthrough read path, which writes the requested fields only.
+     */
+    @GetMapping(value = "/movieinfo", params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> getAllMovieInfoFields(@RequestParam(value = "year", required = false) Integer year,
+                                                  @RequestParam("fields") String fields,
+                                                  ServerHttpResponse response) {
+        return movieInfoPassthrough.findAllJsonArray(year, MovieInfoFields.parse(fields), response.bufferFactory());
+    }
+
+    @GetMapping(value = "/movieinfo", params = "fields", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> getAllMovieInfoFieldsLines(@RequestParam(value = "year", required = false) Integer year,
+                                                       @RequestParam("fields") String fields,
+                                                       ServerHttpResponse response) {
+        return movieInfoPassthrough.findAllJsonLines(year, MovieInfoFields.parse(fields), response.bufferFactory());
+    }
+
     @GetMapping(value = "/movieinfo/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
     public Flux<MovieInfo> streamMovieInfo() {
-        return movieInfoSink.asFlux();
+        return movieInfoEvents.asFlux();
     }
 
-    @GetMapping("/movieinfo/{id}")
-    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById_approach2(@PathVariable("id") String id) {
+    @GetMapping("/movieinfo/search")
+    public Flux<MovieInfo> searchMovieInfo(@RequestParam("q") String query,
+                                           @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return moviesInfoService.searchMovieInfo(query, Math.max(1, Math.min(limit, maxSearchLimit)));
+    }
 
-        return moviesInfoService.getMovieInfoById(id)
-                .map(movieInfo1 -> ResponseEntity.ok()
-                        .body(movieInfo1))
+    @GetMapping("/movieinfo/{id}")
+    public Mono<ResponseEntity<byte[]>> getMovieInfoById_approach2(@PathVariable("id") String id,
+                                                                   @RequestParam(value = "fields", required = false) String fields) {
+
+        // the cached JSON is written as is, without going through the Jackson encoder
+        Mono<TaggedJson> movieInfoJson;
+        if (fields != null) {
+            // only the full documents are cached
+            movieInfoJson = movieInfoPassthrough.findJsonById(id, MovieInfoFields.parse(fields)).map(TaggedJson::of);
+        } else if (movieInfoPassthrough.isEnabled()) {
+            movieInfoJson = movieInfoJsonCache.getJson(id, movieInfoId -> movieInfoPassthrough.findJsonById(movieInfoId, null));
+        } else {
+            movieInfoJson = movieInfoJsonCache.get(id, moviesInfoService::getMovieInfoById);
+        }
+        // with an ETag set, a GET whose If-None-Match matches gets a 304 and the body is never written
+        return movieInfoJson
+                .map(json -> ResponseEntity.ok()
+                        .eTag(json.getEtag())
+                        .cacheControl(CacheControl.maxAge(cacheControlMaxAge).mustRevalidate())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(json.getJson()))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
                 .log();
     }
 
     @PostMapping("/movieinfo")
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo) {
-        return moviesInfoService.addMovieInfo(movieInfo)
+    public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo,
+                                        @RequestHeader(value = DurabilityTemplates.DURABILITY_HEADER, required = false) String durability) {
+        return moviesInfoService.addMovieInfo(movieInfo, durability)
                 // every time a movie is added, we are publishing it as an event
-                .doOnNext(savedMovieInfo -> movieInfoSink.tryEmitNext(savedMovieInfo));
+                .doOnNext(movieInfoEvents::publish);
 
     }
 
 
     @PutMapping("/movieinfo/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody MovieInfo movieInfo, @PathVariable String id) {
+    public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody MovieInfo movieInfo, @PathVariable String id,
+                                                           @RequestHeader(value = DurabilityTemplates.DURABILITY_HEADER, required = false) String durability) {
 
-        var updatedMovieInfoMono = moviesInfoService.updateMovieInfo(movieInfo, id);
+        var updatedMovieInfoMono = moviesInfoService.updateMovieInfo(movieInfo, id, durability);
         return updatedMovieInfoMono
                 .map(movieInfo1 -> ResponseEntity.ok()
                         .body(movieInfo1))
@@ -84,8 +156,9 @@ public class MoviesInfoController {
 
     @DeleteMapping("/movieinfo/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> deleteMovieInfoById(@PathVariable String id) {
-        return moviesInfoService.deleteMovieInfoById(id);
+    public Mono<Void> deleteMovieInfoById(@PathVariable String id,
+                                          @RequestHeader(value = DurabilityTemplates.DURABILITY_HEADER, required = false) String durability) {
+        return moviesInfoService.deleteMovieInfoById(id, durability);
 
     }
 
@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class InvalidDurabilityException extends RuntimeException {
+    private final String message;
+
+    public InvalidDurabilityException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
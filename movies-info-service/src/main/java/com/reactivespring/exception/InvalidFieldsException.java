@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class InvalidFieldsException extends RuntimeException {
+    private final String message;
+
+    public InvalidFieldsException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
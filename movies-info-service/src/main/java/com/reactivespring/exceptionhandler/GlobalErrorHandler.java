@@ -1,5 +1,7 @@
 package com.reactivespring.exceptionhandler;
 
+import com.reactivespring.exception.InvalidDurabilityException;
+import com.reactivespring.exception.InvalidFieldsException;
 import com.reactivespring.exception.MovieInfoNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
@@ -32,4 +34,16 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 
+    @ExceptionHandler(InvalidDurabilityException.class)
+    public ResponseEntity<String> handleInvalidDurabilityException(InvalidDurabilityException ex) {
+        log.error("Exception caught in handleInvalidDurabilityException :  {} ", ex.getMessage(), ex);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidFieldsException.class)
+    public ResponseEntity<String> handleInvalidFieldsException(InvalidFieldsException ex) {
+        log.error("Exception caught in handleInvalidFieldsException :  {} ", ex.getMessage(), ex);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
 }
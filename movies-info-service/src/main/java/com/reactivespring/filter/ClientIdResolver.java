@@ -0,0 +1,36 @@
+package com.reactivespring.filter;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Tells the client of a request : its remote address, or its clientIdHeader when it comes through one of the
+ * trustedProxies, since any other caller could send a new id with every request.
+ */
+public class ClientIdResolver {
+
+    private final String clientIdHeader;
+    private final Set<String> trustedProxies;
+
+    public ClientIdResolver(String clientIdHeader, Collection<String> trustedProxies) {
+        this.clientIdHeader = clientIdHeader;
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    public String clientId(ServerHttpRequest request) {
+        var remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return "unknown";
+        }
+        var address = remoteAddress.getAddress().getHostAddress();
+        if (trustedProxies.contains(address)) {
+            var clientId = request.getHeaders().getFirst(clientIdHeader);
+            if (clientId != null && !clientId.isBlank()) {
+                return clientId;
+            }
+        }
+        return address;
+    }
+}
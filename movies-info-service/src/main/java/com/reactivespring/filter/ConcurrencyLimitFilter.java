@@ -0,0 +1,157 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Sheds the requests over a concurrency limit with a 503 and a Retry-After, so that an overload turns into quick
+ * refusals instead of a queue growing until every client times out. The limit follows the latency: it grows while
+ * the recent latency stays close to the long term one, and shrinks in proportion as soon as requests start
+ * queueing up and the recent latency rises above it.
+ * <p>
+ * The health checks are never shed. The /stream subscriptions last as long as their client, so their latency
+ * says nothing about the load : they are held to a fixed number of their own instead.
+ */
+@Slf4j
+public class ConcurrencyLimitFilter implements WebFilter {
+
+    enum Priority {
+        CRITICAL, STREAM, CRUD
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxStreams;
+    private final String retryAfter;
+    private final LongSupplier nanoTime;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger streams = new AtomicInteger();
+
+    // written under the lock of sample, read without it by every request
+    private volatile double limit;
+    // guarded by this
+    private double shortLatency;
+    private double longLatency;
+
+    public ConcurrencyLimitFilter(int initialLimit, int minLimit, int maxLimit, int maxStreams, Duration retryAfter) {
+        this(initialLimit, minLimit, maxLimit, maxStreams, retryAfter, System::nanoTime);
+    }
+
+    ConcurrencyLimitFilter(int initialLimit, int minLimit, int maxLimit, int maxStreams, Duration retryAfter,
+                           LongSupplier nanoTime) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("The limits must be such that 0 < minLimit <= initialLimit <= maxLimit");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxStreams = maxStreams;
+        // whole seconds, rounded up
+        this.retryAfter = String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+        this.nanoTime = nanoTime;
+        Metrics.gauge("http.server.concurrency.limit", this, ConcurrencyLimitFilter::limit);
+        Metrics.gauge("http.server.concurrency.inFlight", inFlight);
+        Metrics.gauge("http.server.concurrency.streams", streams);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var priority = priority(exchange.getRequest());
+        switch (priority) {
+            case CRITICAL:
+                return chain.filter(exchange);
+            case STREAM:
+                if (streams.incrementAndGet() > maxStreams) {
+                    streams.decrementAndGet();
+                    return shed(exchange, priority);
+                }
+                return chain.filter(exchange)
+                        .doFinally(signalType -> streams.decrementAndGet());
+            default:
+                if (!tryAcquire()) {
+                    return shed(exchange, priority);
+                }
+                var start = nanoTime.getAsLong();
+                return chain.filter(exchange)
+                        .doFinally(signalType -> {
+                            // a request the client gave up on did not run to the end, its latency means nothing
+                            if (signalType != SignalType.CANCEL) {
+                                sample(nanoTime.getAsLong() - start, inFlight.get());
+                            }
+                            inFlight.decrementAndGet();
+                        });
+        }
+    }
+
+    static Priority priority(ServerHttpRequest request) {
+        var path = request.getPath().pathWithinApplication().value();
+        if (path.startsWith("/actuator/")) {
+            return Priority.CRITICAL;
+        }
+        if (path.endsWith("/stream")) {
+            return Priority.STREAM;
+        }
+        return Priority.CRUD;
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            var current = inFlight.get();
+            if (current >= (int) limit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private Mono<Void> shed(ServerWebExchange exchange, Priority priority) {
+        log.debug("Shedding {} {} over the concurrency limit", exchange.getRequest().getMethod(), exchange.getRequest().getPath());
+        Metrics.counter("http.server.requests.shed", "priority", priority.name().toLowerCase()).increment();
+        var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+        return response.setComplete();
+    }
+
+    double limit() {
+        return limit;
+    }
+
+    /**
+     * Moves the limit towards limit * longLatency / shortLatency, within [limit / 2, limit], plus some headroom
+     * to grow by when the latencies agree. The long term latency is allowed 50% of noise above it.
+     */
+    synchronized void sample(long latencyNanos, int inFlight) {
+        shortLatency = shortLatency == 0 ? latencyNanos : shortLatency + (latencyNanos - shortLatency) / 10;
+        longLatency = longLatency == 0 ? latencyNanos : longLatency + (latencyNanos - longLatency) / 500;
+        // the latency went down for good, the long term one follows faster than it would on its own
+        if (longLatency > 2 * shortLatency) {
+            longLatency *= 0.95;
+        }
+        // a limit which is not reached does not need to grow, nor tells anything on the load
+        if (inFlight < limit / 2) {
+            return;
+        }
+        var gradient = shortLatency == 0 ? 1.0 : Math.max(0.5, Math.min(1.0, 1.5 * longLatency / shortLatency));
+        var newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * 0.8 + newLimit * 0.2));
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
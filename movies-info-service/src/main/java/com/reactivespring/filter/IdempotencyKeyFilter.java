@@ -0,0 +1,269 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import com.reactivespring.idempotency.IdempotencyStore;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes POST requests carrying an Idempotency-Key header safe to retry: the first response is stored,
+ * and any later request of the same client with the same key gets that response back without the write being
+ * executed again. The key is claimed in the store before the write is executed, so that a duplicate sent to another
+ * instance meanwhile gets a 409 instead of running alongside it, and a duplicate sent to this one waits for it.
+ * A retry with another body than the first request is a mistake of the client, rejected with a 422.
+ */
+@Slf4j
+public class IdempotencyKeyFilter implements WebFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyStore idempotencyStore;
+    private final ClientIdResolver clientIdResolver;
+    private final Duration ttl;
+    private final Duration claimTimeout;
+    private final ConcurrentHashMap<String, Sinks.One<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyKeyFilter(IdempotencyStore idempotencyStore, ClientIdResolver clientIdResolver,
+                                Duration ttl, Duration claimTimeout) {
+        this.idempotencyStore = idempotencyStore;
+        this.clientIdResolver = clientIdResolver;
+        this.ttl = ttl;
+        this.claimTimeout = claimTimeout;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var request = exchange.getRequest();
+        var idempotencyKey = request.getHeaders().getFirst(IDEMPOTENCY_KEY_HEADER);
+        if (request.getMethod() != HttpMethod.POST || idempotencyKey == null) {
+            return chain.filter(exchange);
+        }
+        // the same key sent by two clients, or to two different endpoints, refers to two different operations
+        var key = clientIdResolver.clientId(request) + ":" + request.getPath().value() + ":" + idempotencyKey;
+
+        return DataBufferUtils.join(request.getBody())
+                .map(IdempotencyKeyFilter::bytes)
+                .defaultIfEmpty(new byte[0])
+                .flatMap(body -> {
+                    // the body has been read, the handler reads it again from the copy
+                    var bufferedExchange = exchange.mutate().request(new BufferedRequest(request, body)).build();
+                    return lookup(bufferedExchange, chain, key, requestHash(body));
+                });
+    }
+
+    private Mono<Void> lookup(ServerWebExchange exchange, WebFilterChain chain, String key, String requestHash) {
+        // respond() may complete empty, so the lookup result is wrapped to tell a response from a miss
+        // a key claimed by an execution under way is left to executeOnce, which waits for it if it runs here
+        return idempotencyStore.find(key)
+                .filter(idempotencyRecord -> !idempotencyRecord.isInFlight())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(idempotencyRecord -> idempotencyRecord.isPresent()
+                        ? respond(exchange, idempotencyRecord.get(), requestHash)
+                        : executeOnce(exchange, chain, key, requestHash));
+    }
+
+    private Mono<Void> executeOnce(ServerWebExchange exchange, WebFilterChain chain, String key, String requestHash) {
+        Sinks.One<IdempotencyRecord> execution = Sinks.one();
+        var inFlightExecution = inFlight.putIfAbsent(key, execution);
+        if (inFlightExecution != null) {
+            log.debug("Waiting for the in-flight execution of {}", key);
+            // if the in-flight execution fails without a response worth keeping, this request runs on its own
+            return inFlightExecution.asMono()
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(idempotencyRecord -> idempotencyRecord.isPresent()
+                            ? respond(exchange, idempotencyRecord.get(), requestHash)
+                            : executeOnce(exchange, chain, key, requestHash));
+        }
+
+        // a duplicate may have completed or claimed the key since the lookup, here or on another instance
+        var claim = new IdempotencyRecord(key, 0, null, null, requestHash, Instant.now().plus(claimTimeout));
+        return idempotencyStore.claim(claim)
+                .flatMap(claimed -> claimed
+                        ? execute(exchange, chain, key, requestHash, execution)
+                        : claimedElsewhere(exchange, key, requestHash, execution))
+                .doOnError(ex -> complete(key, execution, null))
+                .doOnCancel(() -> complete(key, execution, null))
+                .doFinally(signalType -> inFlight.remove(key, execution));
+    }
+
+    private Mono<Void> claimedElsewhere(ServerWebExchange exchange, String key, String requestHash,
+                                        Sinks.One<IdempotencyRecord> execution) {
+        return idempotencyStore.find(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(idempotencyRecord -> {
+                    // the duplicates waiting here look the key up again, unless the response is known
+                    complete(key, execution, idempotencyRecord.filter(found -> !found.isInFlight()).orElse(null));
+                    if (idempotencyRecord.isPresent()) {
+                        return respond(exchange, idempotencyRecord.get(), requestHash);
+                    }
+                    // released since the claim, the client may retry at once
+                    return reject(exchange, HttpStatus.CONFLICT);
+                });
+    }
+
+    private Mono<Void> execute(ServerWebExchange exchange, WebFilterChain chain, String key, String requestHash,
+                               Sinks.One<IdempotencyRecord> execution) {
+        var recordingResponse = new RecordingResponse(exchange.getResponse());
+        return chain.filter(exchange.mutate().response(recordingResponse).build())
+                .then(Mono.defer(() -> {
+                    var status = recordingResponse.getStatusCode() != null ? recordingResponse.getStatusCode() : HttpStatus.OK;
+                    // server errors and throttling are transient, so the client must be able to retry them for real
+                    if (status.is5xxServerError() || status == HttpStatus.TOO_MANY_REQUESTS) {
+                        return release(key, execution);
+                    }
+                    var contentType = recordingResponse.getHeaders().getContentType();
+                    var idempotencyRecord = new IdempotencyRecord(key, status.value(),
+                            contentType != null ? contentType.toString() : null,
+                            recordingResponse.body, requestHash, Instant.now().plus(ttl));
+                    return idempotencyStore.save(idempotencyRecord)
+                            .onErrorResume(ex -> {
+                                log.error("Unable to store the response for {} : {}", key, ex.getMessage());
+                                return Mono.empty();
+                            })
+                            .doOnSuccess(saved -> complete(key, execution, idempotencyRecord));
+                }))
+                .onErrorResume(ex -> release(key, execution).then(Mono.error(ex)))
+                .doOnCancel(() -> release(key, execution).subscribe());
+    }
+
+    private Mono<Void> release(String key, Sinks.One<IdempotencyRecord> execution) {
+        return idempotencyStore.release(key)
+                .onErrorResume(ex -> {
+                    log.error("Unable to release the claim on {} : {}", key, ex.getMessage());
+                    return Mono.empty();
+                })
+                .doOnSuccess(released -> complete(key, execution, null));
+    }
+
+    /**
+     * Hands the response, or null when there is none to replay, to the duplicates waiting on this instance : the
+     * execution leaves inFlight first, so that the ones looking the key up again do not find it there.
+     */
+    private void complete(String key, Sinks.One<IdempotencyRecord> execution, IdempotencyRecord idempotencyRecord) {
+        inFlight.remove(key, execution);
+        if (idempotencyRecord != null) {
+            execution.tryEmitValue(idempotencyRecord);
+        } else {
+            execution.tryEmitEmpty();
+        }
+    }
+
+    private Mono<Void> respond(ServerWebExchange exchange, IdempotencyRecord idempotencyRecord, String requestHash) {
+        // the records stored before the requests were hashed have no hash to compare
+        if (idempotencyRecord.getRequestHash() != null && !idempotencyRecord.getRequestHash().equals(requestHash)) {
+            log.debug("Idempotency key {} reused with another request body", idempotencyRecord.getKey());
+            return reject(exchange, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        if (idempotencyRecord.isInFlight()) {
+            return reject(exchange, HttpStatus.CONFLICT);
+        }
+        return replay(exchange, idempotencyRecord);
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, HttpStatus status) {
+        var response = exchange.getResponse();
+        response.setStatusCode(status);
+        if (status == HttpStatus.CONFLICT) {
+            // the execution under way is usually done by then
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.setComplete();
+    }
+
+    private Mono<Void> replay(ServerWebExchange exchange, IdempotencyRecord idempotencyRecord) {
+        var response = exchange.getResponse();
+        response.setRawStatusCode(idempotencyRecord.getStatus());
+        response.getHeaders().set(IDEMPOTENT_REPLAYED_HEADER, "true");
+        if (idempotencyRecord.getContentType() != null) {
+            response.getHeaders().set(HttpHeaders.CONTENT_TYPE, idempotencyRecord.getContentType());
+        }
+        if (idempotencyRecord.getBody() == null) {
+            return response.setComplete();
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(idempotencyRecord.getBody())));
+    }
+
+    private static byte[] bytes(DataBuffer dataBuffer) {
+        var bytes = new byte[dataBuffer.readableByteCount()];
+        dataBuffer.read(bytes);
+        DataBufferUtils.release(dataBuffer);
+        return bytes;
+    }
+
+    private static String requestHash(byte[] body) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Serves the request body read by the filter.
+     */
+    private static class BufferedRequest extends ServerHttpRequestDecorator {
+
+        private final byte[] body;
+
+        BufferedRequest(ServerHttpRequest delegate, byte[] body) {
+            super(delegate);
+            this.body = body;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body)));
+        }
+    }
+
+    /**
+     * Keeps a copy of the response body while it is written.
+     */
+    private static class RecordingResponse extends ServerHttpResponseDecorator {
+
+        private byte[] body;
+
+        RecordingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return DataBufferUtils.join(body)
+                    .flatMap(dataBuffer -> {
+                        var bytes = bytes(dataBuffer);
+                        this.body = bytes;
+                        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                    });
+        }
+    }
+}
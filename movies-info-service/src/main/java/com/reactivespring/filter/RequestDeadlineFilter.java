@@ -0,0 +1,66 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Gives up on the requests whose caller gave up, from the time left to it in the X-Request-Timeout header, in
+ * milliseconds. The time is relative, so that the clocks of the two services need not agree. A request which has
+ * no time left is answered with a 504 at once ; a read past its deadline is cancelled, which cancels its queries,
+ * and answered with a 504 if nothing has been sent yet, its connection aborted otherwise. The writes run to their end : stopping one halfway would
+ * leave the caller unable to tell whether it happened.
+ */
+@Slf4j
+public class RequestDeadlineFilter implements WebFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final Counter deadlineExceeded = Metrics.counter("http.server.requests.deadlineExceeded");
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var request = exchange.getRequest();
+        var header = request.getHeaders().getFirst(TIMEOUT_HEADER);
+        if (header == null) {
+            return chain.filter(exchange);
+        }
+        long timeoutMillis;
+        try {
+            timeoutMillis = Long.parseLong(header.trim());
+        } catch (NumberFormatException ex) {
+            log.debug("Ignoring the invalid {} : {}", TIMEOUT_HEADER, header);
+            return chain.filter(exchange);
+        }
+        if (timeoutMillis <= 0) {
+            return exceeded(exchange);
+        }
+        if (request.getMethod() != HttpMethod.GET && request.getMethod() != HttpMethod.HEAD) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange)
+                .timeout(Duration.ofMillis(timeoutMillis), Mono.defer(() -> exceeded(exchange)));
+    }
+
+    private Mono<Void> exceeded(ServerWebExchange exchange) {
+        deadlineExceeded.increment();
+        log.debug("Deadline exceeded for {}", exchange.getRequest().getPath());
+        var response = exchange.getResponse();
+        if (response.isCommitted()) {
+            // part of the body is out already : the error makes the server abort the connection, so that the client
+            // cannot take what it got for the whole body
+            return Mono.error(new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Deadline exceeded after the response was committed"));
+        }
+        response.setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+        return response.setComplete();
+    }
+}
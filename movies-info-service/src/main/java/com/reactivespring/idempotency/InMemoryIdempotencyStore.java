@@ -0,0 +1,87 @@
+package com.reactivespring.idempotency;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded store kept in insertion order, so that the eldest entries are both the first to expire
+ * and the ones evicted when the store is full.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, IdempotencyRecord> records = new LinkedHashMap<>();
+
+    public InMemoryIdempotencyStore(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Mono<IdempotencyRecord> find(String key) {
+        return Mono.fromSupplier(() -> {
+            synchronized (records) {
+                var idempotencyRecord = records.get(key);
+                if (idempotencyRecord == null || idempotencyRecord.getExpiresAt().isBefore(Instant.now())) {
+                    return null;
+                }
+                return idempotencyRecord;
+            }
+        });
+    }
+
+    @Override
+    public Mono<Void> save(IdempotencyRecord idempotencyRecord) {
+        return Mono.fromRunnable(() -> {
+            synchronized (records) {
+                records.remove(idempotencyRecord.getKey());
+                records.put(idempotencyRecord.getKey(), idempotencyRecord);
+                evict();
+            }
+        });
+    }
+
+    @Override
+    public Mono<Boolean> claim(IdempotencyRecord idempotencyRecord) {
+        return Mono.fromSupplier(() -> {
+            synchronized (records) {
+                var existing = records.get(idempotencyRecord.getKey());
+                if (existing != null && existing.getExpiresAt().isAfter(Instant.now())) {
+                    return false;
+                }
+                records.remove(idempotencyRecord.getKey());
+                records.put(idempotencyRecord.getKey(), idempotencyRecord);
+                evict();
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Mono<Void> release(String key) {
+        return Mono.fromRunnable(() -> {
+            synchronized (records) {
+                var existing = records.get(key);
+                if (existing != null && existing.isInFlight()) {
+                    records.remove(key);
+                }
+            }
+        });
+    }
+
+    private void evict() {
+        var now = Instant.now();
+        Iterator<Map.Entry<String, IdempotencyRecord>> iterator = records.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var eldest = iterator.next().getValue();
+            if (records.size() <= maxEntries && eldest.getExpiresAt().isAfter(now)) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+}
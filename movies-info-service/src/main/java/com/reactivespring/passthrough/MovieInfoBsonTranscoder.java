@@ -0,0 +1,112 @@
+package com.reactivespring.passthrough;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.bson.BsonArray;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Set;
+
+/**
+ * Writes a movieInfo document read as raw BSON straight to JSON, producing the same output as Jackson
+ * does for {@link com.reactivespring.domain.MovieInfo} : same field names and order, nulls for the missing
+ * fields, dates as ISO local dates unless the ObjectMapper writes them as timestamps. The _class and any
+ * unmapped field are dropped.
+ */
+@Component
+public class MovieInfoBsonTranscoder {
+
+    private final JsonFactory jsonFactory;
+    private final boolean datesAsTimestamps;
+
+    public MovieInfoBsonTranscoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.datesAsTimestamps = objectMapper.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Writes the given fields of the document, all of them if fields is null.
+     */
+    public byte[] toJson(RawBsonDocument document, Set<String> fields) {
+        var out = new ByteArrayOutputStream(document.getByteBuffer().remaining());
+        write(document, fields, out);
+        return out.toByteArray();
+    }
+
+    public void write(RawBsonDocument document, Set<String> fields, OutputStream out) {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            for (String field : MovieInfoFields.FIELDS) {
+                if (fields == null || fields.contains(field)) {
+                    generator.writeFieldName(field);
+                    writeValue(field, document.get(MovieInfoFields.mongoField(field)), generator);
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeValue(String field, BsonValue value, JsonGenerator generator) throws IOException {
+        if (value == null || value.isNull()) {
+            generator.writeNull();
+            return;
+        }
+        switch (field) {
+            case "movieInfoId":
+                // ids that are valid ObjectIds are stored as such, the other ones as strings
+                generator.writeString(value.isObjectId() ? value.asObjectId().getValue().toHexString() : value.asString().getValue());
+                break;
+            case "year":
+                generator.writeNumber(value.isInt32() ? value.asInt32().getValue() : value.asNumber().intValue());
+                break;
+            case "cast":
+                writeStrings(value.asArray(), generator);
+                break;
+            case "release_date":
+                writeDate(value.asDateTime().getValue(), generator);
+                break;
+            default:
+                generator.writeString(value.asString().getValue());
+        }
+    }
+
+    private void writeDate(long epochMillis, JsonGenerator generator) throws IOException {
+        // same conversion as the Date to LocalDate converter of Spring Data
+        var date = LocalDate.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        if (datesAsTimestamps) {
+            // the LocalDateSerializer of the Java time module writes [year, month, day]
+            generator.writeStartArray();
+            generator.writeNumber(date.getYear());
+            generator.writeNumber(date.getMonthValue());
+            generator.writeNumber(date.getDayOfMonth());
+            generator.writeEndArray();
+        } else {
+            generator.writeString(date.toString());
+        }
+    }
+
+    private static void writeStrings(BsonArray values, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (BsonValue value : values) {
+            if (value.isNull()) {
+                generator.writeNull();
+            } else {
+                generator.writeString(value.asString().getValue());
+            }
+        }
+        generator.writeEndArray();
+    }
+}
@@ -0,0 +1,42 @@
+package com.reactivespring.passthrough;
+
+import com.reactivespring.exception.InvalidFieldsException;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The fields of a movie info as they appear in the JSON, which the fields= parameter picks from.
+ */
+public final class MovieInfoFields {
+
+    // in the order of the MovieInfo fields, which is the order Jackson writes them in
+    public static final List<String> FIELDS = List.of("movieInfoId", "name", "year", "cast", "release_date");
+
+    private MovieInfoFields() {
+    }
+
+    public static String mongoField(String field) {
+        return "movieInfoId".equals(field) ? "_id" : field;
+    }
+
+    /**
+     * Parses a comma separated list of fields, rejecting the unknown ones.
+     */
+    public static Set<String> parse(String fields) {
+        var parsed = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        var unknown = parsed.stream()
+                .filter(field -> !FIELDS.contains(field))
+                .collect(Collectors.toList());
+        if (parsed.isEmpty() || !unknown.isEmpty()) {
+            throw new InvalidFieldsException("Invalid fields : " + fields + ", expected some of " + FIELDS);
+        }
+        return parsed;
+    }
+}
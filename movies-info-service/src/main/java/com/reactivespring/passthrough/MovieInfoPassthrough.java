@@ -0,0 +1,105 @@
+package com.reactivespring.passthrough;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Read path that skips the entity mapping : the movie infos are fetched from the driver as raw BSON and
+ * transcoded to JSON by {@link MovieInfoBsonTranscoder}, so that no Document, MovieInfo or Jackson tree is
+ * allocated on the way. Opt-in with movieInfo.passthrough.enabled, the output is the same as the regular path.
+ * The projected reads (fields=) always use it.
+ */
+@Component
+public class MovieInfoPassthrough {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final MovieInfoBsonTranscoder transcoder;
+    private final boolean enabled;
+
+    public MovieInfoPassthrough(ReactiveMongoOperations mongoOperations,
+                                MovieInfoBsonTranscoder transcoder,
+                                @Value("${movieInfo.passthrough.enabled:false}") boolean enabled) {
+        this.mongoOperations = mongoOperations;
+        this.transcoder = transcoder;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the JSON of the given fields of the movie info, all of them if fields is null.
+     */
+    public Mono<byte[]> findJsonById(String id, Set<String> fields) {
+        return find(Filters.eq("_id", toMongoId(id)), fields).next();
+    }
+
+    public Flux<byte[]> findAllJson(Integer year, Set<String> fields) {
+        return find(year != null ? Filters.eq("year", year) : new BsonDocument(), fields);
+    }
+
+    /**
+     * Returns the movie infos as a JSON array, written as the documents come from the driver.
+     */
+    public Flux<DataBuffer> findAllJsonArray(Integer year, Set<String> fields, DataBufferFactory bufferFactory) {
+        var first = new AtomicBoolean(true);
+        return Flux.concat(
+                Mono.fromCallable(() -> bufferFactory.wrap("[".getBytes(StandardCharsets.UTF_8))),
+                findAllJson(year, fields)
+                        .map(json -> {
+                            if (first.getAndSet(false)) {
+                                return bufferFactory.wrap(json);
+                            }
+                            return bufferFactory.allocateBuffer(json.length + 1).write((byte) ',').write(json);
+                        }),
+                Mono.fromCallable(() -> bufferFactory.wrap("]".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Returns the movie infos as NDJSON, one line per document as it comes from the driver.
+     */
+    public Flux<DataBuffer> findAllJsonLines(Integer year, Set<String> fields, DataBufferFactory bufferFactory) {
+        return findAllJson(year, fields)
+                .map(json -> bufferFactory.allocateBuffer(json.length + 1).write(json).write((byte) '\n'));
+    }
+
+    private Flux<byte[]> find(Bson filter, Set<String> fields) {
+        return mongoOperations.getCollection(mongoOperations.getCollectionName(MovieInfo.class))
+                .flatMapMany(collection -> collection.withDocumentClass(RawBsonDocument.class)
+                        .find(filter)
+                        .projection(projection(fields)))
+                .map(document -> transcoder.toJson(document, fields));
+    }
+
+    private static Bson projection(Set<String> fields) {
+        if (fields == null) {
+            return null;
+        }
+        return Projections.include(fields.stream()
+                .map(MovieInfoFields::mongoField)
+                .collect(Collectors.toList()));
+    }
+
+    // the same conversion Spring Data applies to the String ids when it writes them
+    private static Object toMongoId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
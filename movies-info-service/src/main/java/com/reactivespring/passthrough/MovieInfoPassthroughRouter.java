@@ -0,0 +1,59 @@
+package com.reactivespring.passthrough;
+
+import com.reactivespring.exception.InvalidFieldsException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Serves GET /v1/movieinfo from the passthrough read path. Router functions are looked up before the
+ * annotated controllers, so this takes over the JSON requests only, and the other media types (NDJSON)
+ * still go to {@link com.reactivespring.controller.MoviesInfoController}.
+ * GET /v1/movieinfo/{id} goes through the controller, which uses the passthrough to fill its JSON cache.
+ */
+@Configuration
+@ConditionalOnProperty(name = "movieInfo.passthrough.enabled", havingValue = "true")
+public class MovieInfoPassthroughRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> movieInfoPassthroughRoute(MovieInfoPassthrough movieInfoPassthrough) {
+        return route(GET("/v1/movieinfo").and(accept(MediaType.APPLICATION_JSON)),
+                request -> getAllMovieInfo(request, movieInfoPassthrough));
+    }
+
+    private Mono<ServerResponse> getAllMovieInfo(ServerRequest request, MovieInfoPassthrough movieInfoPassthrough) {
+        var year = request.queryParam("year").map(MovieInfoPassthroughRouter::parseYear).orElse(null);
+        Set<String> fields;
+        try {
+            fields = request.queryParam("fields").map(MovieInfoFields::parse).orElse(null);
+        } catch (InvalidFieldsException ex) {
+            // the ControllerAdvice only applies to the annotated controllers
+            return ServerResponse.badRequest().bodyValue(ex.getMessage());
+        }
+        var bufferFactory = request.exchange().getResponse().bufferFactory();
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromDataBuffers(movieInfoPassthrough.findAllJsonArray(year, fields, bufferFactory)));
+    }
+
+    private static Integer parseYear(String year) {
+        try {
+            return Integer.valueOf(year);
+        } catch (NumberFormatException ex) {
+            throw new ServerWebInputException("Invalid year : " + year);
+        }
+    }
+}
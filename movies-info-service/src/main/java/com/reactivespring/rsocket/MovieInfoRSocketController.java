@@ -0,0 +1,50 @@
+package com.reactivespring.rsocket;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.service.MovieInfoEvents;
+import com.reactivespring.service.MoviesInfoService;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reads of the movie infos over RSocket, on spring.rsocket.server.port : request-response for a lookup,
+ * request-stream for the bulk reads and the feed of the added movie infos. The streams are paced by the
+ * demand of the client, sent over the wire as REQUEST_N frames, instead of being buffered by the connection.
+ */
+@Controller
+public class MovieInfoRSocketController {
+
+    private final MoviesInfoService moviesInfoService;
+    private final MovieInfoEvents movieInfoEvents;
+
+    public MovieInfoRSocketController(MoviesInfoService moviesInfoService, MovieInfoEvents movieInfoEvents) {
+        this.moviesInfoService = moviesInfoService;
+        this.movieInfoEvents = movieInfoEvents;
+    }
+
+    /**
+     * Completes without a payload for an unknown id.
+     */
+    @MessageMapping("movieinfo.{id}")
+    public Mono<MovieInfo> getMovieInfoById(@DestinationVariable String id) {
+        return moviesInfoService.getMovieInfoById(id);
+    }
+
+    @MessageMapping("movieinfo")
+    public Flux<MovieInfo> getAllMovieInfo() {
+        return moviesInfoService.getAllMovieInfo();
+    }
+
+    @MessageMapping("movieinfo.year.{year}")
+    public Flux<MovieInfo> getMovieInfoByYear(@DestinationVariable Integer year) {
+        return moviesInfoService.getMovieInfoByYear(year);
+    }
+
+    @MessageMapping("movieinfo.stream")
+    public Flux<MovieInfo> streamMovieInfo() {
+        return movieInfoEvents.asFlux();
+    }
+}
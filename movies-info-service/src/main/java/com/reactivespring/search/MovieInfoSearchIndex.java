@@ -0,0 +1,172 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Prefix index over the normalized tokens of the movie names and cast, so that typeahead never goes to Mongo.
+ * Built from the repository at startup and kept current by {@link com.reactivespring.service.MoviesInfoService}
+ * on every write. Writes are serialized, searches run without locking against the concurrent maps.
+ */
+@Component
+@Slf4j
+public class MovieInfoSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // a whole word of the name counts more than a prefix of it, and the name more than the cast
+    private static final double NAME_TOKEN = 3.0;
+    private static final double NAME_PREFIX = 2.0;
+    private static final double CAST_TOKEN = 1.5;
+    private static final double CAST_PREFIX = 1.0;
+    private static final double NAME_STARTS_WITH_QUERY = 2.0;
+
+    private final MovieInfoRepository movieInfoRepository;
+
+    private final ConcurrentHashMap<String, IndexedMovieInfo> moviesById = new ConcurrentHashMap<>();
+    // token -> ids of the movies having it in their name or cast, sorted so that a prefix is a range
+    private final ConcurrentSkipListMap<String, Set<String>> movieIdsByToken = new ConcurrentSkipListMap<>();
+
+    public MovieInfoSearchIndex(MovieInfoRepository movieInfoRepository) {
+        this.movieInfoRepository = movieInfoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void build() {
+        movieInfoRepository.findAll()
+                .doOnNext(this::index)
+                .count()
+                .subscribe(movies -> log.info("Search index built : {} movies", movies),
+                        ex -> log.error("Unable to build the search index : {}", ex.getMessage()));
+    }
+
+    public synchronized void index(MovieInfo movieInfo) {
+        remove(movieInfo.getMovieInfoId());
+        var indexed = new IndexedMovieInfo(movieInfo);
+        moviesById.put(movieInfo.getMovieInfoId(), indexed);
+        Stream.concat(indexed.nameTokens.stream(), indexed.castTokens.stream())
+                .forEach(token -> movieIdsByToken.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet())
+                        .add(movieInfo.getMovieInfoId()));
+    }
+
+    public synchronized void remove(String movieInfoId) {
+        var indexed = movieInfoId != null ? moviesById.remove(movieInfoId) : null;
+        if (indexed == null) {
+            return;
+        }
+        Stream.concat(indexed.nameTokens.stream(), indexed.castTokens.stream())
+                .forEach(token -> {
+                    var movieIds = movieIdsByToken.get(token);
+                    if (movieIds != null) {
+                        movieIds.remove(movieInfoId);
+                        if (movieIds.isEmpty()) {
+                            movieIdsByToken.remove(token);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Returns the movies matching every word of the query, each word as a prefix of a name or cast token,
+     * best matches first.
+     */
+    public List<MovieInfo> search(String query, int limit) {
+        var queryTokens = tokens(query);
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+        Set<String> candidates = null;
+        for (String queryToken : queryTokens) {
+            var matches = movieIdsWithPrefix(queryToken);
+            if (candidates == null) {
+                candidates = matches;
+            } else {
+                candidates.retainAll(matches);
+            }
+            if (candidates.isEmpty()) {
+                return List.of();
+            }
+        }
+        var normalizedQuery = String.join(" ", queryTokens);
+        return candidates.stream()
+                .map(moviesById::get)
+                .filter(indexed -> indexed != null)
+                .map(indexed -> Map.entry(indexed, score(indexed, queryTokens, normalizedQuery)))
+                .sorted(Comparator.<Map.Entry<IndexedMovieInfo, Double>, Double>comparing(Map.Entry::getValue, Comparator.reverseOrder())
+                        .thenComparing(entry -> entry.getKey().normalizedName.length())
+                        .thenComparing(entry -> entry.getKey().normalizedName))
+                .limit(limit)
+                .map(entry -> entry.getKey().movieInfo)
+                .collect(Collectors.toList());
+    }
+
+    private Set<String> movieIdsWithPrefix(String prefix) {
+        return movieIdsByToken.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values().stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static double score(IndexedMovieInfo indexed, List<String> queryTokens, String normalizedQuery) {
+        var score = indexed.normalizedName.startsWith(normalizedQuery) ? NAME_STARTS_WITH_QUERY : 0.0;
+        for (String queryToken : queryTokens) {
+            score += Math.max(match(indexed.nameTokens, queryToken, NAME_TOKEN, NAME_PREFIX),
+                    match(indexed.castTokens, queryToken, CAST_TOKEN, CAST_PREFIX));
+        }
+        return score;
+    }
+
+    private static double match(Set<String> tokens, String queryToken, double tokenScore, double prefixScore) {
+        if (tokens.contains(queryToken)) {
+            return tokenScore;
+        }
+        return tokens.stream().anyMatch(token -> token.startsWith(queryToken)) ? prefixScore : 0.0;
+    }
+
+    static List<String> tokens(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        var normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static class IndexedMovieInfo {
+        private final MovieInfo movieInfo;
+        private final String normalizedName;
+        private final Set<String> nameTokens;
+        private final Set<String> castTokens;
+
+        IndexedMovieInfo(MovieInfo movieInfo) {
+            this.movieInfo = movieInfo;
+            var nameTokenList = tokens(movieInfo.getName());
+            this.normalizedName = String.join(" ", nameTokenList);
+            this.nameTokens = Set.copyOf(nameTokenList);
+            this.castTokens = movieInfo.getCast() == null ? Set.of() : movieInfo.getCast().stream()
+                    .flatMap(member -> tokens(member).stream())
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+    }
+}
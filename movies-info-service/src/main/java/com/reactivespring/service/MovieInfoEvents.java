@@ -0,0 +1,24 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * The movie infos added to the catalog, streamed over HTTP as NDJSON and over RSocket.
+ */
+@Component
+public class MovieInfoEvents {
+
+    // a new subscriber gets the latest movie info first
+    private final Sinks.Many<MovieInfo> movieInfoSink = Sinks.many().replay().latest();
+
+    public void publish(MovieInfo movieInfo) {
+        movieInfoSink.tryEmitNext(movieInfo);
+    }
+
+    public Flux<MovieInfo> asFlux() {
+        return movieInfoSink.asFlux();
+    }
+}
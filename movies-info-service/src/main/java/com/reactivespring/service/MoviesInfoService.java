@@ -1,8 +1,15 @@
 package com.reactivespring.service;
 
+import com.reactivespring.cache.MovieInfoJsonCache;
+import com.reactivespring.config.DurabilityTemplates;
+import com.reactivespring.config.DurabilityTier;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.search.MovieInfoSearchIndex;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -13,9 +20,26 @@ public class MoviesInfoService {
 
 
     private final MovieInfoRepository movieInfoRepository;
+    private final DurabilityTemplates durabilityTemplates;
+    private final MovieInfoSearchIndex movieInfoSearchIndex;
+    private final MovieInfoJsonCache movieInfoJsonCache;
 
-    public MoviesInfoService(MovieInfoRepository movieInfoRepository) {
+    // catalog edits are critical, so they are fully acknowledged by default
+    @Value("${durability.movieInfo.add:MAJORITY}")
+    private DurabilityTier addTier;
+
+    @Value("${durability.movieInfo.update:MAJORITY}")
+    private DurabilityTier updateTier;
+
+    @Value("${durability.movieInfo.delete:MAJORITY}")
+    private DurabilityTier deleteTier;
+
+    public MoviesInfoService(MovieInfoRepository movieInfoRepository, DurabilityTemplates durabilityTemplates,
+                             MovieInfoSearchIndex movieInfoSearchIndex, MovieInfoJsonCache movieInfoJsonCache) {
         this.movieInfoRepository = movieInfoRepository;
+        this.durabilityTemplates = durabilityTemplates;
+        this.movieInfoSearchIndex = movieInfoSearchIndex;
+        this.movieInfoJsonCache = movieInfoJsonCache;
     }
 
     public Flux<MovieInfo> getAllMovieInfo() {
@@ -28,9 +52,11 @@ public class MoviesInfoService {
         return movieInfoRepository.findByYear(year);
     }
 
-    public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
+    public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo, String durability) {
         log.info("addMovieInfo : {} ", movieInfo);
-        return movieInfoRepository.save(movieInfo)
+        var tier = durabilityTemplates.resolve(addTier, durability);
+        return durabilityTemplates.forTier(tier).save(movieInfo)
+                .doOnNext(movieInfoSearchIndex::index)
                 .log();
     }
 
@@ -38,20 +64,32 @@ public class MoviesInfoService {
         return movieInfoRepository.findById(id);
     }
 
-    public Mono<MovieInfo> updateMovieInfo(MovieInfo movieInfo, String id) {
+    public Mono<MovieInfo> updateMovieInfo(MovieInfo movieInfo, String id, String durability) {
+        var tier = durabilityTemplates.resolve(updateTier, durability);
         return movieInfoRepository.findById(id)
                 .flatMap(movieInfo1 -> {
                     movieInfo1.setCast(movieInfo.getCast());
                     movieInfo1.setName(movieInfo.getName());
                     movieInfo1.setRelease_date(movieInfo.getRelease_date());
                     movieInfo1.setYear(movieInfo.getYear());
-                    return movieInfoRepository.save(movieInfo1);
-                });
+                    return durabilityTemplates.forTier(tier).save(movieInfo1);
+                })
+                .doOnNext(movieInfoSearchIndex::index)
+                .doOnNext(updatedMovieInfo -> movieInfoJsonCache.invalidate(id));
 
 
     }
 
-    public Mono<Void> deleteMovieInfoById(String id) {
-        return movieInfoRepository.deleteById(id);
+    public Mono<Void> deleteMovieInfoById(String id, String durability) {
+        var tier = durabilityTemplates.resolve(deleteTier, durability);
+        return durabilityTemplates.forTier(tier)
+                .remove(Query.query(Criteria.where("_id").is(id)), MovieInfo.class)
+                .doOnNext(deleteResult -> movieInfoSearchIndex.remove(id))
+                .doOnNext(deleteResult -> movieInfoJsonCache.invalidate(id))
+                .then();
+    }
+
+    public Flux<MovieInfo> searchMovieInfo(String query, int limit) {
+        return Flux.fromIterable(movieInfoSearchIndex.search(query, limit));
     }
 }
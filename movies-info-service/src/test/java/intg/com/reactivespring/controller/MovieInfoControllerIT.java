@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -148,6 +149,60 @@ public class MovieInfoControllerIT {
     }
 
 
+    @Test
+    void getMovieInfoById_Fields() {
+        var id = "abc";
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}?fields=name,year", id)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$.year").isEqualTo(2012)
+                .jsonPath("$.cast").doesNotExist()
+                .jsonPath("$.movieInfoId").doesNotExist();
+    }
+
+    @Test
+    void getAllMoviesInfo_Fields() {
+        var uri = UriComponentsBuilder.fromUriString(MOVIES_INFO_URL)
+                .queryParam("year", 2005)
+                .queryParam("fields", "name")
+                .buildAndExpand().toUri();
+
+        webTestClient
+                .get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("Batman Begins")
+                .jsonPath("$[0].year").doesNotExist();
+    }
+
+    @Test
+    void getAllMoviesInfo_Fields_Ndjson() {
+        var uri = UriComponentsBuilder.fromUriString(MOVIES_INFO_URL)
+                .queryParam("year", 2005)
+                .queryParam("fields", "name")
+                .buildAndExpand().toUri();
+
+        webTestClient
+                .get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo("{\"name\":\"Batman Begins\"}\n");
+    }
+
     @Test
     void getMovieInfoById_1() {
         var id = "def";
@@ -206,6 +261,30 @@ public class MovieInfoControllerIT {
                 .expectStatus()
                 .isNoContent();
     }
-}
 
+    @Test
+    void searchMovieInfo() {
+
+        MovieInfo movieInfo = new MovieInfo(null, "Interstellar",
+                2014, List.of("Matthew McConaughey", "Anne Hathaway"), LocalDate.parse("2014-11-07"));
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated();
 
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/search?q=interst")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> {
+                    assertEquals(1, movieInfos.size());
+                    assertEquals("Interstellar", movieInfos.get(0).getName());
+                });
+    }
+}
@@ -0,0 +1,128 @@
+package com.reactivespring.rsocket;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.rsocket.server.port=0")
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+public class MovieInfoRSocketControllerIT {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    private RSocketRequester.Builder rSocketRequesterBuilder;
+
+    @LocalRSocketServerPort
+    private int rSocketServerPort;
+
+    private RSocketRequester rSocketRequester;
+
+    @BeforeEach
+    void setUp() {
+        var movieInfo = List.of(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        movieInfoRepository
+                .deleteAll()
+                .thenMany(movieInfoRepository.saveAll(movieInfo))
+                .blockLast();
+
+        rSocketRequester = rSocketRequesterBuilder.tcp("localhost", rSocketServerPort);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rSocketRequester.dispose();
+    }
+
+    @Test
+    void getMovieInfoById() {
+        var movieInfo = rSocketRequester.route("movieinfo.{id}", "abc")
+                .retrieveMono(MovieInfo.class);
+
+        StepVerifier.create(movieInfo)
+                .assertNext(movieInfo1 -> assertEquals("Dark Knight Rises", movieInfo1.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void getMovieInfoById_NotFound() {
+        var movieInfo = rSocketRequester.route("movieinfo.{id}", "def")
+                .retrieveMono(MovieInfo.class);
+
+        StepVerifier.create(movieInfo)
+                .verifyComplete();
+    }
+
+    @Test
+    void getMovieInfoByYear() {
+        var movieInfos = rSocketRequester.route("movieinfo.year.{year}", 2005)
+                .retrieveFlux(MovieInfo.class);
+
+        StepVerifier.create(movieInfos)
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAllMovieInfo_Backpressure() {
+        var movieInfos = rSocketRequester.route("movieinfo")
+                .retrieveFlux(MovieInfo.class);
+
+        // each request goes over the wire as a REQUEST_N frame, nothing more is sent until then
+        StepVerifier.create(movieInfos, 1)
+                .expectNextCount(1)
+                .thenRequest(2)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void streamMovieInfo() {
+        var movieInfo = new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        // create a movie to trigger the sink publisher
+        webTestClient
+                .post()
+                .uri("/v1/movieinfo")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        var movieInfoStream = rSocketRequester.route("movieinfo.stream")
+                .retrieveFlux(MovieInfo.class);
+
+        StepVerifier.create(movieInfoStream)
+                .assertNext(movieInfo1 -> assertEquals("Batman Begins", movieInfo1.getName()))
+                // cancel stream to end processing
+                .thenCancel()
+                .verify();
+    }
+}
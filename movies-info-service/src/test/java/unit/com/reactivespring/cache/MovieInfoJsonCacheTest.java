@@ -0,0 +1,132 @@
+package com.reactivespring.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MovieInfoJsonCacheTest {
+
+    private static final Duration TTL = Duration.ofSeconds(60);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    // a single stripe, so that the LRU order is the one of every entry
+    private final MovieInfoJsonCache movieInfoJsonCache = new MovieInfoJsonCache(objectMapper, true, 2, 1, TTL, nanoTime::get);
+
+    @Test
+    void invalidationDuringALoadIsNotOverwritten() {
+        var loads = new AtomicInteger();
+        Sinks.One<MovieInfo> slowLoad = Sinks.one();
+
+        // the load started before the update completes after the invalidation
+        movieInfoJsonCache.get("abc", id -> slowLoad.asMono()).subscribe();
+        movieInfoJsonCache.invalidate("abc");
+        slowLoad.tryEmitValue(movieInfo("abc", "Batman Begins"));
+
+        movieInfoJsonCache.get("abc", id -> {
+            loads.incrementAndGet();
+            return Mono.just(movieInfo("abc", "Batman Begins 1"));
+        }).block();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() {
+        var loads = new AtomicInteger();
+        for (String id : List.of("a", "b", "a", "c", "a", "b")) {
+            movieInfoJsonCache.get(id, movieInfoId -> {
+                loads.incrementAndGet();
+                return Mono.just(movieInfo(movieInfoId, "Batman Begins"));
+            }).block();
+        }
+        // a, b, c loaded once, then b again as it was evicted by c
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void stripesShareMaxEntries() {
+        var stripedCache = new MovieInfoJsonCache(objectMapper, true, 4, 4, TTL, nanoTime::get);
+        var loads = new AtomicInteger();
+        Function<String, Mono<MovieInfo>> loader = movieInfoId -> {
+            loads.incrementAndGet();
+            return Mono.just(movieInfo(movieInfoId, "Batman Begins"));
+        };
+        for (int i = 0; i < 100; i++) {
+            stripedCache.get("movie" + i, loader).block();
+        }
+
+        // in reverse, the first movie met in each stripe is the one it kept
+        for (int i = 99; i >= 0; i--) {
+            stripedCache.get("movie" + i, loader).block();
+        }
+        assertEquals(196, loads.get());
+    }
+
+    @Test
+    void invalidationOnlyConcernsItsStripe() {
+        var stripedCache = new MovieInfoJsonCache(objectMapper, true, 100, 2, TTL, nanoTime::get);
+        var loads = new AtomicInteger();
+        // "a" and "b" hash to different stripes
+        Sinks.One<MovieInfo> slowLoad = Sinks.one();
+        stripedCache.get("a", id -> slowLoad.asMono()).subscribe();
+        stripedCache.invalidate("b");
+        slowLoad.tryEmitValue(movieInfo("a", "Batman Begins"));
+
+        stripedCache.get("a", id -> {
+            loads.incrementAndGet();
+            return Mono.just(movieInfo("a", "Batman Begins"));
+        }).block();
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() {
+        var loads = new AtomicInteger();
+        Function<String, Mono<MovieInfo>> loader = movieInfoId -> {
+            loads.incrementAndGet();
+            return Mono.just(movieInfo(movieInfoId, "Batman Begins"));
+        };
+
+        movieInfoJsonCache.get("abc", loader).block();
+        nanoTime.addAndGet(TTL.toNanos() - 1);
+        movieInfoJsonCache.get("abc", loader).block();
+        assertEquals(1, loads.get());
+
+        // updated through another instance meanwhile
+        nanoTime.addAndGet(1);
+        movieInfoJsonCache.get("abc", loader).block();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void ttlIsAtLeastTheCacheControlMaxAge() {
+        var cache = new MovieInfoJsonCache(objectMapper, true, 100, Duration.ofSeconds(10), Duration.ofMinutes(5));
+        var loads = new AtomicInteger();
+        Function<String, Mono<MovieInfo>> loader = movieInfoId -> {
+            loads.incrementAndGet();
+            return Mono.just(movieInfo(movieInfoId, "Batman Begins"));
+        };
+
+        cache.get("abc", loader).block();
+        cache.get("abc", loader).block();
+        assertEquals(1, loads.get());
+        assertEquals(Duration.ofMinutes(5).toNanos(), ReflectionTestUtils.getField(cache, "ttlNanos"));
+    }
+
+    private static MovieInfo movieInfo(String id, String name) {
+        return new MovieInfo(id, name, 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+}
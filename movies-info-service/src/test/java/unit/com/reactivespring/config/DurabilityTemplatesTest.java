@@ -0,0 +1,72 @@
+package com.reactivespring.config;
+
+import com.mongodb.WriteConcern;
+import com.reactivespring.exception.InvalidDurabilityException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+public class DurabilityTemplatesTest {
+
+    private final MappingMongoConverter mongoConverter =
+            new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+
+    private final DurabilityTemplates durabilityTemplates = durabilityTemplates(true);
+
+    @Test
+    void configuredTierWithoutOverride() {
+        assertEquals(DurabilityTier.ACKNOWLEDGED, durabilityTemplates.resolve(DurabilityTier.ACKNOWLEDGED, null));
+    }
+
+    @Test
+    void overrideMayRaiseTheDurability() {
+        assertEquals(DurabilityTier.MAJORITY, durabilityTemplates.resolve(DurabilityTier.ACKNOWLEDGED, "majority"));
+        assertEquals(DurabilityTier.JOURNALED, durabilityTemplates.resolve(DurabilityTier.JOURNALED, "JOURNALED"));
+    }
+
+    @Test
+    void overrideMayNotLowerTheDurability() {
+        assertEquals(DurabilityTier.MAJORITY, durabilityTemplates.resolve(DurabilityTier.MAJORITY, "UNACKNOWLEDGED"));
+        assertEquals(DurabilityTier.JOURNALED, durabilityTemplates.resolve(DurabilityTier.JOURNALED, "ACKNOWLEDGED"));
+    }
+
+    @Test
+    void overrideIgnoredWhenNotAllowed() {
+        var durabilityTemplates = durabilityTemplates(false);
+
+        assertEquals(DurabilityTier.ACKNOWLEDGED, durabilityTemplates.resolve(DurabilityTier.ACKNOWLEDGED, "MAJORITY"));
+    }
+
+    @Test
+    void unknownTierRejected() {
+        var ex = assertThrows(InvalidDurabilityException.class,
+                () -> durabilityTemplates.resolve(DurabilityTier.MAJORITY, "FAST"));
+
+        assertEquals("Invalid X-Write-Durability : FAST, expected one of [MAJORITY, JOURNALED, ACKNOWLEDGED, UNACKNOWLEDGED]",
+                ex.getMessage());
+    }
+
+    @Test
+    void templatePerTierWriteConcern() {
+        assertEquals(WriteConcern.MAJORITY.withJournal(true), writeConcern(DurabilityTier.MAJORITY));
+        assertEquals(WriteConcern.JOURNALED, writeConcern(DurabilityTier.JOURNALED));
+        assertEquals(WriteConcern.ACKNOWLEDGED, writeConcern(DurabilityTier.ACKNOWLEDGED));
+        assertEquals(WriteConcern.UNACKNOWLEDGED, writeConcern(DurabilityTier.UNACKNOWLEDGED));
+    }
+
+    private WriteConcern writeConcern(DurabilityTier tier) {
+        return (WriteConcern) ReflectionTestUtils.getField(durabilityTemplates.forTier(tier), "writeConcern");
+    }
+
+    private DurabilityTemplates durabilityTemplates(boolean allowRequestOverride) {
+        return new DurabilityTemplates(mock(ReactiveMongoDatabaseFactory.class), mongoConverter, allowRequestOverride);
+    }
+}
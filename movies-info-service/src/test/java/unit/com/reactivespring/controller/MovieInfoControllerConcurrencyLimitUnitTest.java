@@ -0,0 +1,95 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.cache.MovieInfoJsonCache;
+import com.reactivespring.config.ConcurrencyLimitConfig;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.passthrough.MovieInfoPassthrough;
+import com.reactivespring.service.MovieInfoEvents;
+import com.reactivespring.service.MoviesInfoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.reactivespring.controller.MovieInfoControllerIT.MOVIES_INFO_URL;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * One request at a time is allowed.
+ */
+@WebFluxTest(controllers = MoviesInfoController.class)
+@Import({MovieInfoJsonCache.class, MovieInfoEvents.class, ConcurrencyLimitConfig.class})
+@TestPropertySource(properties = {
+        "concurrencyLimit.initialLimit=1",
+        "concurrencyLimit.minLimit=1",
+        "concurrencyLimit.maxLimit=1",
+        "concurrencyLimit.retryAfter=2s",
+})
+public class MovieInfoControllerConcurrencyLimitUnitTest {
+
+    @MockBean
+    private MoviesInfoService moviesInfoServiceMock;
+
+    @MockBean
+    private MovieInfoPassthrough movieInfoPassthroughMock;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MovieInfoEvents movieInfoEvents;
+
+    @Test
+    void requestsOverTheLimitAreShed() throws Exception {
+        //given
+        Sinks.Empty<Void> slowQuery = Sinks.empty();
+        when(moviesInfoServiceMock.getAllMovieInfo()).thenReturn(slowQuery.asMono().thenMany(Flux.<MovieInfo>empty()));
+        // holds the only request allowed
+        var held = CompletableFuture.runAsync(() -> webTestClient.get()
+                .uri(MOVIES_INFO_URL)
+                .exchange()
+                .expectStatus().isOk());
+        verify(moviesInfoServiceMock, timeout(5000)).getAllMovieInfo();
+
+        //when
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/search?q=batman")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2");
+
+        //then
+        // the streams have their own priority class
+        movieInfoEvents.publish(new MovieInfo("abc", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")));
+        var stream = webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+        StepVerifier.create(stream)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        slowQuery.tryEmitEmpty();
+        held.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -1,30 +1,51 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.cache.MovieInfoJsonCache;
+import com.reactivespring.config.DurabilityTemplates;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.InvalidDurabilityException;
+import com.reactivespring.passthrough.MovieInfoPassthrough;
+import com.reactivespring.service.MovieInfoEvents;
 import com.reactivespring.service.MoviesInfoService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
 
 import static com.reactivespring.controller.MovieInfoControllerIT.MOVIES_INFO_URL;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isA;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
+@Import({MovieInfoJsonCache.class, MovieInfoEvents.class})
 public class MovieInfoControllerUnitTest {
 
+    private static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
     @MockBean
     private MoviesInfoService moviesInfoServiceMock;
 
+    @MockBean
+    private MovieInfoPassthrough movieInfoPassthroughMock;
+
     @Autowired
     private WebTestClient webTestClient;
 
@@ -50,6 +71,39 @@ public class MovieInfoControllerUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void getAllMoviesInfo_Smile() {
+
+        when(moviesInfoServiceMock.getAllMovieInfo()).thenReturn(Flux.just(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"))));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .accept(APPLICATION_SMILE, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType(APPLICATION_SMILE)
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertEquals(LocalDate.parse("2012-07-20"), movieInfos.get(0).getRelease_date()));
+    }
+
+    @Test
+    void getAllMoviesInfo_InvalidFields_Smile() {
+
+        // the error messages stay plain text for the clients which prefer Smile
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields=budget")
+                .accept(APPLICATION_SMILE, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Invalid fields : budget, expected some of [movieInfoId, name, year, cast, release_date]");
+    }
+
     @Test
     void getMovieInfoById() {
         var id = "abc";
@@ -69,13 +123,153 @@ public class MovieInfoControllerUnitTest {
 
     }
 
+    @Test
+    void getMovieInfoById_Cached() {
+        var id = "cached";
+
+        when(moviesInfoServiceMock.getMovieInfoById(id))
+                .thenReturn(Mono.just(new MovieInfo(id, "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"))));
+
+        for (int i = 0; i < 2; i++) {
+            webTestClient
+                    .get()
+                    .uri(MOVIES_INFO_URL + "/{id}", id)
+                    .exchange()
+                    .expectStatus()
+                    .is2xxSuccessful()
+                    .expectBody()
+                    .jsonPath("$.release_date").isEqualTo("2012-07-20");
+        }
+
+        verify(moviesInfoServiceMock, times(1)).getMovieInfoById(id);
+    }
+
+    @Test
+    void getMovieInfoById_NotModified() {
+        var id = "etag";
+
+        when(moviesInfoServiceMock.getMovieInfoById(id))
+                .thenReturn(Mono.just(new MovieInfo(id, "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"))));
+
+        var etag = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().valueEquals("Cache-Control", "max-age=0, must-revalidate")
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(etag);
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader().valueEquals("ETag", etag)
+                .expectBody()
+                .isEmpty();
+    }
+
+    @Test
+    void getMovieInfoById_Fields() {
+        var id = "abc";
+
+        when(movieInfoPassthroughMock.findJsonById(id, Set.of("name", "year")))
+                .thenReturn(Mono.just("{\"name\":\"Dark Knight Rises\",\"year\":2012}".getBytes(StandardCharsets.UTF_8)));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}?fields=name, year", id)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$.cast").doesNotExist();
+
+        verify(moviesInfoServiceMock, times(0)).getMovieInfoById(id);
+    }
+
+    @Test
+    void getAllMoviesInfo_InvalidFields() {
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields=name,budget")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Invalid fields : name,budget, expected some of [movieInfoId, name, year, cast, release_date]");
+    }
+
+    @Test
+    void getAllMoviesInfo_Fields_Ndjson() {
+
+        when(movieInfoPassthroughMock.findAllJsonLines(isNull(), eq(Set.of("name")), isA(DataBufferFactory.class)))
+                .thenAnswer(invocation -> {
+                    DataBufferFactory bufferFactory = invocation.getArgument(2);
+                    return Flux.just("{\"name\":\"Batman Begins\"}\n", "{\"name\":\"The Dark Knight\"}\n")
+                            .map(line -> bufferFactory.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                });
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields=name")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo("{\"name\":\"Batman Begins\"}\n{\"name\":\"The Dark Knight\"}\n");
+
+        verify(moviesInfoServiceMock, times(0)).getAllMovieInfo();
+    }
+
+    @Test
+    void getAllMoviesInfo_InvalidFields_Ndjson() {
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields=budget")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Invalid fields : budget, expected some of [movieInfoId, name, year, cast, release_date]");
+    }
+
+    @Test
+    void getAllMoviesInfo_Fields_NotAcceptable() {
+
+        // the projections are only written as JSON or NDJSON, the fields are never silently ignored
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields=name")
+                .accept(APPLICATION_SMILE)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+
+        verify(moviesInfoServiceMock, times(0)).getAllMovieInfo();
+    }
+
     @Test
     void addNewMovieInfo() {
 
         var movieInfo = new MovieInfo(null, "Batman Begins",
                 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
 
-        when(moviesInfoServiceMock.addMovieInfo(isA(MovieInfo.class))).thenReturn(Mono.just(
+        when(moviesInfoServiceMock.addMovieInfo(isA(MovieInfo.class), isNull())).thenReturn(Mono.just(
                 new MovieInfo("mockId", "Batman Begins",
                         2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
 
@@ -94,6 +288,27 @@ public class MovieInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void addNewMovieInfo_InvalidDurability() {
+
+        var movieInfo = new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        when(moviesInfoServiceMock.addMovieInfo(isA(MovieInfo.class), eq("FAST")))
+                .thenThrow(new InvalidDurabilityException("Invalid X-Write-Durability : FAST"));
+
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL)
+                .header(DurabilityTemplates.DURABILITY_HEADER, "FAST")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Invalid X-Write-Durability : FAST");
+    }
+
     @Test
     void addNewMovieInfo_validation() {
 
@@ -122,7 +337,7 @@ public class MovieInfoControllerUnitTest {
         var updatedMovieInfo = new MovieInfo("abc", "Dark Knight Rises 1",
                 2013, List.of("Christian Bale1", "Tom Hardy1"), LocalDate.parse("2012-07-20"));
 
-        when(moviesInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), isA(String.class)))
+        when(moviesInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), isA(String.class), isNull()))
                 .thenReturn(Mono.just(updatedMovieInfo));
 
         webTestClient
@@ -146,7 +361,7 @@ public class MovieInfoControllerUnitTest {
         var updatedMovieInfo = new MovieInfo("abc", "Dark Knight Rises 1",
                 2013, List.of("Christian Bale1", "Tom Hardy1"), LocalDate.parse("2012-07-20"));
 
-        when(moviesInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), isA(String.class)))
+        when(moviesInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), isA(String.class), isNull()))
                 .thenReturn(Mono.empty());
 
 
@@ -163,7 +378,7 @@ public class MovieInfoControllerUnitTest {
     void deleteMovieInfoById() {
         var id = "abc";
 
-        when(moviesInfoServiceMock.deleteMovieInfoById(isA(String.class)))
+        when(moviesInfoServiceMock.deleteMovieInfoById(isA(String.class), isNull()))
                 .thenReturn(Mono.empty());
 
         webTestClient
@@ -174,4 +389,20 @@ public class MovieInfoControllerUnitTest {
                 .isNoContent();
     }
 
+    @Test
+    void searchMovieInfo() {
+
+        when(moviesInfoServiceMock.searchMovieInfo("dark kni", 50))
+                .thenReturn(Flux.just(new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"))));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/search?q={q}&limit=500", "dark kni")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
 }
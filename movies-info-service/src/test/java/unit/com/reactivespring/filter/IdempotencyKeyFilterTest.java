@@ -0,0 +1,224 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import com.reactivespring.idempotency.IdempotencyStore;
+import com.reactivespring.idempotency.InMemoryIdempotencyStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class IdempotencyKeyFilterTest {
+
+    private static final String BODY = "{\"name\":\"Batman Begins\",\"year\":2005}";
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final InMemoryIdempotencyStore inMemoryIdempotencyStore = new InMemoryIdempotencyStore(100);
+
+    private final IdempotencyKeyFilter idempotencyKeyFilter = idempotencyKeyFilter(inMemoryIdempotencyStore);
+
+    // simulates a slow POST handler creating a new document on every execution
+    private final WebFilterChain chain = exchange -> Mono.delay(Duration.ofMillis(100))
+            .then(Mono.defer(() -> {
+                var response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.CREATED);
+                response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                var body = "{\"id\":" + executions.incrementAndGet() + "}";
+                return response.writeWith(Mono.just(response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8))));
+            }));
+
+    @Test
+    void retryIsReplayed() {
+
+        var first = post("/v1/movieinfo", "key-1");
+        idempotencyKeyFilter.filter(first, chain).block();
+
+        var retry = post("/v1/movieinfo", "key-1");
+        idempotencyKeyFilter.filter(retry, chain).block();
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.CREATED, retry.getResponse().getStatusCode());
+        assertEquals("true", retry.getResponse().getHeaders().getFirst(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+        assertEquals("{\"id\":1}", retry.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForInFlightExecution() {
+
+        var first = post("/v1/movieinfo", "key-1");
+        var duplicate = post("/v1/movieinfo", "key-1");
+
+        Mono.when(idempotencyKeyFilter.filter(first, chain), idempotencyKeyFilter.filter(duplicate, chain))
+                .block();
+
+        assertEquals(1, executions.get());
+        assertNull(first.getResponse().getHeaders().getFirst(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+        assertEquals("{\"id\":1}", duplicate.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void concurrentDuplicateMissingTheStoredResponseIsReplayed() {
+
+        var lookups = new AtomicInteger();
+        Sinks.Empty<Void> firstDone = Sinks.empty();
+        // the duplicate looks the key up before the first request stores its response, but only gets the miss once it is done
+        var idempotencyStore = new IdempotencyStore() {
+            @Override
+            public Mono<IdempotencyRecord> find(String key) {
+                // released a little after the first request, once it has left inFlight as well
+                return lookups.getAndIncrement() == 0
+                        ? firstDone.asMono().then(Mono.delay(Duration.ofMillis(50))).then(Mono.empty())
+                        : inMemoryIdempotencyStore.find(key);
+            }
+
+            @Override
+            public Mono<Void> save(IdempotencyRecord idempotencyRecord) {
+                return inMemoryIdempotencyStore.save(idempotencyRecord);
+            }
+
+            @Override
+            public Mono<Boolean> claim(IdempotencyRecord idempotencyRecord) {
+                return inMemoryIdempotencyStore.claim(idempotencyRecord);
+            }
+
+            @Override
+            public Mono<Void> release(String key) {
+                return inMemoryIdempotencyStore.release(key);
+            }
+        };
+        var filter = idempotencyKeyFilter(idempotencyStore);
+
+        var first = post("/v1/movieinfo", "key-1");
+        var duplicate = post("/v1/movieinfo", "key-1");
+
+        Mono.when(filter.filter(duplicate, chain),
+                        filter.filter(first, chain).doFinally(signalType -> firstDone.tryEmitEmpty()))
+                .block();
+
+        assertEquals(1, executions.get());
+        assertEquals("true", duplicate.getResponse().getHeaders().getFirst(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+        assertEquals("{\"id\":1}", duplicate.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void keysAreScopedToThePath() {
+
+        idempotencyKeyFilter.filter(post("/v1/movieinfo", "key-1"), chain).block();
+        idempotencyKeyFilter.filter(post("/v1/other", "key-1"), chain).block();
+        idempotencyKeyFilter.filter(post("/v1/movieinfo", null), chain).block();
+
+        assertEquals(3, executions.get());
+    }
+
+    @Test
+    void keysAreScopedToTheClient() {
+
+        idempotencyKeyFilter.filter(post("/v1/movieinfo", "key-1", "10.0.0.1", BODY), chain).block();
+        var otherClient = post("/v1/movieinfo", "key-1", "10.0.0.2", BODY);
+        idempotencyKeyFilter.filter(otherClient, chain).block();
+
+        assertEquals(2, executions.get());
+        assertEquals("{\"id\":2}", otherClient.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void retryWithAnotherBodyIsRejected() {
+
+        idempotencyKeyFilter.filter(post("/v1/movieinfo", "key-1"), chain).block();
+
+        var retry = post("/v1/movieinfo", "key-1", "10.0.0.1", "{\"name\":\"The Dark Knight\",\"year\":2008}");
+        idempotencyKeyFilter.filter(retry, chain).block();
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, retry.getResponse().getStatusCode());
+    }
+
+    @Test
+    void handlerReadsTheBodyAfterItIsHashed() {
+
+        var bodies = new ArrayList<String>();
+        WebFilterChain readingChain = exchange -> exchange.getRequest().getBody()
+                .map(dataBuffer -> dataBuffer.toString(StandardCharsets.UTF_8))
+                .doOnNext(bodies::add)
+                .then(chain.filter(exchange));
+
+        idempotencyKeyFilter.filter(post("/v1/movieinfo", "key-1"), readingChain).block();
+
+        assertEquals(List.of(BODY), bodies);
+    }
+
+    @Test
+    void duplicateOnAnotherInstanceGetsConflict() {
+
+        // two instances of the service sharing the store
+        var otherInstance = idempotencyKeyFilter(inMemoryIdempotencyStore);
+        var first = post("/v1/movieinfo", "key-1");
+        var duplicate = post("/v1/movieinfo", "key-1");
+
+        Mono.when(idempotencyKeyFilter.filter(first, chain),
+                        Mono.delay(Duration.ofMillis(20)).then(otherInstance.filter(duplicate, chain)))
+                .block();
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.CREATED, first.getResponse().getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, duplicate.getResponse().getStatusCode());
+        assertEquals("1", duplicate.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        // once the first one is done, the retry is replayed there too
+        var retry = post("/v1/movieinfo", "key-1");
+        otherInstance.filter(retry, chain).block();
+        assertEquals("{\"id\":1}", retry.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void serverErrorReleasesTheKey() {
+
+        WebFilterChain failingChain = exchange -> {
+            executions.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return exchange.getResponse().setComplete();
+        };
+        idempotencyKeyFilter.filter(post("/v1/movieinfo", "key-1"), failingChain).block();
+
+        var retry = post("/v1/movieinfo", "key-1");
+        idempotencyKeyFilter.filter(retry, chain).block();
+
+        assertEquals(2, executions.get());
+        assertEquals(HttpStatus.CREATED, retry.getResponse().getStatusCode());
+        assertNull(retry.getResponse().getHeaders().getFirst(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+    }
+
+    private static IdempotencyKeyFilter idempotencyKeyFilter(IdempotencyStore idempotencyStore) {
+        return new IdempotencyKeyFilter(idempotencyStore, new ClientIdResolver("X-Client-Id", List.of()),
+                Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    private MockServerWebExchange post(String path, String idempotencyKey) {
+        return post(path, idempotencyKey, "10.0.0.1", BODY);
+    }
+
+    private MockServerWebExchange post(String path, String idempotencyKey, String clientAddress, String body) {
+        var request = MockServerHttpRequest.post(path)
+                .remoteAddress(new InetSocketAddress(clientAddress, 50000));
+        if (idempotencyKey != null) {
+            request.header(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        return MockServerWebExchange.from(request.body(body));
+    }
+}
@@ -0,0 +1,174 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.config.RateLimitProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitFilterTest {
+
+    private static final String PROXY = "10.0.0.1";
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final WebFilterChain chain = exchange -> Mono.fromRunnable(executions::incrementAndGet);
+
+    private RateLimitFilter rateLimitFilter(int maxClients, RateLimitProperties.Route... routes) {
+        var properties = new RateLimitProperties();
+        properties.setMaxClients(maxClients);
+        properties.setTrustedProxies(List.of(PROXY));
+        properties.setRoutes(List.of(routes));
+        return new RateLimitFilter(properties, nanoTime::get);
+    }
+
+    private static RateLimitProperties.Route route(String path, List<HttpMethod> methods, double requestsPerSecond, int burst) {
+        var route = new RateLimitProperties.Route();
+        route.setPath(path);
+        route.setMethods(methods);
+        route.setRequestsPerSecond(requestsPerSecond);
+        route.setBurst(burst);
+        return route;
+    }
+
+    @Test
+    void clientOverItsBurstIsLimited() {
+        //given
+        var rateLimitFilter = rateLimitFilter(1000, route("/v1/movieinfo/**", List.of(), 1, 2));
+
+        //when
+        var first = request(HttpMethod.GET, "/v1/movieinfo/1", "client-1");
+        rateLimitFilter.filter(first, chain).block();
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo", "client-1"), chain).block();
+        var limited = request(HttpMethod.GET, "/v1/movieinfo/1", "client-1");
+        rateLimitFilter.filter(limited, chain).block();
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-2"), chain).block();
+
+        //then
+        assertEquals(3, executions.get());
+        assertEquals("2", first.getResponse().getHeaders().getFirst(RateLimitFilter.LIMIT_HEADER));
+        assertEquals("1", first.getResponse().getHeaders().getFirst(RateLimitFilter.REMAINING_HEADER));
+        assertEquals("1", first.getResponse().getHeaders().getFirst(RateLimitFilter.RESET_HEADER));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, limited.getResponse().getStatusCode());
+        assertEquals("0", limited.getResponse().getHeaders().getFirst(RateLimitFilter.REMAINING_HEADER));
+        assertEquals("1", limited.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        // a token later
+        nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+        var refilled = request(HttpMethod.GET, "/v1/movieinfo/1", "client-1");
+        rateLimitFilter.filter(refilled, chain).block();
+        assertEquals(4, executions.get());
+        assertEquals("0", refilled.getResponse().getHeaders().getFirst(RateLimitFilter.REMAINING_HEADER));
+    }
+
+    @Test
+    void firstMatchingRouteApplies() {
+        //given
+        var rateLimitFilter = rateLimitFilter(1000,
+                route("/v1/movieinfo/**", List.of(HttpMethod.POST), 1, 1),
+                route("/v1/movieinfo/**", List.of(), 100, 100));
+
+        //when
+        rateLimitFilter.filter(request(HttpMethod.POST, "/v1/movieinfo", "client-1"), chain).block();
+        var limited = request(HttpMethod.POST, "/v1/movieinfo", "client-1");
+        rateLimitFilter.filter(limited, chain).block();
+        var read = request(HttpMethod.GET, "/v1/movieinfo/1", "client-1");
+        rateLimitFilter.filter(read, chain).block();
+        var unlimited = request(HttpMethod.GET, "/actuator/health", "client-1");
+        rateLimitFilter.filter(unlimited, chain).block();
+
+        //then
+        assertEquals(3, executions.get());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, limited.getResponse().getStatusCode());
+        assertEquals("99", read.getResponse().getHeaders().getFirst(RateLimitFilter.REMAINING_HEADER));
+        assertNull(unlimited.getResponse().getHeaders().getFirst(RateLimitFilter.LIMIT_HEADER));
+    }
+
+    @Test
+    void clientIdOnlyTrustedFromTheProxies() {
+        //given
+        var rateLimitFilter = rateLimitFilter(1000, route("/v1/movieinfo/**", List.of(), 1, 2));
+
+        //when
+        // a new id with every request does not make a new client
+        for (int i = 0; i < 3; i++) {
+            rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-" + i, "192.168.0.9"), chain).block();
+        }
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", null, "192.168.0.10"), chain).block();
+
+        //then
+        assertEquals(3, executions.get());
+        assertEquals(2, rateLimitFilter.clients("/v1/movieinfo/**"));
+    }
+
+    @Test
+    void clientsAreBounded() {
+        //given
+        var rateLimitFilter = rateLimitFilter(128, route("/v1/movieinfo/**", List.of(), 1, 1));
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-0"), chain).block();
+
+        //when
+        for (int i = 1; i < 2_000; i++) {
+            rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-" + i), chain).block();
+        }
+
+        //then
+        var clients = rateLimitFilter.clients("/v1/movieinfo/**");
+        assertTrue(clients <= 128, "clients : " + clients);
+        // the new clients of a full stripe share its bucket
+        assertTrue(executions.get() <= 128 + 64, "executions : " + executions.get());
+        // while a client tracked before still has its own, as empty as it left it
+        var limited = request(HttpMethod.GET, "/v1/movieinfo/1", "client-0");
+        rateLimitFilter.filter(limited, chain).block();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, limited.getResponse().getStatusCode());
+    }
+
+    @Test
+    void fullBucketsAreSwept() {
+        //given
+        var rateLimitFilter = rateLimitFilter(1000, route("/v1/movieinfo/**", List.of(), 1, 2));
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-1"), chain).block();
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-2"), chain).block();
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-2"), chain).block();
+
+        //when
+        // client-1 is full again, client-2 still owes a token
+        nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+        rateLimitFilter.sweep();
+
+        //then
+        assertEquals(1, rateLimitFilter.clients("/v1/movieinfo/**"));
+        rateLimitFilter.filter(request(HttpMethod.GET, "/v1/movieinfo/1", "client-2"), chain).block();
+        var limited = request(HttpMethod.GET, "/v1/movieinfo/1", "client-2");
+        rateLimitFilter.filter(limited, chain).block();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, limited.getResponse().getStatusCode());
+    }
+
+    private MockServerWebExchange request(HttpMethod method, String path, String clientId) {
+        return request(method, path, clientId, PROXY);
+    }
+
+    private MockServerWebExchange request(HttpMethod method, String path, String clientId, String remoteAddress) {
+        var request = MockServerHttpRequest.method(method, path)
+                .remoteAddress(new InetSocketAddress(remoteAddress, 40000));
+        if (clientId != null) {
+            request.header("X-Client-Id", clientId);
+        }
+        return MockServerWebExchange.from(request);
+    }
+}
@@ -0,0 +1,87 @@
+package com.reactivespring.passthrough;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MovieInfoBsonTranscoderTest {
+
+    // configured like the ObjectMapper of Spring Boot, the one the regular path encodes the responses with
+    static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    static final MappingMongoConverter CONVERTER = converter();
+
+    private final MovieInfoBsonTranscoder transcoder = new MovieInfoBsonTranscoder(OBJECT_MAPPER);
+
+    @Test
+    void sameJsonAsTheMappedMovieInfo() throws Exception {
+        for (MovieInfo movieInfo : List.of(
+                new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("5f4d3c2b1a0f9e8d7c6b5a49", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("def", "Léon \"The Professional\"", 1994, Arrays.asList("Jean Reno", null), null),
+                new MovieInfo(null, null, null, null, null))) {
+
+            var json = new String(transcoder.toJson(toRawBson(movieInfo), null), StandardCharsets.UTF_8);
+
+            assertEquals(OBJECT_MAPPER.writeValueAsString(movieInfo), json);
+        }
+    }
+
+    @Test
+    void datesAsTimestampsWhenTheObjectMapperSaysSo() throws Exception {
+        var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale"), LocalDate.parse("2012-07-20"));
+
+        var json = new String(new MovieInfoBsonTranscoder(objectMapper).toJson(toRawBson(movieInfo), null), StandardCharsets.UTF_8);
+
+        assertEquals(objectMapper.writeValueAsString(movieInfo), json);
+    }
+
+    @Test
+    void projectedFieldsOnly() {
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        var json = new String(transcoder.toJson(toRawBson(movieInfo), Set.of("name", "movieInfoId")), StandardCharsets.UTF_8);
+
+        // the canonical order is kept, whatever the order the fields are requested in
+        assertEquals("{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\"}", json);
+    }
+
+    /**
+     * Encodes the movie info the way the repository stores it, _class included.
+     */
+    static RawBsonDocument toRawBson(MovieInfo movieInfo) {
+        var document = new Document();
+        CONVERTER.write(movieInfo, document);
+        return new RawBsonDocument(document, new DocumentCodec());
+    }
+
+    private static MappingMongoConverter converter() {
+        var conversions = new MongoCustomConversions(List.of());
+        var mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        var converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
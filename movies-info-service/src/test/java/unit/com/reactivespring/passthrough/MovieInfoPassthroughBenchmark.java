@@ -0,0 +1,64 @@
+package com.reactivespring.passthrough;
+
+import com.reactivespring.domain.MovieInfo;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.reactivespring.passthrough.MovieInfoBsonTranscoderTest.CONVERTER;
+import static com.reactivespring.passthrough.MovieInfoBsonTranscoderTest.OBJECT_MAPPER;
+import static com.reactivespring.passthrough.MovieInfoBsonTranscoderTest.toRawBson;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Compares the cost of turning a movie info read from the driver into JSON, mapped to a MovieInfo and
+ * encoded by Jackson versus transcoded from the raw BSON. Excluded from the build, run it with
+ * ./gradlew benchmark
+ */
+@Tag("benchmark")
+public class MovieInfoPassthroughBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private final MovieInfoBsonTranscoder transcoder = new MovieInfoBsonTranscoder(OBJECT_MAPPER);
+    private final DocumentCodec documentCodec = new DocumentCodec();
+
+    @Test
+    void mappedVersusPassthrough() {
+        var document = toRawBson(new MovieInfo("5f4d3c2b1a0f9e8d7c6b5a49", "The Dark Knight", 2008,
+                List.of("Christian Bale", "Heath Ledger", "Aaron Eckhart", "Michael Caine"), LocalDate.parse("2008-07-18")));
+        Function<RawBsonDocument, byte[]> mapped = raw -> {
+            try {
+                return OBJECT_MAPPER.writeValueAsBytes(CONVERTER.read(MovieInfo.class, raw.decode(documentCodec)));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        };
+        Function<RawBsonDocument, byte[]> passthrough = raw -> transcoder.toJson(raw, null);
+
+        assertArrayEquals(mapped.apply(document), passthrough.apply(document));
+        run("mapped", mapped, document, WARMUP_ITERATIONS);
+        run("passthrough", passthrough, document, WARMUP_ITERATIONS);
+        System.out.printf("mapped      : %d ns/op%n", run("mapped", mapped, document, ITERATIONS));
+        System.out.printf("passthrough : %d ns/op%n", run("passthrough", passthrough, document, ITERATIONS));
+    }
+
+    private static long run(String name, Function<RawBsonDocument, byte[]> toJson, RawBsonDocument document, int iterations) {
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            bytes += toJson.apply(document).length;
+        }
+        long nanosPerOp = (System.nanoTime() - start) / iterations;
+        if (bytes == 0) {
+            throw new IllegalStateException(name + " produced no output");
+        }
+        return nanosPerOp;
+    }
+}
@@ -0,0 +1,61 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class MovieInfoSearchIndexTest {
+
+    private final MovieInfoSearchIndex movieInfoSearchIndex = new MovieInfoSearchIndex(mock(MovieInfoRepository.class));
+
+    @BeforeEach
+    void setUp() {
+        movieInfoSearchIndex.index(new MovieInfo("1", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+        movieInfoSearchIndex.index(new MovieInfo("2", "The Dark Knight",
+                2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+        movieInfoSearchIndex.index(new MovieInfo("3", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+    }
+
+    @Test
+    void nameMatchesRankFirst() {
+        assertEquals(List.of("3", "2"), search("dark kn"));
+        assertEquals(List.of("1"), search("bat bale"));
+    }
+
+    @Test
+    void queryIsNormalized() {
+        // same score for all three, shorter names first
+        assertEquals(List.of("1", "2", "3"), search("  BÁLE "));
+    }
+
+    @Test
+    void castIsSearched() {
+        assertEquals(List.of("3"), search("hard"));
+    }
+
+    @Test
+    void indexFollowsUpdatesAndDeletes() {
+        movieInfoSearchIndex.index(new MovieInfo("3", "The Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+        movieInfoSearchIndex.remove("2");
+
+        assertEquals(List.of("3"), search("the"));
+        assertEquals(List.of(), search("heath"));
+    }
+
+    private List<String> search(String query) {
+        return movieInfoSearchIndex.search(query, 10).stream()
+                .map(MovieInfo::getMovieInfoId)
+                .collect(Collectors.toList());
+    }
+}
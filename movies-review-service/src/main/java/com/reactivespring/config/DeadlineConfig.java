@@ -0,0 +1,22 @@
+package com.reactivespring.config;
+
+import com.reactivespring.filter.RequestDeadlineFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+@Configuration
+@ConditionalOnProperty(name = "deadline.enabled", havingValue = "true", matchIfMissing = true)
+public class DeadlineConfig {
+
+    /**
+     * Right after the rate and concurrency limits, so that the time spent in the other filters counts too.
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    public RequestDeadlineFilter requestDeadlineFilter() {
+        return new RequestDeadlineFilter();
+    }
+}
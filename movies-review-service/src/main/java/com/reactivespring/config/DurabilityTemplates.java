@@ -0,0 +1,57 @@
+package com.reactivespring.config;
+
+import com.reactivespring.exception.ReviewDataException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds one template per {@link DurabilityTier}, all sharing the same database factory and converter,
+ * so that every write can pick its write concern without touching the driver defaults.
+ */
+@Component
+public class DurabilityTemplates {
+
+    public static final String DURABILITY_HEADER = "X-Write-Durability";
+
+    private final Map<DurabilityTier, ReactiveMongoTemplate> templates = new EnumMap<>(DurabilityTier.class);
+    private final boolean allowRequestOverride;
+
+    public DurabilityTemplates(ReactiveMongoDatabaseFactory mongoDatabaseFactory,
+                               MongoConverter mongoConverter,
+                               @Value("${durability.allowRequestOverride:true}") boolean allowRequestOverride) {
+        this.allowRequestOverride = allowRequestOverride;
+        for (DurabilityTier tier : DurabilityTier.values()) {
+            var template = new ReactiveMongoTemplate(mongoDatabaseFactory, mongoConverter);
+            template.setWriteConcern(tier.getWriteConcern());
+            templates.put(tier, template);
+        }
+    }
+
+    public ReactiveMongoOperations forTier(DurabilityTier tier) {
+        return templates.get(tier);
+    }
+
+    /**
+     * Returns the tier requested by the client if overrides are allowed and it is at least as durable as the
+     * configured one, otherwise the configured one: a client can pay for a safer write, but not weaken one.
+     */
+    public DurabilityTier resolve(DurabilityTier configured, String requested) {
+        if (requested == null || !allowRequestOverride) {
+            return configured;
+        }
+        var requestedTier = Arrays.stream(DurabilityTier.values())
+                .filter(tier -> tier.name().equalsIgnoreCase(requested))
+                .findFirst()
+                .orElseThrow(() -> new ReviewDataException("Invalid " + DURABILITY_HEADER + " : " + requested
+                        + ", expected one of " + Arrays.toString(DurabilityTier.values())));
+        return requestedTier.isAtLeastAsDurableAs(configured) ? requestedTier : configured;
+    }
+}
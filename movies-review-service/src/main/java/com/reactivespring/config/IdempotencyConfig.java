@@ -0,0 +1,44 @@
+package com.reactivespring.config;
+
+import com.reactivespring.filter.ClientIdResolver;
+import com.reactivespring.filter.IdempotencyKeyFilter;
+import com.reactivespring.idempotency.IdempotencyStore;
+import com.reactivespring.idempotency.InMemoryIdempotencyStore;
+import com.reactivespring.idempotency.MongoIdempotencyStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "idempotency.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class IdempotencyConfig {
+
+    @Bean
+    public IdempotencyStore idempotencyStore(@Value("${idempotency.store:memory}") String store,
+                                             @Value("${idempotency.maxEntries:10000}") int maxEntries,
+                                             ReactiveMongoOperations mongoOperations) {
+        if ("mongo".equalsIgnoreCase(store)) {
+            return new MongoIdempotencyStore(mongoOperations);
+        }
+        return new InMemoryIdempotencyStore(maxEntries);
+    }
+
+    /**
+     * Tells the clients apart the way the rate limit does, with its clientIdHeader and trustedProxies.
+     */
+    @Bean
+    public IdempotencyKeyFilter idempotencyKeyFilter(IdempotencyStore idempotencyStore,
+                                                     RateLimitProperties rateLimitProperties,
+                                                     @Value("${idempotency.ttl:24h}") Duration ttl,
+                                                     @Value("${idempotency.claimTimeout:1m}") Duration claimTimeout) {
+        var clientIdResolver = new ClientIdResolver(rateLimitProperties.getClientIdHeader(),
+                rateLimitProperties.getTrustedProxies());
+        return new IdempotencyKeyFilter(idempotencyStore, clientIdResolver, ttl, claimTimeout);
+    }
+}
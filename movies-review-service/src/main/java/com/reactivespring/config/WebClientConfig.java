@@ -0,0 +1,39 @@
+package com.reactivespring.config;
+
+import com.reactivespring.handler.ResponseMediaTypes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+
+@Configuration
+public class WebClientConfig {
+
+    /**
+     * Asks for Smile, a binary encoding of the JSON data model which is much cheaper to parse and
+     * produce, and which our services write as soon as it is on their classpath. JSON remains acceptable,
+     * for the endpoints which only write JSON. The requests which set their own Accept, such as the NDJSON
+     * streams, are left alone.
+     */
+    @Bean
+    public WebClientCustomizer smileWebClientCustomizer(@Value("${reviews.movieCheck.smile:true}") boolean smile) {
+        return webClientBuilder -> {
+            if (smile) {
+                webClientBuilder.defaultHeader(HttpHeaders.ACCEPT, ResponseMediaTypes.APPLICATION_SMILE.toString(), "application/json;q=0.9");
+            }
+        };
+    }
+
+    /**
+     * Sends Accept-Encoding: gzip and decompresses the responses transparently, on the connection pool
+     * and event loops Spring Boot manages. Used by the movie check, which follows the movie info stream.
+     */
+    @Bean
+    public WebClientCustomizer compressionWebClientCustomizer(ReactorResourceFactory reactorResourceFactory) {
+        return webClientBuilder -> webClientBuilder.clientConnector(
+                new ReactorClientHttpConnector(reactorResourceFactory, httpClient -> httpClient.compress(true)));
+    }
+}
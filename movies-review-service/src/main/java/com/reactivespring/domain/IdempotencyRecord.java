@@ -0,0 +1,34 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * The first response returned for an Idempotency-Key, replayed to every retry carrying the same key and the same
+ * request body. Until the response is known, the record only claims the key for the execution under way : its
+ * status is 0 and it expires after the claim timeout, so that an execution lost with its instance frees the key.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class IdempotencyRecord {
+
+    @Id
+    private String key;
+    private int status;
+    private String contentType;
+    private byte[] body;
+    // SHA-256 of the request body, Base64 encoded
+    private String requestHash;
+    private Instant expiresAt;
+
+    public boolean isInFlight() {
+        return status == 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rating aggregates of a movie, maintained with $inc on every review write.
+ * Only reviews with a rating are counted, but every write to the reviews of the movie bumps the version.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewStats {
+
+    @Id
+    private Long movieInfoId;
+    private long count;
+    private double sum;
+    private Double min;
+    private Double max;
+    // number of reviews per rating, rounded down : "0" to "10"
+    private Map<String, Long> histogram = new HashMap<>();
+    // bumped on every write to the reviews of the movie, rated or not, so that clients can tell when they changed
+    private long version;
+
+    public static ReviewStats empty(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 0, 0.0, null, null, new HashMap<>(), 0);
+    }
+
+    public Double getAverage() {
+        return count == 0 ? null : sum / count;
+    }
+}
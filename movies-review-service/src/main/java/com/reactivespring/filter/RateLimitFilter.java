@@ -0,0 +1,226 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Limits the requests of each client to the routes of application.yml with a token bucket per client and route,
+ * answering 429 with a Retry-After over the limit. Every response of a limited route carries the
+ * X-RateLimit-Limit, X-RateLimit-Remaining and X-RateLimit-Reset headers, the latter in seconds until the bucket
+ * is full again.
+ * <p>
+ * A client is told by a {@link ClientIdResolver}, from the clientIdHeader and the trustedProxies.
+ * <p>
+ * A bucket is a single long, the time at which it is full again, updated with a compare and set : taking a token
+ * pushes it one interval further, and a request which would push it over burst intervals from now is refused.
+ * A full bucket is the same as no bucket at all, so those are forgotten every sweepInterval, off the request path.
+ * A stripe of clients holding its share of maxClients takes no new one until then : the clients arriving meanwhile
+ * share the overflow bucket of the stripe, and the ones already tracked keep their own.
+ */
+@Slf4j
+public class RateLimitFilter implements WebFilter {
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String RESET_HEADER = "X-RateLimit-Reset";
+
+    private static final int STRIPES = 64;
+
+    private final List<Route> routes;
+    private final ClientIdResolver clientIdResolver;
+    private final int maxClientsPerStripe;
+    private final Duration sweepInterval;
+    private final LongSupplier nanoTime;
+
+    private Disposable sweeps;
+
+    public RateLimitFilter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    RateLimitFilter(RateLimitProperties properties, LongSupplier nanoTime) {
+        this.clientIdResolver = new ClientIdResolver(properties.getClientIdHeader(), properties.getTrustedProxies());
+        this.maxClientsPerStripe = Math.max(1, properties.getMaxClients() / STRIPES);
+        this.sweepInterval = properties.getSweepInterval();
+        this.nanoTime = nanoTime;
+        this.routes = properties.getRoutes().stream()
+                .map(Route::new)
+                .collect(Collectors.toList());
+    }
+
+    @PostConstruct
+    void start() {
+        sweeps = Flux.interval(sweepInterval, sweepInterval, Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .subscribe(tick -> sweep());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (sweeps != null) {
+            sweeps.dispose();
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var request = exchange.getRequest();
+        var route = route(request);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+        var clientId = clientIdResolver.clientId(request);
+        var debt = route.take(clientId, nanoTime.getAsLong());
+        var response = exchange.getResponse();
+        response.getHeaders().set(LIMIT_HEADER, String.valueOf(route.burst));
+        if (debt > route.burstNanos) {
+            route.rejected.increment();
+            log.debug("Rate limited {} {} for {}", request.getMethod(), request.getPath(), clientId);
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set(REMAINING_HEADER, "0");
+            response.getHeaders().set(RESET_HEADER, seconds(debt - route.intervalNanos));
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, seconds(debt - route.burstNanos));
+            return response.setComplete();
+        }
+        response.getHeaders().set(REMAINING_HEADER, String.valueOf((route.burstNanos - debt) / route.intervalNanos));
+        response.getHeaders().set(RESET_HEADER, seconds(debt));
+        return chain.filter(exchange);
+    }
+
+    private Route route(ServerHttpRequest request) {
+        var path = request.getPath().pathWithinApplication();
+        for (Route route : routes) {
+            if ((route.methods.isEmpty() || route.methods.contains(request.getMethod())) && route.path.matches(path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    // whole seconds, rounded up
+    private static String seconds(long nanos) {
+        return String.valueOf((nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Forgets the clients whose bucket is full again.
+     */
+    void sweep() {
+        var now = nanoTime.getAsLong();
+        routes.forEach(route -> route.sweep(now));
+    }
+
+    int clients(String path) {
+        return routes.stream()
+                .filter(route -> route.path.getPatternString().equals(path))
+                .mapToInt(Route::clients)
+                .sum();
+    }
+
+    private class Route {
+
+        private final PathPattern path;
+        private final Set<HttpMethod> methods;
+        private final int burst;
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final Counter rejected;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final ConcurrentHashMap<String, AtomicLong>[] stripes = new ConcurrentHashMap[STRIPES];
+        private final AtomicLong[] overflows = new AtomicLong[STRIPES];
+
+        Route(RateLimitProperties.Route route) {
+            if (route.getRequestsPerSecond() <= 0 || route.getBurst() < 1) {
+                throw new IllegalArgumentException("The rate limit of " + route.getPath() + " must allow some requests");
+            }
+            this.path = PathPatternParser.defaultInstance.parse(route.getPath());
+            this.methods = route.getMethods().isEmpty() ? Set.of() : EnumSet.copyOf(route.getMethods());
+            this.burst = route.getBurst();
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / route.getRequestsPerSecond());
+            this.burstNanos = intervalNanos * burst;
+            var name = methods.isEmpty() ? route.getPath() : methods + " " + route.getPath();
+            this.rejected = Metrics.counter("http.server.requests.rateLimited", "route", name);
+            var now = nanoTime.getAsLong();
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new ConcurrentHashMap<>();
+                overflows[i] = new AtomicLong(now);
+            }
+            Metrics.gauge("rateLimit.clients", Tags.of("route", name), this, Route::clients);
+        }
+
+        /**
+         * Takes a token from the bucket of the client, and returns how far ahead of now the bucket is full again.
+         * Over burstNanos the token was not available, and the bucket is left as it was.
+         */
+        long take(String clientId, long now) {
+            var bucket = bucket(clientId, now);
+            while (true) {
+                var full = bucket.get();
+                var debt = Math.max(full - now, 0) + intervalNanos;
+                if (debt > burstNanos) {
+                    return debt;
+                }
+                if (bucket.compareAndSet(full, now + debt)) {
+                    return debt;
+                }
+            }
+        }
+
+        private AtomicLong bucket(String clientId, long now) {
+            var index = (clientId.hashCode() & Integer.MAX_VALUE) % STRIPES;
+            var stripe = stripes[index];
+            var bucket = stripe.get(clientId);
+            if (bucket != null) {
+                return bucket;
+            }
+            // concurrent new clients may take the stripe a little over its share, never further
+            if (stripe.size() >= maxClientsPerStripe) {
+                return overflows[index];
+            }
+            return stripe.computeIfAbsent(clientId, key -> new AtomicLong(now));
+        }
+
+        void sweep(long now) {
+            for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+                stripe.values().removeIf(bucket -> bucket.get() - now <= 0);
+            }
+        }
+
+        int clients() {
+            var clients = 0;
+            for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+                clients += stripe.size();
+            }
+            return clients;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.reactivespring.handler;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+import java.util.ArrayList;
+
+/**
+ * Content negotiation for the functional endpoints, which unlike the annotated controllers write a body with the
+ * first codec able to, whatever the Accept header asks for.
+ */
+public final class ResponseMediaTypes {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    private ResponseMediaTypes() {
+    }
+
+    /**
+     * Smile when the client prefers it over JSON, JSON otherwise : a wildcard or a missing Accept stays JSON.
+     */
+    public static MediaType negotiate(ServerRequest serverRequest) {
+        var accepted = new ArrayList<>(serverRequest.headers().accept());
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (mediaType.includes(APPLICATION_SMILE)) {
+                return APPLICATION_SMILE;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
@@ -0,0 +1,67 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewDataException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The fields of a review as they appear in the JSON, which the fields= parameter picks from.
+ */
+public final class ReviewFields {
+
+    // in the order of the Review fields, which is the order Jackson writes them in
+    public static final List<String> FIELDS = List.of("reviewId", "movieInfoId", "comment", "rating");
+
+    private ReviewFields() {
+    }
+
+    /**
+     * Parses a comma separated list of fields, rejecting the unknown ones.
+     */
+    public static Set<String> parse(String fields) {
+        var parsed = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        var unknown = parsed.stream()
+                .filter(field -> !FIELDS.contains(field))
+                .collect(Collectors.toList());
+        if (parsed.isEmpty() || !unknown.isEmpty()) {
+            throw new ReviewDataException("fields : must be some of " + FIELDS);
+        }
+        return parsed;
+    }
+
+    /**
+     * Keeps the given fields of the review only, in the same order as the full JSON, nulls included.
+     */
+    public static Map<String, Object> project(Review review, Set<String> fields) {
+        var projected = new LinkedHashMap<String, Object>();
+        for (String field : FIELDS) {
+            if (fields.contains(field)) {
+                projected.put(field, value(review, field));
+            }
+        }
+        return projected;
+    }
+
+    private static Object value(Review review, String field) {
+        switch (field) {
+            case "reviewId":
+                return review.getReviewId();
+            case "movieInfoId":
+                return review.getMovieInfoId();
+            case "comment":
+                return review.getComment();
+            default:
+                return review.getRating();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.search.ReviewSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Component
+public class ReviewSearchHandler {
+
+    private final ReviewSearchIndex reviewSearchIndex;
+    private final ReviewReactiveRepository reviewReactiveRepository;
+
+    @Value("${reviews.search.maxLimit:100}")
+    private int maxLimit;
+
+    public ReviewSearchHandler(ReviewSearchIndex reviewSearchIndex, ReviewReactiveRepository reviewReactiveRepository) {
+        this.reviewSearchIndex = reviewSearchIndex;
+        this.reviewReactiveRepository = reviewReactiveRepository;
+    }
+
+    /**
+     * The index only returns ids, the reviews themselves are read from Mongo in the order of the ranking.
+     */
+    public Mono<ServerResponse> searchReviews(ServerRequest serverRequest) {
+        var query = serverRequest.queryParam("q")
+                .filter(q -> !q.isBlank())
+                .orElseThrow(() -> new ReviewDataException("q : must not be empty"));
+        Long movieInfoId;
+        int limit;
+        try {
+            movieInfoId = serverRequest.queryParam("movieInfoId").map(Long::valueOf).orElse(null);
+            limit = serverRequest.queryParam("limit").map(Integer::parseInt).orElse(20);
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException("movieInfoId and limit : must be numbers");
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw new ReviewDataException("limit : must be between 1 and " + maxLimit);
+        }
+
+        var reviewIds = reviewSearchIndex.search(query, movieInfoId, limit);
+        var reviews = reviewReactiveRepository.findAllById(reviewIds)
+                .collectMap(Review::getReviewId)
+                .flatMapIterable(reviewsById -> reviewIds.stream()
+                        .map(reviewsById::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()));
+        return ServerResponse.ok()
+                .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                .body(reviews, Review.class);
+    }
+}
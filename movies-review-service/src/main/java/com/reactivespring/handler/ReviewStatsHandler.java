@@ -0,0 +1,99 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.TopRatedMovies;
+import com.reactivespring.service.TrendingMovies;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Component
+public class ReviewStatsHandler {
+
+    private final ReviewStatsService reviewStatsService;
+    private final TopRatedMovies topRatedMovies;
+    private final TrendingMovies trendingMovies;
+
+    @Value("${reviews.top.maxK:100}")
+    private int maxK;
+
+    public ReviewStatsHandler(ReviewStatsService reviewStatsService, TopRatedMovies topRatedMovies,
+                              TrendingMovies trendingMovies) {
+        this.reviewStatsService = reviewStatsService;
+        this.topRatedMovies = topRatedMovies;
+        this.trendingMovies = trendingMovies;
+    }
+
+    /**
+     * Always a list in the order of the ids, one or several (repeated or comma separated).
+     */
+    public Mono<ServerResponse> getReviewStats(ServerRequest serverRequest) {
+        return ServerResponse.ok()
+                .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                .body(reviewStatsService.getStats(movieInfoIds(serverRequest)), ReviewStats.class);
+    }
+
+    public Mono<ServerResponse> getTopRated(ServerRequest serverRequest) {
+        var k = intQueryParam(serverRequest, "k", 10);
+        var minReviews = intQueryParam(serverRequest, "minReviews", 1);
+        if (k < 1 || k > maxK || minReviews < 0) {
+            throw new ReviewDataException("k : must be between 1 and " + maxK + ", minReviews : must not be negative");
+        }
+        return ServerResponse.ok()
+                .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                .bodyValue(topRatedMovies.top(k, minReviews));
+    }
+
+    public Mono<ServerResponse> getTrending(ServerRequest serverRequest) {
+        var limit = intQueryParam(serverRequest, "limit", 10);
+        Duration window;
+        try {
+            window = DurationStyle.detectAndParse(serverRequest.queryParam("window").orElse("15m"));
+        } catch (IllegalArgumentException ex) {
+            throw new ReviewDataException("window : must be a duration such as 15m");
+        }
+        var maxWindow = trendingMovies.getMaxWindow();
+        if (window.isNegative() || window.isZero() || window.compareTo(maxWindow) > 0 || limit < 1 || limit > maxK) {
+            throw new ReviewDataException("window : must be positive and at most " + maxWindow
+                    + ", limit : must be between 1 and " + maxK);
+        }
+        return ServerResponse.ok()
+                .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                .bodyValue(trendingMovies.trending(window, limit));
+    }
+
+    private int intQueryParam(ServerRequest serverRequest, String name, int defaultValue) {
+        try {
+            return serverRequest.queryParam(name).map(Integer::parseInt).orElse(defaultValue);
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException(name + " : must be a number");
+        }
+    }
+
+    private List<Long> movieInfoIds(ServerRequest serverRequest) {
+        var movieInfoIds = serverRequest.queryParams().getOrDefault("movieInfoId", List.of()).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        if (movieInfoIds.isEmpty()) {
+            throw new ReviewDataException("movieInfoId : must not be empty");
+        }
+        try {
+            return movieInfoIds.stream().map(Long::valueOf).collect(Collectors.toList());
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException("movieInfoId : must be a number");
+        }
+    }
+}
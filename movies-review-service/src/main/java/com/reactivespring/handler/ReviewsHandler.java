@@ -1,11 +1,27 @@
 package com.reactivespring.handler;
 
+import com.reactivespring.config.DurabilityTemplates;
+import com.reactivespring.config.DurabilityTier;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.search.ReviewSearchIndex;
+import com.reactivespring.service.KnownMovies;
+import com.reactivespring.service.ReviewEvents;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.ReviewWriteBehindBuffer;
+import com.reactivespring.service.TopRatedMovies;
+import com.reactivespring.service.TrendingMovies;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
@@ -13,10 +29,10 @@ import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -25,42 +41,163 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReviewsHandler {
     private final ReviewReactiveRepository reviewReactiveRepository;
-
-    private final Sinks.Many<Review> reviewsSink = Sinks.many().replay().latest();
+    private final ReviewWriteBehindBuffer reviewWriteBehindBuffer;
+    private final DurabilityTemplates durabilityTemplates;
+    private final ReviewStatsService reviewStatsService;
+    private final TopRatedMovies topRatedMovies;
+    private final TrendingMovies trendingMovies;
+    private final ReviewSearchIndex reviewSearchIndex;
+    private final KnownMovies knownMovies;
+    private final ReviewEvents reviewEvents;
 
     @Autowired
     private Validator validator;
 
-    public ReviewsHandler(ReviewReactiveRepository reviewReactiveRepository) {
+    // reviews are high volume and low value, so they are only acknowledged by the primary by default
+    @Value("${durability.reviews.add:ACKNOWLEDGED}")
+    private DurabilityTier addTier;
+
+    @Value("${durability.reviews.update:ACKNOWLEDGED}")
+    private DurabilityTier updateTier;
+
+    @Value("${durability.reviews.delete:ACKNOWLEDGED}")
+    private DurabilityTier deleteTier;
+
+    public ReviewsHandler(ReviewReactiveRepository reviewReactiveRepository, ReviewWriteBehindBuffer reviewWriteBehindBuffer,
+                          DurabilityTemplates durabilityTemplates, ReviewStatsService reviewStatsService,
+                          TopRatedMovies topRatedMovies, TrendingMovies trendingMovies, ReviewSearchIndex reviewSearchIndex,
+                          KnownMovies knownMovies, ReviewEvents reviewEvents) {
         this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewWriteBehindBuffer = reviewWriteBehindBuffer;
+        this.durabilityTemplates = durabilityTemplates;
+        this.reviewStatsService = reviewStatsService;
+        this.topRatedMovies = topRatedMovies;
+        this.trendingMovies = trendingMovies;
+        this.reviewSearchIndex = reviewSearchIndex;
+        this.knownMovies = knownMovies;
+        this.reviewEvents = reviewEvents;
     }
 
     static Mono<ServerResponse> notFound = ServerResponse.notFound().build();
 
     public Mono<ServerResponse> getReviews(ServerRequest serverRequest) {
         Optional<String> movieInfoId = serverRequest.queryParam("movieInfoId");
+        Optional<String> fields = serverRequest.queryParam("fields");
+        if (fields.isPresent()) {
+            return getProjectedReviews(serverRequest, movieInfoId, ReviewFields.parse(fields.get()));
+        }
         Flux<Review> reviews;
-        if (movieInfoId.isPresent()) {
+        if (movieInfoId.isPresent() && serverRequest.queryParam("size").isPresent()) {
+            reviews = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get()), pageRequest(serverRequest));
+        } else if (movieInfoId.isPresent()) {
             reviews = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get()));
         } else {
             reviews = reviewReactiveRepository.findAll();
         }
-        return buildReviewsResponse(reviews);
+        return buildReviewsResponse(serverRequest, reviews);
     }
 
-    private Mono<ServerResponse> buildReviewsResponse(Flux<Review> reviews) {
-        return ServerResponse.ok()
-                .body(reviews, Review.class);
+    /**
+     * Only the requested fields are read from Mongo and written to the response, without nulls in place of the other ones.
+     */
+    private Mono<ServerResponse> getProjectedReviews(ServerRequest serverRequest, Optional<String> movieInfoId, Set<String> fields) {
+        Pageable pageable = movieInfoId.isPresent() && serverRequest.queryParam("size").isPresent()
+                ? pageRequest(serverRequest)
+                : Pageable.unpaged();
+        var reviews = reviewReactiveRepository.findReviews(movieInfoId.map(Long::valueOf).orElse(null), pageable, fields)
+                .map(review -> ReviewFields.project(review, fields));
+        return reviews.collectList()
+                .flatMap(projectedReviews -> ServerResponse.ok()
+                        .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                        .bodyValue(projectedReviews));
+    }
+
+    private PageRequest pageRequest(ServerRequest serverRequest) {
+        try {
+            var page = Integer.parseInt(serverRequest.queryParam("page").orElse("0"));
+            var size = Integer.parseInt(serverRequest.queryParam("size").orElseThrow());
+            // sorted on the id so that consecutive pages neither skip nor repeat reviews
+            return PageRequest.of(page, size, Sort.by("reviewId"));
+        } catch (IllegalArgumentException ex) {
+            throw new ReviewDataException("page : must not be negative, size : must be greater than zero");
+        }
+    }
+
+    /**
+     * A JSON array is encoded in one go anyway, collecting the reviews first gives the response a Content-Length :
+     * without one, server.compression.min-response-size does not apply and a handful of reviews would be compressed.
+     */
+    private Mono<ServerResponse> buildReviewsResponse(ServerRequest serverRequest, Flux<Review> reviews) {
+        return reviews.collectList()
+                .flatMap(reviewList -> ServerResponse.ok()
+                        .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                        .bodyValue(reviewList));
     }
 
     public Mono<ServerResponse> addReview(ServerRequest serverRequest) {
         return serverRequest.bodyToMono(Review.class)
                 .doOnNext(this::validate)
-                .flatMap(reviewReactiveRepository::save)
-                .doOnNext(reviewsSink::tryEmitNext)
-                .flatMap(savedReview ->
-                        ServerResponse.status(HttpStatus.CREATED)
-                                .bodyValue(savedReview));
+                .doOnNext(review -> review.setUpdatedAt(Instant.now()))
+                .flatMap(review -> knownMovies.verify(review.getMovieInfoId()).thenReturn(review))
+                .flatMap(review -> reviewStatsService.ensureStats(review.getMovieInfoId()).thenReturn(review))
+                .flatMap(review -> {
+                    if (reviewWriteBehindBuffer.isEnabled()) {
+                        return addReviewWriteBehind(review, ResponseMediaTypes.negotiate(serverRequest));
+                    }
+                    var tier = durabilityTemplates.resolve(addTier, durability(serverRequest));
+                    return durabilityTemplates.forTier(tier).save(review)
+                            .flatMap(this::onReviewAdded)
+                            .flatMap(savedReview ->
+                                    ServerResponse.status(HttpStatus.CREATED)
+                                            .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                                            .bodyValue(savedReview));
+                });
+    }
+
+    private Mono<ServerResponse> addReviewWriteBehind(Review review, MediaType mediaType) {
+        var flushedReview = reviewWriteBehindBuffer.enqueue(review);
+        if (reviewWriteBehindBuffer.getAckMode() == ReviewWriteBehindBuffer.AckMode.FLUSHED) {
+            return flushedReview
+                    .flatMap(this::onReviewAdded)
+                    .flatMap(savedReview ->
+                            ServerResponse.status(HttpStatus.CREATED)
+                                    .contentType(mediaType)
+                                    .bodyValue(savedReview));
+        }
+        // the review is published to the stream only once it has actually been persisted
+        flushedReview.flatMap(this::onReviewAdded)
+                .subscribe(savedReview -> log.debug("Write-behind review persisted : {}", savedReview.getReviewId()),
+                        ex -> log.error("Write-behind review was not persisted : {}", ex.getMessage()));
+        return ServerResponse.status(HttpStatus.ACCEPTED)
+                .contentType(mediaType)
+                .bodyValue(review);
+    }
+
+    private Mono<Review> onReviewAdded(Review review) {
+        reviewEvents.publish(review);
+        trendingMovies.record(review);
+        reviewSearchIndex.index(review);
+        return updateStats(review.getMovieInfoId(), reviewStatsService.recordAdded(review))
+                .thenReturn(review);
+    }
+
+    /**
+     * The review itself is already persisted at this point, so a failed stats update does not fail the request:
+     * the client would retry a write that succeeded. The stats of the movie are recomputed later instead.
+     */
+    private Mono<Void> updateStats(Long movieInfoId, Mono<ReviewStats> statsUpdate) {
+        return statsUpdate
+                .doOnNext(topRatedMovies::update)
+                .onErrorResume(ex -> {
+                    log.error("Unable to update the review stats of movie {} : {}", movieInfoId, ex.getMessage(), ex);
+                    reviewStatsService.repairLater(movieInfoId);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private String durability(ServerRequest serverRequest) {
+        return serverRequest.headers().firstHeader(DurabilityTemplates.DURABILITY_HEADER);
     }
 
     private void validate(Review review) {
@@ -79,28 +216,44 @@ public class ReviewsHandler {
     public Mono<ServerResponse> updateReview(ServerRequest serverRequest) {
 
         String reviewId = serverRequest.pathVariable("id");
+        var tier = durabilityTemplates.resolve(updateTier, durability(serverRequest));
 
         Mono<Review> existingReview = reviewReactiveRepository.findById(reviewId)
                 .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review not Found for the given Review Id")));
 
         return existingReview
-                .flatMap(review ->
-                        serverRequest.bodyToMono(Review.class)
-                                .map(reqReview -> {
-                                    review.setComment(reqReview.getComment());
-                                    review.setRating(reqReview.getRating());
-                                    return review;
-                                })
-                                .flatMap(reviewReactiveRepository::save)
-                                .flatMap(savedReview ->
-                                        ServerResponse.status(HttpStatus.OK)
-                                                .bodyValue(savedReview)));
+                .flatMap(review -> {
+                    var previousRating = review.getRating();
+                    return serverRequest.bodyToMono(Review.class)
+                            .map(reqReview -> {
+                                review.setComment(reqReview.getComment());
+                                review.setRating(reqReview.getRating());
+                                review.setUpdatedAt(Instant.now());
+                                return review;
+                            })
+                            .flatMap(updatedReview -> reviewStatsService.ensureStats(updatedReview.getMovieInfoId()).thenReturn(updatedReview))
+                            .flatMap((Review updatedReview) -> durabilityTemplates.forTier(tier).save(updatedReview))
+                            .doOnNext(reviewSearchIndex::index)
+                            .flatMap(savedReview -> updateStats(savedReview.getMovieInfoId(), reviewStatsService.recordUpdated(previousRating, savedReview))
+                                    .thenReturn(savedReview))
+                            .flatMap(savedReview ->
+                                    ServerResponse.status(HttpStatus.OK)
+                                            .contentType(ResponseMediaTypes.negotiate(serverRequest))
+                                            .bodyValue(savedReview));
+                });
     }
 
     public Mono<ServerResponse> deleteReview(ServerRequest serverRequest) {
         String reviewId = serverRequest.pathVariable("id");
+        var tier = durabilityTemplates.resolve(deleteTier, durability(serverRequest));
         return reviewReactiveRepository.findById(reviewId)
-                .flatMap(review -> reviewReactiveRepository.deleteById(reviewId))
+                .flatMap(review -> reviewStatsService.ensureStats(review.getMovieInfoId()).thenReturn(review))
+                .flatMap(review -> durabilityTemplates.forTier(tier)
+                        .remove(Query.query(Criteria.where("_id").is(reviewId)), Review.class)
+                        .doOnNext(deleteResult -> reviewSearchIndex.remove(reviewId))
+                        // a concurrent delete of the same review must not be subtracted twice
+                        .filter(deleteResult -> !deleteResult.wasAcknowledged() || deleteResult.getDeletedCount() > 0)
+                        .flatMap(deleteResult -> updateStats(review.getMovieInfoId(), reviewStatsService.recordDeleted(review))))
                 .then(ServerResponse.noContent().build());
 
     }
@@ -108,7 +261,7 @@ public class ReviewsHandler {
     public Mono<ServerResponse> getReviewsStream(ServerRequest serverRequest) {
         return ServerResponse.ok()
                 .contentType(MediaType.APPLICATION_NDJSON)
-                .body(reviewsSink.asFlux(), Review.class)
+                .body(reviewEvents.asFlux(), Review.class)
                 .log();
     }
 }
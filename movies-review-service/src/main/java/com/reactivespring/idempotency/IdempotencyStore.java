@@ -0,0 +1,25 @@
+package com.reactivespring.idempotency;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import reactor.core.publisher.Mono;
+
+public interface IdempotencyStore {
+
+    /**
+     * Returns the stored response for the key, or an empty Mono if there is none or it has expired.
+     */
+    Mono<IdempotencyRecord> find(String key);
+
+    Mono<Void> save(IdempotencyRecord idempotencyRecord);
+
+    /**
+     * Stores the in-flight record unless the key already has a record that has not expired, and tells whether it did :
+     * only the request that claims the key executes it.
+     */
+    Mono<Boolean> claim(IdempotencyRecord idempotencyRecord);
+
+    /**
+     * Frees a claimed key whose execution gave no response worth keeping, so that it can be retried for real.
+     */
+    Mono<Void> release(String key);
+}
@@ -0,0 +1,70 @@
+package com.reactivespring.idempotency;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Shares the stored responses between all the instances of the service.
+ * Expired records are removed by a TTL index on expiresAt. A key is claimed by inserting its record, which the unique
+ * _id makes fail on any other instance claiming it at the same time.
+ */
+@Slf4j
+public class MongoIdempotencyStore implements IdempotencyStore {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public MongoIdempotencyStore(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+        mongoOperations.indexOps(IdempotencyRecord.class)
+                .ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(Duration.ZERO))
+                .subscribe(index -> log.info("Idempotency TTL index : {}", index),
+                        ex -> log.error("Unable to create the idempotency TTL index : {}", ex.getMessage()));
+    }
+
+    @Override
+    public Mono<IdempotencyRecord> find(String key) {
+        // the TTL monitor only runs periodically, so expired records may still be around
+        return mongoOperations.findById(key, IdempotencyRecord.class)
+                .filter(idempotencyRecord -> idempotencyRecord.getExpiresAt().isAfter(Instant.now()));
+    }
+
+    @Override
+    public Mono<Void> save(IdempotencyRecord idempotencyRecord) {
+        return mongoOperations.save(idempotencyRecord)
+                .then();
+    }
+
+    @Override
+    public Mono<Boolean> claim(IdempotencyRecord idempotencyRecord) {
+        // an expired record not yet removed by the TTL monitor is taken over, any other record makes the upsert
+        // insert a second document with the same _id
+        var expired = Query.query(Criteria.where("_id").is(idempotencyRecord.getKey())
+                .and("expiresAt").lte(Instant.now()));
+        var update = new Update()
+                .set("status", idempotencyRecord.getStatus())
+                .set("contentType", idempotencyRecord.getContentType())
+                .set("body", idempotencyRecord.getBody())
+                .set("requestHash", idempotencyRecord.getRequestHash())
+                .set("expiresAt", idempotencyRecord.getExpiresAt());
+        return mongoOperations.upsert(expired, update, IdempotencyRecord.class)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, ex -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<Void> release(String key) {
+        return mongoOperations.remove(Query.query(Criteria.where("_id").is(key).and("status").is(0)), IdempotencyRecord.class)
+                .then();
+    }
+}
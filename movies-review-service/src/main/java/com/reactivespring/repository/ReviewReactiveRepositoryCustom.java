@@ -0,0 +1,15 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+
+import java.util.Set;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    /**
+     * Finds the reviews of the movie, or all of them if movieInfoId is null, with only the given fields read from Mongo.
+     */
+    Flux<Review> findReviews(Long movieInfoId, Pageable pageable, Set<String> fields);
+}
@@ -0,0 +1,34 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.Set;
+
+public class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public ReviewReactiveRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Flux<Review> findReviews(Long movieInfoId, Pageable pageable, Set<String> fields) {
+        var query = movieInfoId != null
+                ? Query.query(Criteria.where("movieInfoId").is(movieInfoId))
+                : new Query();
+        query.with(pageable);
+        // the property names are mapped to the document ones, reviewId to _id
+        fields.forEach(field -> query.fields().include(field));
+        if (!fields.contains("reviewId")) {
+            // Mongo returns the _id unless told otherwise
+            query.fields().exclude("reviewId");
+        }
+        return mongoOperations.find(query, Review.class);
+    }
+}
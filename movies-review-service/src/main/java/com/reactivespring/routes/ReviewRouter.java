@@ -1,5 +1,7 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.handler.ReviewSearchHandler;
+import com.reactivespring.handler.ReviewStatsHandler;
 import com.reactivespring.handler.ReviewsHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,7 +15,8 @@ import static org.springframework.web.reactive.function.server.RouterFunctions.r
 public class ReviewRouter {
 
     @Bean
-    public RouterFunction<ServerResponse> reviewsRoute(ReviewsHandler reviewsHandler) {
+    public RouterFunction<ServerResponse> reviewsRoute(ReviewsHandler reviewsHandler, ReviewStatsHandler reviewStatsHandler,
+                                                       ReviewSearchHandler reviewSearchHandler) {
         return route()
                 .nest(path("/v1/reviews"), builder ->
                         builder
@@ -21,7 +24,11 @@ public class ReviewRouter {
                                 .POST("", reviewsHandler::addReview)
                                 .PUT("/{id}", reviewsHandler::updateReview)
                                 .DELETE("/{id}", reviewsHandler::deleteReview)
-                                .GET("/stream", reviewsHandler::getReviewsStream))
+                                .GET("/stream", reviewsHandler::getReviewsStream)
+                                .GET("/stats", reviewStatsHandler::getReviewStats)
+                                .GET("/top", reviewStatsHandler::getTopRated)
+                                .GET("/trending", reviewStatsHandler::getTrending)
+                                .GET("/search", reviewSearchHandler::searchReviews))
                 .GET("/v1/helloWorld",
                         (request -> ServerResponse.ok()
                                 .bodyValue("HelloWorld")))
@@ -0,0 +1,60 @@
+package com.reactivespring.rsocket;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.service.ReviewEvents;
+import com.reactivespring.service.ReviewStatsService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reads of the reviews over RSocket, on spring.rsocket.server.port : request-response for the stats,
+ * request-stream for the reviews of a movie and the feed of the added reviews. The streams are paced by the
+ * demand of the client, sent over the wire as REQUEST_N frames, instead of being buffered by the connection.
+ */
+@Controller
+public class ReviewRSocketController {
+
+    private final ReviewReactiveRepository reviewReactiveRepository;
+    private final ReviewStatsService reviewStatsService;
+    private final ReviewEvents reviewEvents;
+
+    public ReviewRSocketController(ReviewReactiveRepository reviewReactiveRepository, ReviewStatsService reviewStatsService,
+                                   ReviewEvents reviewEvents) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewEvents = reviewEvents;
+    }
+
+    @MessageMapping("reviews.{movieInfoId}")
+    public Flux<Review> getReviews(@DestinationVariable Long movieInfoId) {
+        return reviewReactiveRepository.findReviewsByMovieInfoId(movieInfoId);
+    }
+
+    @MessageMapping("reviews.{movieInfoId}.{page}.{size}")
+    public Flux<Review> getReviews(@DestinationVariable Long movieInfoId, @DestinationVariable int page,
+                                   @DestinationVariable int size) {
+        if (page < 0 || size < 1) {
+            throw new ReviewDataException("page : must not be negative, size : must be greater than zero");
+        }
+        // sorted on the id so that consecutive pages neither skip nor repeat reviews
+        return reviewReactiveRepository.findReviewsByMovieInfoId(movieInfoId, PageRequest.of(page, size, Sort.by("reviewId")));
+    }
+
+    @MessageMapping("reviews.{movieInfoId}.stats")
+    public Mono<ReviewStats> getReviewStats(@DestinationVariable Long movieInfoId) {
+        return reviewStatsService.getStats(movieInfoId);
+    }
+
+    @MessageMapping("reviews.stream")
+    public Flux<Review> streamReviews() {
+        return reviewEvents.asFlux();
+    }
+}
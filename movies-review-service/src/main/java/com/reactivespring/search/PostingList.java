@@ -0,0 +1,149 @@
+package com.reactivespring.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Documents containing a term, as (doc id delta, term frequency) pairs of varints in a single byte array.
+ * Doc ids are only ever appended in increasing order, so the deltas stay small, and the bytes already written
+ * never change: a {@link #frozen()} copy can be read without a lock while the list keeps growing.
+ * The docs deleted from the index stay in the list until it is compacted, the list only counts them out of its
+ * live doc count, the document frequency of its term.
+ */
+class PostingList {
+
+    private byte[] bytes;
+    private int length;
+    private int docCount;
+    private int liveDocCount;
+    private int lastDocId = -1;
+
+    PostingList() {
+        this.bytes = new byte[8];
+    }
+
+    private PostingList(byte[] bytes, int length, int docCount, int lastDocId) {
+        this.bytes = bytes;
+        this.length = length;
+        this.docCount = docCount;
+        this.liveDocCount = docCount;
+        this.lastDocId = lastDocId;
+    }
+
+    void add(int docId, int termFrequency) {
+        if (docId <= lastDocId) {
+            throw new IllegalArgumentException("Doc ids must be increasing : " + docId + " after " + lastDocId);
+        }
+        ensureCapacity(10);
+        writeVarint(docId - lastDocId);
+        writeVarint(termFrequency);
+        lastDocId = docId;
+        docCount++;
+        liveDocCount++;
+    }
+
+    /**
+     * Counts one of the docs of the list as deleted.
+     */
+    void removeDoc() {
+        liveDocCount--;
+    }
+
+    int getDocCount() {
+        return docCount;
+    }
+
+    int getLiveDocCount() {
+        return liveDocCount;
+    }
+
+    Cursor cursor() {
+        return new Cursor(0, -1);
+    }
+
+    /**
+     * Iterates over the docs added since the given frozen copy of this list was taken.
+     */
+    Cursor cursorAfter(PostingList frozen) {
+        return new Cursor(frozen.length, frozen.lastDocId);
+    }
+
+    /**
+     * Returns the docs added so far, sharing the bytes with this list. The copy must never be added to, and counts
+     * all of its docs as live.
+     */
+    PostingList frozen() {
+        return new PostingList(bytes, length, docCount, lastDocId);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(docCount);
+        out.writeInt(lastDocId);
+        out.writeInt(length);
+        out.write(bytes, 0, length);
+    }
+
+    static PostingList read(DataInputStream in) throws IOException {
+        var docCount = in.readInt();
+        var lastDocId = in.readInt();
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new PostingList(bytes, bytes.length, docCount, lastDocId);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    class Cursor {
+        private int position;
+        private int docId;
+        private int termFrequency;
+
+        private Cursor(int position, int docId) {
+            this.position = position;
+            this.docId = docId;
+        }
+
+        boolean next() {
+            if (position >= length) {
+                return false;
+            }
+            docId += readVarint();
+            termFrequency = readVarint();
+            return true;
+        }
+
+        int docId() {
+            return docId;
+        }
+
+        int termFrequency() {
+            return termFrequency;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
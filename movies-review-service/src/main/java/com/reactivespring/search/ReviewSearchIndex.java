@@ -0,0 +1,679 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.Review;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index over the review comments, scored with BM25.
+ * <p>
+ * Every indexed review gets an int doc id, and each term maps to a {@link PostingList} of the doc ids containing it.
+ * Updates and deletes only mark the old doc id as deleted, an updated review being indexed again under a new doc id;
+ * {@link #compact(double)} drops the deleted docs once they make up a large part of the index. Each doc keeps the
+ * posting lists of its terms, for a delete to take it out of their live doc count, so that a search reads the
+ * document frequency of a term instead of counting it.
+ * Writes are serialized, searches share a read lock. Snapshots and compactions work on a {@link View} of the index
+ * taken under a short lock, so that neither the snapshot I/O nor the compaction holds the writes back.
+ * <p>
+ * While {@link ReviewSearchIndexSnapshots} loads the index, the writes are queued and only applied once loading
+ * is done, so that neither a snapshot read nor a rebuild loses them.
+ */
+@Component
+public class ReviewSearchIndex {
+
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, PostingList> postings = new HashMap<>();
+    private Map<String, Integer> docIdsByReviewId = new HashMap<>();
+    private String[] reviewIds = new String[1024];
+    private long[] movieInfoIds = new long[1024];
+    private int[] docLengths = new int[1024];
+    // the posting lists of the terms of each live doc, null once deleted
+    private PostingList[][] docPostings = new PostingList[1024][];
+    private BitSet deleted = new BitSet();
+    private int docCount;
+    private long totalLength;
+    // bumped when the whole content is replaced, a compaction started before is then dropped
+    private long generation;
+    // the terms indexed while a compaction runs, null otherwise
+    private Set<String> compactionTerms;
+    // the writes received while loading, null once loaded
+    private List<Runnable> pendingWrites;
+
+    public void index(Review review) {
+        var termFrequencies = termFrequencies(review.getComment());
+        lock.writeLock().lock();
+        try {
+            if (pendingWrites != null) {
+                pendingWrites.add(() -> indexLocked(review, termFrequencies));
+            } else {
+                indexLocked(review, termFrequencies);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String reviewId) {
+        lock.writeLock().lock();
+        try {
+            if (pendingWrites != null) {
+                pendingWrites.add(() -> removeLocked(reviewId));
+            } else {
+                removeLocked(reviewId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Queues the writes from now on, until {@link #finishLoading()}.
+     */
+    void startLoading() {
+        lock.writeLock().lock();
+        try {
+            if (pendingWrites == null) {
+                pendingWrites = new ArrayList<>();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the writes queued while loading, in order, and stops queuing them.
+     */
+    void finishLoading() {
+        lock.writeLock().lock();
+        try {
+            if (pendingWrites != null) {
+                pendingWrites.forEach(Runnable::run);
+                pendingWrites = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the review right away, even while loading.
+     */
+    void load(Review review) {
+        var termFrequencies = termFrequencies(review.getComment());
+        lock.writeLock().lock();
+        try {
+            indexLocked(review, termFrequencies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the reviews that are not in the given ids right away, even while loading.
+     */
+    void retainAll(Set<String> liveReviewIds) {
+        lock.writeLock().lock();
+        try {
+            new ArrayList<>(docIdsByReviewId.keySet()).stream()
+                    .filter(reviewId -> !liveReviewIds.contains(reviewId))
+                    .forEach(this::removeLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIdsByReviewId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String reviewId) {
+        lock.readLock().lock();
+        try {
+            return docIdsByReviewId.containsKey(reviewId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching reviews, best first. A review matches if its comment contains
+     * any of the query terms; movieInfoId, if not null, restricts the search to the reviews of that movie.
+     */
+    public List<String> search(String query, Long movieInfoId, int limit) {
+        var terms = termFrequencies(query).keySet();
+        lock.readLock().lock();
+        try {
+            var liveDocs = docIdsByReviewId.size();
+            if (liveDocs == 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            var averageLength = Math.max(1.0, (double) totalLength / liveDocs);
+            var cursors = new PostingList.Cursor[terms.size()];
+            var idfs = new double[terms.size()];
+            var open = 0;
+            for (String term : terms) {
+                var postingList = postings.get(term);
+                if (postingList == null || postingList.getLiveDocCount() == 0) {
+                    continue;
+                }
+                var documentFrequency = postingList.getLiveDocCount();
+                var cursor = postingList.cursor();
+                if (cursor.next()) {
+                    idfs[open] = Math.log(1 + (liveDocs - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                    cursors[open++] = cursor;
+                }
+            }
+            // the posting lists are sorted by doc id, so they are merged a doc at a time, each doc being scored
+            // in full before the next one
+            var top = new TopDocs(limit);
+            while (open > 0) {
+                var docId = Integer.MAX_VALUE;
+                for (int i = 0; i < open; i++) {
+                    docId = Math.min(docId, cursors[i].docId());
+                }
+                // the deleted docs stay in the posting lists until the next compaction
+                var matches = !deleted.get(docId) && (movieInfoId == null || movieInfoIds[docId] == movieInfoId);
+                var score = 0.0;
+                for (int i = 0; i < open; i++) {
+                    var cursor = cursors[i];
+                    if (cursor.docId() != docId) {
+                        continue;
+                    }
+                    if (matches) {
+                        var termFrequency = cursor.termFrequency();
+                        score += idfs[i] * termFrequency * (K1 + 1)
+                                / (termFrequency + K1 * (1 - B + B * docLengths[docId] / averageLength));
+                    }
+                    if (!cursor.next()) {
+                        cursors[i] = cursors[--open];
+                        idfs[i] = idfs[open];
+                        i--;
+                    }
+                }
+                if (matches) {
+                    top.offer(docId, score);
+                }
+            }
+            return top.bestFirst().stream()
+                    .map(docId -> reviewIds[docId])
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the index without the deleted docs, if they make up more than the given ratio of it.
+     * The compacted index is built from a view, then catches up with the writes made meanwhile under the write lock.
+     */
+    public boolean compact(double maxDeletedRatio) {
+        View view;
+        lock.writeLock().lock();
+        try {
+            if (compactionTerms != null || docCount == 0 || (double) deleted.cardinality() / docCount <= maxDeletedRatio) {
+                return false;
+            }
+            view = viewLocked();
+            compactionTerms = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            var compaction = new Compaction(view);
+            lock.writeLock().lock();
+            try {
+                if (generation != view.generation) {
+                    return false;
+                }
+                compaction.catchUpLocked();
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                compactionTerms = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the index, along with the time up to which it holds every indexed write.
+     */
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        View view;
+        long highWaterMark;
+        lock.readLock().lock();
+        try {
+            highWaterMark = System.currentTimeMillis();
+            view = viewLocked();
+        } finally {
+            lock.readLock().unlock();
+        }
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(highWaterMark);
+        out.writeInt(view.docCount);
+        out.writeLong(view.totalLength);
+        for (int docId = 0; docId < view.docCount; docId++) {
+            out.writeUTF(view.reviewIds[docId]);
+            out.writeLong(view.movieInfoIds[docId]);
+            out.writeInt(view.docLengths[docId]);
+            out.writeBoolean(view.deleted.get(docId));
+        }
+        out.writeInt(view.postings.size());
+        for (Map.Entry<String, PostingList> entry : view.postings.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    /**
+     * Replaces the content of the index with the given snapshot, returning the time it was written.
+     */
+    public Instant readSnapshot(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported search index snapshot version");
+        }
+        var highWaterMark = Instant.ofEpochMilli(in.readLong());
+        var snapshotDocCount = in.readInt();
+        var snapshotTotalLength = in.readLong();
+        var snapshotReviewIds = new String[Math.max(1024, snapshotDocCount)];
+        var snapshotMovieInfoIds = new long[snapshotReviewIds.length];
+        var snapshotDocLengths = new int[snapshotReviewIds.length];
+        var snapshotDeleted = new BitSet();
+        var snapshotDocIds = new HashMap<String, Integer>();
+        for (int docId = 0; docId < snapshotDocCount; docId++) {
+            snapshotReviewIds[docId] = in.readUTF();
+            snapshotMovieInfoIds[docId] = in.readLong();
+            snapshotDocLengths[docId] = in.readInt();
+            if (in.readBoolean()) {
+                snapshotDeleted.set(docId);
+            } else {
+                snapshotDocIds.put(snapshotReviewIds[docId], docId);
+            }
+        }
+        var terms = in.readInt();
+        var snapshotPostings = new HashMap<String, PostingList>(terms * 2);
+        for (int i = 0; i < terms; i++) {
+            snapshotPostings.put(in.readUTF(), PostingList.read(in));
+        }
+        var snapshotDocPostings = docPostings(snapshotPostings, snapshotDocCount, snapshotDeleted, snapshotReviewIds.length);
+
+        lock.writeLock().lock();
+        try {
+            docCount = snapshotDocCount;
+            totalLength = snapshotTotalLength;
+            reviewIds = snapshotReviewIds;
+            movieInfoIds = snapshotMovieInfoIds;
+            docLengths = snapshotDocLengths;
+            docPostings = snapshotDocPostings;
+            deleted = snapshotDeleted;
+            docIdsByReviewId = snapshotDocIds;
+            postings = snapshotPostings;
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return highWaterMark;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings = new HashMap<>();
+            docIdsByReviewId = new HashMap<>();
+            reviewIds = new String[1024];
+            movieInfoIds = new long[1024];
+            docLengths = new int[1024];
+            docPostings = new PostingList[1024][];
+            deleted = new BitSet();
+            docCount = 0;
+            totalLength = 0;
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static Map<String, Integer> termFrequencies(String text) {
+        if (text == null) {
+            return Map.of();
+        }
+        var normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(term -> term.length() > 1)
+                .collect(Collectors.toMap(term -> term, term -> 1, Integer::sum));
+    }
+
+    private void indexLocked(Review review, Map<String, Integer> termFrequencies) {
+        removeLocked(review.getReviewId());
+        var docId = docCount++;
+        ensureCapacity(docCount);
+        reviewIds[docId] = review.getReviewId();
+        movieInfoIds[docId] = review.getMovieInfoId() != null ? review.getMovieInfoId() : -1;
+        docLengths[docId] = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+        totalLength += docLengths[docId];
+        docIdsByReviewId.put(review.getReviewId(), docId);
+        var termPostings = new PostingList[termFrequencies.size()];
+        var i = 0;
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            var postingList = postings.computeIfAbsent(entry.getKey(), t -> new PostingList());
+            postingList.add(docId, entry.getValue());
+            termPostings[i++] = postingList;
+        }
+        docPostings[docId] = termPostings;
+        if (compactionTerms != null) {
+            compactionTerms.addAll(termFrequencies.keySet());
+        }
+    }
+
+    private void removeLocked(String reviewId) {
+        var docId = docIdsByReviewId.remove(reviewId);
+        if (docId != null) {
+            deleted.set(docId);
+            totalLength -= docLengths[docId];
+            for (PostingList postingList : docPostings[docId]) {
+                postingList.removeDoc();
+            }
+            docPostings[docId] = null;
+        }
+    }
+
+    /**
+     * Maps each live doc to the posting lists of its terms, counting the deleted docs out of the lists on the way.
+     */
+    private static PostingList[][] docPostings(Map<String, PostingList> postings, int docCount, BitSet deleted,
+                                               int capacity) {
+        var termCounts = new int[docCount];
+        for (PostingList postingList : postings.values()) {
+            var cursor = postingList.cursor();
+            while (cursor.next()) {
+                termCounts[cursor.docId()]++;
+            }
+        }
+        var docPostings = new PostingList[capacity][];
+        for (int docId = 0; docId < docCount; docId++) {
+            if (!deleted.get(docId)) {
+                docPostings[docId] = new PostingList[termCounts[docId]];
+            }
+        }
+        var filled = new int[docCount];
+        for (PostingList postingList : postings.values()) {
+            var cursor = postingList.cursor();
+            while (cursor.next()) {
+                var docId = cursor.docId();
+                if (deleted.get(docId)) {
+                    postingList.removeDoc();
+                } else {
+                    docPostings[docId][filled[docId]++] = postingList;
+                }
+            }
+        }
+        return docPostings;
+    }
+
+    private View viewLocked() {
+        var frozenPostings = new HashMap<String, PostingList>(postings.size() * 2);
+        postings.forEach((term, postingList) -> frozenPostings.put(term, postingList.frozen()));
+        return new View(generation, docCount, totalLength, reviewIds, movieInfoIds, docLengths,
+                (BitSet) deleted.clone(), frozenPostings);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > reviewIds.length) {
+            var newCapacity = Math.max(reviewIds.length * 2, capacity);
+            reviewIds = Arrays.copyOf(reviewIds, newCapacity);
+            movieInfoIds = Arrays.copyOf(movieInfoIds, newCapacity);
+            docLengths = Arrays.copyOf(docLengths, newCapacity);
+            docPostings = Arrays.copyOf(docPostings, newCapacity);
+        }
+    }
+
+    /**
+     * The index as of the time it was taken. Docs, doc ids and posting list bytes are only ever appended,
+     * and the arrays replaced rather than shrunk, so the view can be read without the lock.
+     */
+    private static class View {
+        private final long generation;
+        private final int docCount;
+        private final long totalLength;
+        private final String[] reviewIds;
+        private final long[] movieInfoIds;
+        private final int[] docLengths;
+        private final BitSet deleted;
+        private final Map<String, PostingList> postings;
+
+        private View(long generation, int docCount, long totalLength, String[] reviewIds, long[] movieInfoIds,
+                     int[] docLengths, BitSet deleted, Map<String, PostingList> postings) {
+            this.generation = generation;
+            this.docCount = docCount;
+            this.totalLength = totalLength;
+            this.reviewIds = reviewIds;
+            this.movieInfoIds = movieInfoIds;
+            this.docLengths = docLengths;
+            this.deleted = deleted;
+            this.postings = postings;
+        }
+    }
+
+    /**
+     * The index of a view without its deleted docs. Doc ids are renumbered in the same order, so every posting list
+     * stays sorted, and the docs added after the view are appended after the live ones.
+     */
+    private class Compaction {
+        private final View view;
+        private final int[] newDocIds;
+        private final int liveDocs;
+        private final Map<String, PostingList> compactedPostings = new HashMap<>();
+        private final Map<String, Integer> compactedDocIds = new HashMap<>();
+        private String[] compactedReviewIds;
+        private long[] compactedMovieInfoIds;
+        private int[] compactedDocLengths;
+        private PostingList[][] compactedDocPostings;
+
+        private Compaction(View view) {
+            this.view = view;
+            this.newDocIds = new int[view.docCount];
+            var live = 0;
+            for (int docId = 0; docId < view.docCount; docId++) {
+                newDocIds[docId] = view.deleted.get(docId) ? -1 : live++;
+            }
+            this.liveDocs = live;
+            view.postings.forEach((term, postingList) -> {
+                var compacted = new PostingList();
+                var cursor = postingList.cursor();
+                while (cursor.next()) {
+                    if (newDocIds[cursor.docId()] >= 0) {
+                        compacted.add(newDocIds[cursor.docId()], cursor.termFrequency());
+                    }
+                }
+                if (compacted.getDocCount() > 0) {
+                    compactedPostings.put(term, compacted);
+                }
+            });
+            var capacity = Math.max(1024, liveDocs);
+            compactedReviewIds = new String[capacity];
+            compactedMovieInfoIds = new long[capacity];
+            compactedDocLengths = new int[capacity];
+            for (int docId = 0; docId < view.docCount; docId++) {
+                var newDocId = newDocIds[docId];
+                if (newDocId >= 0) {
+                    compactedReviewIds[newDocId] = view.reviewIds[docId];
+                    compactedMovieInfoIds[newDocId] = view.movieInfoIds[docId];
+                    compactedDocLengths[newDocId] = view.docLengths[docId];
+                    compactedDocIds.put(view.reviewIds[docId], newDocId);
+                }
+            }
+            compactedDocPostings = docPostings(compactedPostings, liveDocs, new BitSet(), capacity);
+        }
+
+        /**
+         * Applies the writes made since the view, then replaces the index with the compacted one.
+         */
+        private void catchUpLocked() {
+            var compactedDocCount = liveDocs + docCount - view.docCount;
+            if (compactedDocCount > compactedReviewIds.length) {
+                var capacity = Math.max(compactedReviewIds.length * 2, compactedDocCount);
+                compactedReviewIds = Arrays.copyOf(compactedReviewIds, capacity);
+                compactedMovieInfoIds = Arrays.copyOf(compactedMovieInfoIds, capacity);
+                compactedDocLengths = Arrays.copyOf(compactedDocLengths, capacity);
+                compactedDocPostings = Arrays.copyOf(compactedDocPostings, capacity);
+            }
+            var compactedDeleted = new BitSet();
+            var deletedSinceView = (BitSet) deleted.clone();
+            deletedSinceView.andNot(view.deleted);
+            for (int docId = deletedSinceView.nextSetBit(0); docId >= 0 && docId < view.docCount;
+                 docId = deletedSinceView.nextSetBit(docId + 1)) {
+                compactedDeleted.set(newDocIds[docId]);
+                compactedDocIds.remove(reviewIds[docId], newDocIds[docId]);
+                for (PostingList postingList : compactedDocPostings[newDocIds[docId]]) {
+                    postingList.removeDoc();
+                }
+                compactedDocPostings[newDocIds[docId]] = null;
+            }
+            for (int docId = view.docCount; docId < docCount; docId++) {
+                var newDocId = liveDocs + docId - view.docCount;
+                compactedReviewIds[newDocId] = reviewIds[docId];
+                compactedMovieInfoIds[newDocId] = movieInfoIds[docId];
+                compactedDocLengths[newDocId] = docLengths[docId];
+                if (deleted.get(docId)) {
+                    compactedDeleted.set(newDocId);
+                } else {
+                    compactedDocIds.put(reviewIds[docId], newDocId);
+                    compactedDocPostings[newDocId] = new PostingList[docPostings[docId].length];
+                }
+            }
+            var filled = new int[docCount - view.docCount];
+            for (String term : compactionTerms) {
+                var postingList = postings.get(term);
+                var frozen = view.postings.get(term);
+                var cursor = frozen != null ? postingList.cursorAfter(frozen) : postingList.cursor();
+                while (cursor.next()) {
+                    var newDocId = liveDocs + cursor.docId() - view.docCount;
+                    var compacted = compactedPostings.computeIfAbsent(term, t -> new PostingList());
+                    compacted.add(newDocId, cursor.termFrequency());
+                    if (deleted.get(cursor.docId())) {
+                        compacted.removeDoc();
+                    } else {
+                        compactedDocPostings[newDocId][filled[cursor.docId() - view.docCount]++] = compacted;
+                    }
+                }
+            }
+            postings = compactedPostings;
+            docIdsByReviewId = compactedDocIds;
+            reviewIds = compactedReviewIds;
+            movieInfoIds = compactedMovieInfoIds;
+            docLengths = compactedDocLengths;
+            docPostings = compactedDocPostings;
+            deleted = compactedDeleted;
+            docCount = compactedDocCount;
+        }
+    }
+
+    /**
+     * The best scored docs, in a binary min-heap of primitives whose root is the worst of them. The docs are offered
+     * in increasing doc id order, so a doc only replaces one with the same score if none was offered before it.
+     */
+    private static class TopDocs {
+        private final int[] docIds;
+        private final double[] scores;
+        private int size;
+
+        private TopDocs(int limit) {
+            this.docIds = new int[Math.max(0, limit)];
+            this.scores = new double[docIds.length];
+        }
+
+        private void offer(int docId, double score) {
+            if (size < docIds.length) {
+                docIds[size] = docId;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && score > scores[0]) {
+                docIds[0] = docId;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        private List<Integer> bestFirst() {
+            var best = new Integer[size];
+            while (size > 0) {
+                best[size - 1] = docIds[0];
+                swap(0, --size);
+                siftDown(0);
+            }
+            return Arrays.asList(best);
+        }
+
+        // ties go to the lowest doc id, so the worst of two equal scores is the highest doc id
+        private boolean worse(int i, int j) {
+            return scores[i] < scores[j] || (scores[i] == scores[j] && docIds[i] > docIds[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && worse(i, (i - 1) / 2)) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                var worst = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (worse(child, worst)) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            var docId = docIds[i];
+            docIds[i] = docIds[j];
+            docIds[j] = docId;
+            var score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+}
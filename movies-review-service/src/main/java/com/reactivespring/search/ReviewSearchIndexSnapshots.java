@@ -0,0 +1,192 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the {@link ReviewSearchIndex} from its snapshot file at startup, and writes the snapshot periodically
+ * and on shutdown. The reviews written since the snapshot, give or take replayMargin, are indexed again on top
+ * of it, and if the index still does not hold as many reviews as Mongo then the missing and the deleted ones are
+ * found by id. Without a readable snapshot the index is rebuilt from every review.
+ */
+@Component
+@Slf4j
+public class ReviewSearchIndexSnapshots {
+
+    private static final int RECONCILE_BATCH_SIZE = 1000;
+
+    private final ReviewSearchIndex reviewSearchIndex;
+    private final ReactiveMongoOperations mongoOperations;
+    private final String snapshotPath;
+    private final Duration snapshotInterval;
+    private final double maxDeletedRatio;
+    private final Duration replayMargin;
+
+    private volatile boolean loaded;
+    private Disposable snapshots;
+
+    public ReviewSearchIndexSnapshots(ReviewSearchIndex reviewSearchIndex, ReactiveMongoOperations mongoOperations,
+                                      @Value("${reviews.search.snapshotPath:}") String snapshotPath,
+                                      @Value("${reviews.search.snapshotInterval:5m}") Duration snapshotInterval,
+                                      @Value("${reviews.search.maxDeletedRatio:0.25}") double maxDeletedRatio,
+                                      @Value("${reviews.search.replayMargin:1m}") Duration replayMargin) {
+        this.reviewSearchIndex = reviewSearchIndex;
+        this.mongoOperations = mongoOperations;
+        this.snapshotPath = snapshotPath;
+        this.snapshotInterval = snapshotInterval;
+        this.maxDeletedRatio = maxDeletedRatio;
+        this.replayMargin = replayMargin;
+        // the writes accepted before the index is loaded are applied after it
+        reviewSearchIndex.startLoading();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void load() {
+        loadIndex().subscribe(reviews -> {
+                    loaded = true;
+                    scheduleSnapshots();
+                },
+                ex -> log.error("Unable to load the search index : {}", ex.getMessage()));
+    }
+
+    Mono<Long> loadIndex() {
+        return Mono.fromCallable(this::readSnapshot)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(ex -> {
+                    log.warn("Unable to read the search index snapshot : {}", ex.getMessage());
+                    return Mono.empty();
+                })
+                .flatMap(this::catchUp)
+                .switchIfEmpty(Mono.defer(this::rebuild))
+                // even a failed load must not keep queuing the writes
+                .doOnTerminate(reviewSearchIndex::finishLoading);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (snapshots != null) {
+            snapshots.dispose();
+        }
+        writeSnapshot();
+    }
+
+    private void scheduleSnapshots() {
+        if (snapshotPath.isEmpty()) {
+            return;
+        }
+        snapshots = Flux.interval(snapshotInterval, snapshotInterval, Schedulers.boundedElastic())
+                .subscribe(tick -> {
+                    if (reviewSearchIndex.compact(maxDeletedRatio)) {
+                        log.info("Search index compacted");
+                    }
+                    writeSnapshot();
+                });
+    }
+
+    private Mono<Long> catchUp(Instant highWaterMark) {
+        var replayFrom = highWaterMark.minus(replayMargin);
+        return mongoOperations.find(Query.query(Criteria.where("updatedAt").gte(replayFrom)), Review.class)
+                .doOnNext(reviewSearchIndex::load)
+                .count()
+                .flatMap(replayed -> mongoOperations.count(new Query(), Review.class)
+                        .flatMap(reviews -> {
+                            log.info("Search index loaded from {} : {} reviews written since {} replayed",
+                                    snapshotPath, replayed, replayFrom);
+                            if (reviews == reviewSearchIndex.size()) {
+                                return Mono.just(reviews);
+                            }
+                            return reconcile();
+                        }));
+    }
+
+    /**
+     * Removes the reviews deleted since the snapshot and indexes the ones it misses, comparing the ids.
+     */
+    private Mono<Long> reconcile() {
+        var idsOnly = new Query();
+        idsOnly.fields().include("_id");
+        return mongoOperations.find(idsOnly, Review.class)
+                .map(Review::getReviewId)
+                .collect(Collectors.toSet())
+                .flatMap(reviewIds -> {
+                    reviewSearchIndex.retainAll(reviewIds);
+                    var missing = reviewIds.stream()
+                            .filter(reviewId -> !reviewSearchIndex.contains(reviewId))
+                            .collect(Collectors.toList());
+                    log.info("Search index reconciled : {} reviews, {} missing", reviewIds.size(), missing.size());
+                    return Flux.fromIterable(missing)
+                            .buffer(RECONCILE_BATCH_SIZE)
+                            .concatMap(batch -> mongoOperations.find(Query.query(Criteria.where("_id").in(batch)), Review.class))
+                            .doOnNext(reviewSearchIndex::load)
+                            .then(Mono.just((long) reviewIds.size()));
+                });
+    }
+
+    private Mono<Long> rebuild() {
+        return mongoOperations.count(new Query(), Review.class)
+                .flatMap(reviews -> {
+                    log.info("Rebuilding the search index from {} reviews", reviews);
+                    // the writes queued meanwhile are applied on top of the rebuilt index
+                    reviewSearchIndex.clear();
+                    return mongoOperations.findAll(Review.class)
+                            .doOnNext(reviewSearchIndex::load)
+                            .count();
+                });
+    }
+
+    private Instant readSnapshot() throws IOException {
+        if (snapshotPath.isEmpty() || !Files.exists(Paths.get(snapshotPath))) {
+            return null;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(snapshotPath))))) {
+            return reviewSearchIndex.readSnapshot(in);
+        }
+    }
+
+    private synchronized void writeSnapshot() {
+        // a half loaded index must not overwrite a good snapshot
+        if (snapshotPath.isEmpty() || !loaded) {
+            return;
+        }
+        var path = Paths.get(snapshotPath).toAbsolutePath();
+        try {
+            Files.createDirectories(path.getParent());
+            var tempFile = Files.createTempFile(path.getParent(), "reviews-search", ".tmp");
+            try {
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    reviewSearchIndex.writeSnapshot(out);
+                }
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            log.debug("Search index snapshot written to {}", path);
+        } catch (IOException ex) {
+            log.error("Unable to write the search index snapshot : {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.reactivespring.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over strings: {@link #mightContain(String)} never misses an added value,
+ * and wrongly answers true for about falsePositiveRate of the others, as long as at most expectedValues are added.
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long expectedValues, double falsePositiveRate) {
+        var optimalBits = (long) Math.ceil(-expectedValues * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedValues * Math.log(2)));
+    }
+
+    void add(String value) {
+        var hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            var bit = index(hash, i);
+            var word = (int) (bit >>> 6);
+            var mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String value) {
+        var hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            var bit = index(hash, i);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // double hashing : the i-th index is h1 + i * h2, h2 taken from the upper half of the hash
+    private long index(long hash, int i) {
+        var combined = hash + i * ((hash >>> 32) | 1);
+        return (combined & Long.MAX_VALUE) % bitCount;
+    }
+
+    // 64 bit FNV-1a, finished with the murmur3 mixer to spread the bits
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9a63fe1a85bL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
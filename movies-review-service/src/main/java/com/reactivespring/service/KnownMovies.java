@@ -0,0 +1,134 @@
+package com.reactivespring.service;
+
+import com.reactivespring.exception.ReviewDataException;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Bloom filter of the ids of the movies in the catalog, so that reviews of unknown movies are rejected without
+ * a remote call. It is seeded from GET /v1/movieinfo and then follows /v1/movieinfo/stream for the new movies.
+ * Until the seed has completed, and for the ids the filter has definitely not seen when confirmMisses is set,
+ * the movie info service is asked directly.
+ */
+@Component
+@Slf4j
+public class KnownMovies {
+
+    private final boolean enabled;
+    private final boolean confirmMisses;
+    private final BloomFilter bloomFilter;
+    private final WebClient webClient;
+
+    private volatile boolean seeded;
+    private Disposable seed;
+    private Disposable stream;
+
+    public KnownMovies(WebClient.Builder webClientBuilder,
+                       @Value("${reviews.movieCheck.enabled:false}") boolean enabled,
+                       @Value("${reviews.movieCheck.moviesInfoUrl:http://localhost:8080/v1/movieinfo}") String moviesInfoUrl,
+                       @Value("${reviews.movieCheck.expectedMovies:1000000}") long expectedMovies,
+                       @Value("${reviews.movieCheck.falsePositiveRate:0.01}") double falsePositiveRate,
+                       @Value("${reviews.movieCheck.confirmMisses:true}") boolean confirmMisses) {
+        this.enabled = enabled;
+        this.confirmMisses = confirmMisses;
+        this.bloomFilter = new BloomFilter(expectedMovies, falsePositiveRate);
+        this.webClient = webClientBuilder.baseUrl(moviesInfoUrl).build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        // the stream is followed first, so that no movie added during the seed is missed
+        stream = webClient.get()
+                .uri("/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(MovieInfoId.class)
+                .repeat()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(this::add);
+        seed = webClient.get()
+                .retrieve()
+                .bodyToFlux(MovieInfoId.class)
+                .doOnNext(this::add)
+                .count()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(retrySignal -> log.warn("Unable to load the movie ids : {}", retrySignal.failure().getMessage())))
+                .subscribe(movies -> {
+                    seeded = true;
+                    log.info("Known movies loaded : {} movies", movies);
+                });
+    }
+
+    @PreDestroy
+    void stop() {
+        if (seed != null) {
+            seed.dispose();
+        }
+        if (stream != null) {
+            stream.dispose();
+        }
+    }
+
+    /**
+     * Completes empty if the movie may exist, with a {@link ReviewDataException} if it does not.
+     */
+    public Mono<Void> verify(Long movieInfoId) {
+        if (!enabled || movieInfoId == null) {
+            return Mono.empty();
+        }
+        var id = String.valueOf(movieInfoId);
+        if (bloomFilter.mightContain(id)) {
+            return Mono.empty();
+        }
+        if (seeded && !confirmMisses) {
+            return Mono.error(unknownMovie(movieInfoId));
+        }
+        return webClient.get()
+                .uri("/{id}", id)
+                .retrieve()
+                .toBodilessEntity()
+                .doOnNext(response -> bloomFilter.add(id))
+                .then()
+                .onErrorResume(ex -> {
+                    if (ex instanceof WebClientResponseException
+                            && ((WebClientResponseException) ex).getStatusCode() == HttpStatus.NOT_FOUND) {
+                        return Mono.error(unknownMovie(movieInfoId));
+                    }
+                    // the check is only a guard against garbage, an unavailable catalog must not block the reviews
+                    log.warn("Unable to confirm the movie {} : {}", movieInfoId, ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private void add(MovieInfoId movieInfo) {
+        if (movieInfo.getMovieInfoId() != null) {
+            bloomFilter.add(movieInfo.getMovieInfoId());
+        }
+    }
+
+    private static ReviewDataException unknownMovie(Long movieInfoId) {
+        return new ReviewDataException("rating.movieInfoId : no movie found for " + movieInfoId);
+    }
+
+    @Data
+    static class MovieInfoId {
+        private String movieInfoId;
+    }
+}
@@ -0,0 +1,24 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * The reviews added, once persisted, streamed over HTTP as NDJSON and over RSocket.
+ */
+@Component
+public class ReviewEvents {
+
+    // a new subscriber gets the latest review first
+    private final Sinks.Many<Review> reviewsSink = Sinks.many().replay().latest();
+
+    public void publish(Review review) {
+        reviewsSink.tryEmitNext(review);
+    }
+
+    public Flux<Review> asFlux() {
+        return reviewsSink.asFlux();
+    }
+}
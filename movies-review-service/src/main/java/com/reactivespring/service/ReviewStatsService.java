@@ -0,0 +1,288 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one {@link ReviewStats} document per movie up to date, so that rating aggregates
+ * never require loading the reviews themselves.
+ * <p>
+ * The stats of a movie are seeded from its reviews by {@link #ensureStats(Long)} before the first write of a review
+ * of it, e.g. one whose reviews predate them, so that every write afterwards only has to apply its own increment.
+ * The movies whose stats could not be updated are recomputed periodically, see {@link #repairLater(Long)}.
+ */
+@Service
+@Slf4j
+public class ReviewStatsService {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+    private static final int MAX_RECOMPUTE_ATTEMPTS = 5;
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final Duration repairInterval;
+
+    private final Set<Long> moviesToRepair = ConcurrentHashMap.newKeySet();
+    private Disposable repairs;
+
+    public ReviewStatsService(ReactiveMongoOperations mongoOperations,
+                              @Value("${reviews.stats.repairInterval:30s}") Duration repairInterval) {
+        this.mongoOperations = mongoOperations;
+        this.repairInterval = repairInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void scheduleRepairs() {
+        repairs = Flux.interval(repairInterval, repairInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> repair())
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (repairs != null) {
+            repairs.dispose();
+        }
+    }
+
+    public Mono<ReviewStats> recordAdded(Review review) {
+        if (review.getRating() == null) {
+            return recordChanged(review.getMovieInfoId());
+        }
+        var rating = review.getRating();
+        var update = new Update()
+                .inc("version", 1)
+                .inc("count", 1)
+                .inc("sum", rating)
+                .inc(histogramBucket(rating), 1)
+                .min("min", rating)
+                .max("max", rating);
+        return increment(review.getMovieInfoId(), update);
+    }
+
+    public Mono<ReviewStats> recordUpdated(Double previousRating, Review review) {
+        if (Objects.equals(previousRating, review.getRating())) {
+            return recordChanged(review.getMovieInfoId());
+        }
+        if (previousRating == null) {
+            return recordAdded(review);
+        }
+        if (review.getRating() == null) {
+            return recordDeleted(new Review(review.getReviewId(), review.getMovieInfoId(), review.getComment(), previousRating));
+        }
+        var rating = review.getRating();
+        var update = new Update()
+                .inc("version", 1)
+                .inc("sum", rating - previousRating)
+                .inc(histogramBucket(previousRating), -1)
+                .inc(histogramBucket(rating), 1)
+                .min("min", rating)
+                .max("max", rating);
+        return increment(review.getMovieInfoId(), update)
+                .flatMap(reviewStats -> wasExtreme(reviewStats, previousRating)
+                        ? recomputeExtremes(review.getMovieInfoId())
+                        : Mono.just(reviewStats));
+    }
+
+    public Mono<ReviewStats> recordDeleted(Review review) {
+        if (review.getRating() == null) {
+            return recordChanged(review.getMovieInfoId());
+        }
+        var rating = review.getRating();
+        var update = new Update()
+                .inc("version", 1)
+                .inc("count", -1)
+                .inc("sum", -rating)
+                .inc(histogramBucket(rating), -1);
+        return increment(review.getMovieInfoId(), update)
+                .flatMap(reviewStats -> wasExtreme(reviewStats, rating)
+                        ? recomputeExtremes(review.getMovieInfoId())
+                        : Mono.just(reviewStats));
+    }
+
+    /**
+     * A write which leaves the rating aggregates as they are, such as a comment edit, only bumps the version.
+     */
+    private Mono<ReviewStats> recordChanged(Long movieInfoId) {
+        return increment(movieInfoId, new Update().inc("version", 1));
+    }
+
+    /**
+     * Queues the movie for the next recompute of its stats, after an update of them failed.
+     */
+    public void repairLater(Long movieInfoId) {
+        moviesToRepair.add(movieInfoId);
+    }
+
+    /**
+     * Seeds the stats of the movie from its reviews unless it already has some. Called before a review of the movie
+     * is written : the seed cannot include a review whose increment is still to come, since such a write only starts
+     * once the stats exist. Of two concurrent seeds, the first insert wins.
+     */
+    public Mono<Void> ensureStats(Long movieInfoId) {
+        return mongoOperations.exists(byMovieInfoId(movieInfoId), ReviewStats.class)
+                .flatMap(exists -> exists ? Mono.<ReviewStats>empty() : aggregate(movieInfoId).flatMap(this::insert))
+                .then();
+    }
+
+    /**
+     * Sets the stats of the movie from all of its reviews. The set only applies to the version read before the
+     * aggregation : an increment in between bumps the version, and the stats are aggregated again rather than
+     * overwriting it.
+     */
+    public Mono<ReviewStats> recompute(Long movieInfoId) {
+        return Mono.defer(() -> mongoOperations.findById(movieInfoId, ReviewStats.class)
+                        .map(reviewStats -> Optional.of(reviewStats.getVersion()))
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(version -> aggregate(movieInfoId)
+                                .flatMap(reviewStats -> version.isPresent()
+                                        ? replace(reviewStats, version.get())
+                                        : insert(reviewStats))))
+                .repeatWhenEmpty(MAX_RECOMPUTE_ATTEMPTS, attempts -> attempts);
+    }
+
+    private Mono<ReviewStats> aggregate(Long movieInfoId) {
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("movieInfoId").is(movieInfoId).and("rating").ne(null)),
+                Aggregation.project("rating").and(ArithmeticOperators.valueOf("rating").floor()).as("bucket"),
+                Aggregation.group("bucket").count().as("count").sum("rating").as("sum")
+                        .min("rating").as("min").max("rating").as("max"));
+
+        return mongoOperations.aggregate(aggregation, Review.class, Document.class)
+                .collectList()
+                .map(buckets -> {
+                    var reviewStats = ReviewStats.empty(movieInfoId);
+                    for (Document bucket : buckets) {
+                        var bucketCount = ((Number) bucket.get("count")).longValue();
+                        var bucketMin = ((Number) bucket.get("min")).doubleValue();
+                        var bucketMax = ((Number) bucket.get("max")).doubleValue();
+                        reviewStats.setCount(reviewStats.getCount() + bucketCount);
+                        reviewStats.setSum(reviewStats.getSum() + ((Number) bucket.get("sum")).doubleValue());
+                        reviewStats.setMin(reviewStats.getMin() == null ? bucketMin : Math.min(reviewStats.getMin(), bucketMin));
+                        reviewStats.setMax(reviewStats.getMax() == null ? bucketMax : Math.max(reviewStats.getMax(), bucketMax));
+                        reviewStats.getHistogram().put(String.valueOf(((Number) bucket.get("_id")).longValue()), bucketCount);
+                    }
+                    return reviewStats;
+                });
+    }
+
+    /**
+     * Empty when the stats have been created in the meantime.
+     */
+    private Mono<ReviewStats> insert(ReviewStats reviewStats) {
+        return mongoOperations.insert(reviewStats)
+                .onErrorResume(DuplicateKeyException.class, ex -> Mono.empty());
+    }
+
+    /**
+     * Empty when the stats are no longer at the given version.
+     */
+    private Mono<ReviewStats> replace(ReviewStats reviewStats, long version) {
+        var query = Query.query(Criteria.where("_id").is(reviewStats.getMovieInfoId()).and("version").is(version));
+        var update = new Update()
+                .set("version", version + 1)
+                .set("count", reviewStats.getCount())
+                .set("sum", reviewStats.getSum())
+                .set("histogram", reviewStats.getHistogram());
+        if (reviewStats.getMin() == null) {
+            update.unset("min").unset("max");
+        } else {
+            update.set("min", reviewStats.getMin()).set("max", reviewStats.getMax());
+        }
+        return mongoOperations.findAndModify(query, update, RETURN_NEW, ReviewStats.class);
+    }
+
+    private Mono<Void> repair() {
+        var movieInfoIds = new ArrayList<>(moviesToRepair);
+        return Flux.fromIterable(movieInfoIds)
+                .concatMap(movieInfoId -> {
+                    moviesToRepair.remove(movieInfoId);
+                    return recompute(movieInfoId)
+                            .doOnNext(reviewStats -> log.info("Review stats of movie {} recomputed", movieInfoId))
+                            .onErrorResume(ex -> {
+                                log.error("Unable to recompute the review stats of movie {} : {}", movieInfoId, ex.getMessage());
+                                moviesToRepair.add(movieInfoId);
+                                return Mono.empty();
+                            });
+                })
+                .then();
+    }
+
+    /**
+     * The stats have been seeded before the write, see {@link #ensureStats(Long)}, so the increment alone is atomic.
+     */
+    private Mono<ReviewStats> increment(Long movieInfoId, Update update) {
+        return mongoOperations.findAndModify(byMovieInfoId(movieInfoId), update, RETURN_NEW, ReviewStats.class)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("No review stats to update for movie " + movieInfoId)));
+    }
+
+    public Mono<ReviewStats> getStats(Long movieInfoId) {
+        return mongoOperations.findById(movieInfoId, ReviewStats.class)
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId));
+    }
+
+    /**
+     * Returns the stats in the order of the given ids, movies without any review included.
+     */
+    public Flux<ReviewStats> getStats(List<Long> movieInfoIds) {
+        return mongoOperations.find(Query.query(Criteria.where("_id").in(movieInfoIds)), ReviewStats.class)
+                .collectMap(ReviewStats::getMovieInfoId, Function.identity())
+                .flatMapIterable(statsById -> movieInfoIds.stream()
+                        .map(movieInfoId -> statsById.getOrDefault(movieInfoId, ReviewStats.empty(movieInfoId)))
+                        .collect(Collectors.toList()));
+    }
+
+    private boolean wasExtreme(ReviewStats reviewStats, double rating) {
+        // $min and $max can only move outwards, so removing the current extreme needs a lookup
+        return Objects.equals(reviewStats.getMin(), rating) || Objects.equals(reviewStats.getMax(), rating)
+                || reviewStats.getCount() == 0;
+    }
+
+    private Mono<ReviewStats> recomputeExtremes(Long movieInfoId) {
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("movieInfoId").is(movieInfoId).and("rating").ne(null)),
+                Aggregation.group("movieInfoId").min("rating").as("min").max("rating").as("max"));
+
+        return mongoOperations.aggregate(aggregation, Review.class, Document.class)
+                .next()
+                .map(extremes -> new Update().set("min", extremes.get("min")).set("max", extremes.get("max")))
+                .defaultIfEmpty(new Update().unset("min").unset("max"))
+                .flatMap(update -> mongoOperations.findAndModify(byMovieInfoId(movieInfoId), update, RETURN_NEW, ReviewStats.class));
+    }
+
+    private static Query byMovieInfoId(Long movieInfoId) {
+        return Query.query(Criteria.where("_id").is(movieInfoId));
+    }
+
+    private static String histogramBucket(double rating) {
+        return "histogram." + (long) Math.floor(rating);
+    }
+}
@@ -0,0 +1,216 @@
+package com.reactivespring.service;
+
+import com.reactivespring.config.DurabilityTemplates;
+import com.reactivespring.config.DurabilityTier;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewQueueFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Optional write-behind mode for review submissions: accepted reviews are queued in memory
+ * and persisted with a single insertMany per batch, flushed either by size or by time.
+ * <p>
+ * One batch is flushed at a time. The next one is taken from the queue once the previous flush is done, as soon
+ * as a full batch is queued or on the next flushInterval tick, so a slow insert only makes the queue grow,
+ * up to queueCapacity, instead of overflowing an operator.
+ */
+@Component
+@Slf4j
+public class ReviewWriteBehindBuffer {
+
+    public enum AckMode {
+        // respond with 202 as soon as the review is queued
+        ACCEPTED,
+        // respond with 201 once the batch holding the review has been flushed
+        FLUSHED
+    }
+
+    private final DurabilityTemplates durabilityTemplates;
+    private final DurabilityTier durabilityTier;
+    private final boolean enabled;
+    private final AckMode ackMode;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+
+    private final Queue<PendingReview> pendingReviews = new ConcurrentLinkedQueue<>();
+    // reviews accepted but not yet persisted, including the batch currently being flushed
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    // reviews in pendingReviews, not taken by a flush yet
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final Timer flushLatency = Metrics.timer("reviews.writebehind.flush.latency");
+    private final Counter rejected = Metrics.counter("reviews.writebehind.rejected");
+
+    private volatile boolean stopped;
+    private Disposable ticks;
+
+    public ReviewWriteBehindBuffer(DurabilityTemplates durabilityTemplates,
+                                   // a batch is shared by many requests, so it always uses the configured tier
+                                   @Value("${durability.reviews.writeBehind:ACKNOWLEDGED}") DurabilityTier durabilityTier,
+                                   @Value("${reviews.writeBehind.enabled:false}") boolean enabled,
+                                   @Value("${reviews.writeBehind.ack:accepted}") String ackMode,
+                                   @Value("${reviews.writeBehind.queueCapacity:10000}") int queueCapacity,
+                                   @Value("${reviews.writeBehind.batchSize:500}") int batchSize,
+                                   @Value("${reviews.writeBehind.flushInterval:200ms}") Duration flushInterval) {
+        this.durabilityTemplates = durabilityTemplates;
+        this.durabilityTier = durabilityTier;
+        this.enabled = enabled;
+        this.ackMode = AckMode.valueOf(ackMode.toUpperCase());
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        Metrics.gauge("reviews.writebehind.queue.depth", queueDepth);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Review write-behind enabled, ack : {}, batchSize : {}, flushInterval : {}", ackMode, batchSize, flushInterval);
+        ticks = Flux.interval(flushInterval, flushInterval)
+                .onBackpressureDrop()
+                .subscribe(tick -> flushNextBatch());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopped = true;
+        if (ticks == null) {
+            return;
+        }
+        ticks.dispose();
+        // flush whatever is still queued
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((!pendingReviews.isEmpty() || flushing.get()) && System.nanoTime() < deadline) {
+            flushNextBatch();
+            Thread.sleep(10);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public AckMode getAckMode() {
+        return ackMode;
+    }
+
+    /**
+     * Queues the review for the next batch, throwing {@link ReviewQueueFullException} if the queue is full.
+     * The returned Mono completes with the persisted review once its batch has been flushed.
+     */
+    public Mono<Review> enqueue(Review review) {
+        if (stopped) {
+            rejected.increment();
+            throw new ReviewQueueFullException("Review queue is stopped, please retry later");
+        }
+        if (queueDepth.incrementAndGet() > queueCapacity) {
+            queueDepth.decrementAndGet();
+            rejected.increment();
+            throw new ReviewQueueFullException("Review queue is full, please retry later");
+        }
+        if (review.getReviewId() == null) {
+            // assign the id up front, so that a 202 response can already reference the review
+            review.setReviewId(new ObjectId().toHexString());
+        }
+        var pendingReview = new PendingReview(review);
+        pendingReviews.add(pendingReview);
+        // stop() may have drained the queue for the last time in between
+        if (stopped && pendingReviews.remove(pendingReview)) {
+            queueDepth.decrementAndGet();
+            rejected.increment();
+            throw new ReviewQueueFullException("Review queue is stopped, please retry later");
+        }
+        if (queued.incrementAndGet() >= batchSize) {
+            flushNextBatch();
+        }
+        return pendingReview.flushed.asMono();
+    }
+
+    int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Flushes up to batchSize queued reviews, unless a flush is already running: that one calls back once done.
+     */
+    private void flushNextBatch() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        var batch = new ArrayList<PendingReview>(Math.min(batchSize, queued.get()));
+        PendingReview pendingReview;
+        while (batch.size() < batchSize && (pendingReview = pendingReviews.poll()) != null) {
+            batch.add(pendingReview);
+        }
+        queued.addAndGet(-batch.size());
+        if (batch.isEmpty()) {
+            flushing.set(false);
+            return;
+        }
+        flush(batch).subscribe(null, ex -> afterFlush(), this::afterFlush);
+    }
+
+    private void afterFlush() {
+        flushing.set(false);
+        // a full batch may have been queued meanwhile, its enqueue found the flush still running
+        if (queued.get() >= batchSize) {
+            flushNextBatch();
+        }
+    }
+
+    private Mono<Void> flush(List<PendingReview> batch) {
+        var reviews = batch.stream()
+                .map(pendingReview -> pendingReview.review)
+                .collect(Collectors.toList());
+        long start = System.nanoTime();
+
+        return Mono.defer(() -> durabilityTemplates.forTier(durabilityTier).insert(reviews, Review.class).then())
+                .doOnSuccess(unused -> {
+                    queueDepth.addAndGet(-batch.size());
+                    flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    log.debug("Flushed {} reviews", batch.size());
+                    batch.forEach(pendingReview -> pendingReview.flushed.tryEmitValue(pendingReview.review));
+                })
+                .doOnError(ex -> {
+                    queueDepth.addAndGet(-batch.size());
+                    log.error("Failed to flush {} reviews : {}", batch.size(), ex.getMessage(), ex);
+                    batch.forEach(pendingReview -> pendingReview.flushed.tryEmitError(ex));
+                })
+                // a failed batch must not stop the following ones
+                .onErrorResume(ex -> Mono.empty());
+    }
+
+    private static class PendingReview {
+        private final Review review;
+        private final Sinks.One<Review> flushed = Sinks.one();
+
+        private PendingReview(Review review) {
+            this.review = review;
+        }
+    }
+}
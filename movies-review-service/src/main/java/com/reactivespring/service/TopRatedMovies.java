@@ -0,0 +1,101 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ReviewStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory ranking of the movies by average rating, so that the best-rated movies are served without
+ * touching Mongo. It is fed with the stats returned by every review write, and reloaded from the
+ * ReviewStats collection at startup and then periodically to pick up the writes of other instances.
+ */
+@Component
+@Slf4j
+public class TopRatedMovies {
+
+    private static final Comparator<ReviewStats> BY_RATING = Comparator
+            .comparing(ReviewStats::getAverage, Comparator.reverseOrder())
+            .thenComparing(ReviewStats::getCount, Comparator.reverseOrder())
+            .thenComparing(ReviewStats::getMovieInfoId);
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final Duration refreshInterval;
+
+    // the latest snapshot of each movie, needed to find its entry in the ranking again
+    private final ConcurrentHashMap<Long, ReviewStats> rankedStats = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<ReviewStats> ranking = new ConcurrentSkipListSet<>(BY_RATING);
+
+    private Disposable refresh;
+
+    public TopRatedMovies(ReactiveMongoOperations mongoOperations,
+                          @Value("${reviews.top.refreshInterval:5m}") Duration refreshInterval) {
+        this.mongoOperations = mongoOperations;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void seed() {
+        refresh = Flux.interval(Duration.ZERO, refreshInterval)
+                .concatMap(tick -> mongoOperations.findAll(ReviewStats.class)
+                        .doOnNext(this::update)
+                        .count()
+                        .doOnNext(movies -> log.debug("Top rated movies reloaded : {} movies", movies))
+                        .onErrorResume(ex -> {
+                            log.error("Unable to reload the top rated movies : {}", ex.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refresh != null) {
+            refresh.dispose();
+        }
+    }
+
+    /**
+     * Ranks the movie with the given stats, unless those already ranked are as recent : a periodic reload may read
+     * the stats before a write this instance has already ranked. Movies without reviews are kept out of the
+     * ranking, but their stats are remembered for their version.
+     */
+    public void update(ReviewStats reviewStats) {
+        rankedStats.compute(reviewStats.getMovieInfoId(), (movieInfoId, previous) -> {
+            if (previous != null && previous.getVersion() >= reviewStats.getVersion()) {
+                return previous;
+            }
+            if (previous != null && previous.getCount() > 0) {
+                ranking.remove(previous);
+            }
+            // a copy, so that later changes to the given stats can not corrupt the ordering
+            var ranked = new ReviewStats(movieInfoId, reviewStats.getCount(), reviewStats.getSum(),
+                    reviewStats.getMin(), reviewStats.getMax(), reviewStats.getHistogram(), reviewStats.getVersion());
+            if (ranked.getCount() > 0) {
+                ranking.add(ranked);
+            }
+            return ranked;
+        });
+    }
+
+    public List<ReviewStats> top(int k, long minReviews) {
+        return ranking.stream()
+                .filter(reviewStats -> reviewStats.getCount() >= minReviews)
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+}
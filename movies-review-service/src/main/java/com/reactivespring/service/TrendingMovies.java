@@ -0,0 +1,112 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.TrendingMovie;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the reviews per movie in a ring of time buckets, so that the review velocity over any window up
+ * to maxWindow is a sum over a few buckets. A bucket is recycled once its time slot comes around again,
+ * and holds at most maxMoviesPerBucket movies, which bounds the memory whatever the traffic.
+ */
+@Component
+public class TrendingMovies {
+
+    private final long bucketWidthMillis;
+    private final int maxMoviesPerBucket;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final Counter dropped = Metrics.counter("reviews.trending.dropped");
+
+    public TrendingMovies(@Value("${reviews.trending.bucketWidth:1m}") Duration bucketWidth,
+                          @Value("${reviews.trending.maxWindow:1h}") Duration maxWindow,
+                          @Value("${reviews.trending.maxMoviesPerBucket:10000}") int maxMoviesPerBucket) {
+        this.bucketWidthMillis = bucketWidth.toMillis();
+        this.maxMoviesPerBucket = maxMoviesPerBucket;
+        this.buckets = new AtomicReferenceArray<>((int) Math.ceil((double) maxWindow.toMillis() / bucketWidthMillis));
+    }
+
+    public Duration getMaxWindow() {
+        return Duration.ofMillis(bucketWidthMillis * buckets.length());
+    }
+
+    public void record(Review review) {
+        record(review.getMovieInfoId(), System.currentTimeMillis());
+    }
+
+    public List<TrendingMovie> trending(Duration window, int limit) {
+        return trending(window, limit, System.currentTimeMillis());
+    }
+
+    void record(Long movieInfoId, long nowMillis) {
+        var counts = currentBucket(nowMillis / bucketWidthMillis).counts;
+        var count = counts.get(movieInfoId);
+        if (count == null) {
+            // the size check races with other writers, so a bucket may exceed the limit by a few movies
+            if (counts.size() >= maxMoviesPerBucket) {
+                dropped.increment();
+                return;
+            }
+            count = counts.computeIfAbsent(movieInfoId, id -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    List<TrendingMovie> trending(Duration window, int limit, long nowMillis) {
+        var currentSlot = nowMillis / bucketWidthMillis;
+        var slots = Math.min(Math.max(1, (long) Math.ceil((double) window.toMillis() / bucketWidthMillis)), buckets.length());
+        var totals = new HashMap<Long, Long>();
+        for (long slot = currentSlot - slots + 1; slot <= currentSlot; slot++) {
+            var bucket = buckets.get(index(slot));
+            // a bucket still holding an older slot has aged out of the window
+            if (bucket != null && bucket.slot == slot) {
+                bucket.counts.forEach((movieInfoId, count) -> totals.merge(movieInfoId, count.sum(), Long::sum));
+            }
+        }
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(entry -> new TrendingMovie(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private Bucket currentBucket(long slot) {
+        var index = index(slot);
+        while (true) {
+            var bucket = buckets.get(index);
+            if (bucket != null && bucket.slot >= slot) {
+                return bucket;
+            }
+            // the first writer of a new slot recycles the bucket, the others pick up its replacement
+            var recycled = new Bucket(slot);
+            if (buckets.compareAndSet(index, bucket, recycled)) {
+                return recycled;
+            }
+        }
+    }
+
+    private int index(long slot) {
+        return (int) (slot % buckets.length());
+    }
+
+    private static class Bucket {
+        private final long slot;
+        private final ConcurrentHashMap<Long, LongAdder> counts = new ConcurrentHashMap<>();
+
+        Bucket(long slot) {
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.handler.ResponseMediaTypes;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.service.ReviewEvents;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * The default connector of the WebTestClient decompresses the responses, this one leaves the bytes as sent.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ReviewsCompressionIT {
+
+    @LocalServerPort
+    int port;
+
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReviewEvents reviewEvents;
+
+    @MockBean
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToServer(new ReactorClientHttpConnector(HttpClient.create()))
+                .baseUrl("http://localhost:" + port)
+                .build();
+    }
+
+    @Test
+    void getReviews_Gzip() {
+        //given
+        when(reviewReactiveRepository.findAll())
+                .thenReturn(Flux.range(0, 50).map(i -> new Review("review" + i, 1L, "Awesome Movie", 9.0)));
+
+        //when
+        var body = webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        //then
+        assertNotNull(body);
+        var json = gunzip(body);
+        assertTrue(json.startsWith("[{\"reviewId\":\"review0\""), json);
+        assertTrue(body.length < json.length(), body.length + " compressed bytes for " + json.length());
+    }
+
+    @Test
+    void getReviews_Smile_Gzip() {
+        //given
+        when(reviewReactiveRepository.findAll())
+                .thenReturn(Flux.range(0, 50).map(i -> new Review("review" + i, 1L, "Awesome Movie", 9.0)));
+
+        //when
+        var body = webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .accept(ResponseMediaTypes.APPLICATION_SMILE)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(ResponseMediaTypes.APPLICATION_SMILE)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        //then
+        assertNotNull(body);
+        var smile = inflate(body);
+        // the Smile header, ":)\n"
+        assertEquals(':', smile[0]);
+        assertEquals(')', smile[1]);
+        assertEquals('\n', smile[2]);
+        assertTrue(body.length < smile.length, body.length + " compressed bytes for " + smile.length);
+    }
+
+    @Test
+    void getReviewsByMovieInfoId_BelowMinResponseSize() {
+        //given
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+                .thenReturn(Flux.just(new Review("review1", 1L, "Awesome Movie", 9.0)));
+
+        //when
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectBody()
+                .jsonPath("$[0].reviewId").isEqualTo("review1");
+    }
+
+    @Test
+    void getReviewsStream_GzipDeliveredIncrementally() {
+        //given
+        reviewEvents.publish(new Review("review1", 1L, "Awesome Movie", 9.0));
+
+        //when
+        var body = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .returnResult(DataBuffer.class)
+                .getResponseBody();
+
+        //then
+        // the stream never completes, the second review is only published once the first one has been inflated
+        var published = new AtomicBoolean();
+        var received = body
+                .map(ReviewsCompressionIT::bytes)
+                .scan(new ByteArrayOutputStream(), (sent, bytes) -> {
+                    sent.writeBytes(bytes);
+                    return sent;
+                })
+                .map(sent -> gunzip(sent.toByteArray()))
+                .doOnNext(json -> {
+                    if (json.contains("\n") && published.compareAndSet(false, true)) {
+                        reviewEvents.publish(new Review("review2", 1L, "Excellent Movie", 8.0));
+                    }
+                })
+                .filter(json -> json.contains("review2") && json.endsWith("\n"))
+                .next()
+                .block(Duration.ofSeconds(5));
+        assertNotNull(received);
+        var lines = received.split("\n");
+        assertEquals(2, lines.length, received);
+        assertTrue(lines[0].startsWith("{\"reviewId\":\"review1\""), lines[0]);
+        assertTrue(lines[1].startsWith("{\"reviewId\":\"review2\""), lines[1]);
+    }
+
+    private static byte[] bytes(DataBuffer dataBuffer) {
+        var bytes = new byte[dataBuffer.readableByteCount()];
+        dataBuffer.read(bytes);
+        DataBufferUtils.release(dataBuffer);
+        return bytes;
+    }
+
+    private static String gunzip(byte[] gzip) {
+        return new String(inflate(gzip), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Inflates as much as the bytes received so far allow, a gzip stream still open having no trailer yet.
+     */
+    private static byte[] inflate(byte[] gzip) {
+        var inflated = new ByteArrayOutputStream();
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            var buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                inflated.write(buffer, 0, read);
+            }
+        } catch (EOFException ex) {
+            // the rest has not been received yet
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return inflated.toByteArray();
+    }
+}
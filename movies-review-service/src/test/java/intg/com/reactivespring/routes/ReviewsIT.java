@@ -1,6 +1,7 @@
 package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.repository.ReviewReactiveRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.test.StepVerifier;
@@ -28,6 +30,9 @@ public class ReviewsIT {
     @Autowired
     ReviewReactiveRepository reviewReactiveRepository;
 
+    @Autowired
+    ReactiveMongoOperations reactiveMongoOperations;
+
     static String REVIEWS_URL = "/v1/reviews";
 
     @BeforeEach
@@ -45,6 +50,8 @@ public class ReviewsIT {
     void tearDown() {
         reviewReactiveRepository.deleteAll()
                 .block();
+        reactiveMongoOperations.dropCollection(ReviewStats.class)
+                .block();
     }
 
     @Test
@@ -132,6 +139,26 @@ public class ReviewsIT {
 
     }
 
+    @Test
+    void getReviewsByMovieInfoId_Fields() {
+        //when
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("fields", "rating")
+                        .build()
+                )
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].rating").isEqualTo(9.0)
+                .jsonPath("$[0].reviewId").doesNotExist()
+                .jsonPath("$[0].comment").doesNotExist();
+    }
+
     @Test
     void addReview() {
         //given
@@ -206,4 +233,161 @@ public class ReviewsIT {
                 .expectStatus().isNoContent();
     }
 
+    @Test
+    void updateReview_StatsOfExistingReviews() {
+        //given
+        var savedReview = reviewReactiveRepository.save(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+        assertNotNull(savedReview);
+
+        //when
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", savedReview.getReviewId())
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 6.0))
+                .exchange()
+                .expectStatus().isOk();
+
+        //then
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .hasSize(1)
+                .value(statsOfMovies -> {
+                    var reviewStats = statsOfMovies.get(0);
+                    assertEquals(3, reviewStats.getCount());
+                    assertEquals(6.0, reviewStats.getMin());
+                    assertEquals(9.0, reviewStats.getMax());
+                    assertEquals(8.0, reviewStats.getAverage());
+                    assertEquals(2L, reviewStats.getHistogram().get("9"));
+                });
+    }
+
+    @Test
+    void deleteReview_StatsOfExistingReviews() {
+        //given
+        var savedReview = reviewReactiveRepository.save(new Review(null, 1L, "Awesome Movie", 6.0)).block();
+        assertNotNull(savedReview);
+
+        //when
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", savedReview.getReviewId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        //then
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .hasSize(1)
+                .value(statsOfMovies -> {
+                    var reviewStats = statsOfMovies.get(0);
+                    assertEquals(2, reviewStats.getCount());
+                    assertEquals(9.0, reviewStats.getMin());
+                    assertEquals(9.0, reviewStats.getMax());
+                    assertEquals(9.0, reviewStats.getAverage());
+                });
+    }
+
+    @Test
+    void deleteReview_Stats() {
+        //given
+        var savedReview = webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review(null, 5L, "Good Movie", 7.0))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(savedReview);
+
+        //when
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", savedReview.getReviewId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        //then
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId=5")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .hasSize(1)
+                .value(statsOfMovies -> {
+                    var reviewStats = statsOfMovies.get(0);
+                    assertEquals(0, reviewStats.getCount());
+                    assertEquals(null, reviewStats.getMin());
+                    assertEquals(2, reviewStats.getVersion());
+                });
+    }
+
+    @Test
+    void getReviewStats() {
+        //given
+        List.of(new Review(null, 3L, "Good Movie", 7.0), new Review(null, 3L, "Great Movie", 9.0))
+                .forEach(review -> webTestClient
+                        .post()
+                        .uri(REVIEWS_URL)
+                        .bodyValue(review)
+                        .exchange()
+                        .expectStatus().isCreated());
+
+        //when
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId=3")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .hasSize(1)
+                .value(statsOfMovies -> {
+                    var reviewStats = statsOfMovies.get(0);
+                    assertEquals(2, reviewStats.getCount());
+                    assertEquals(7.0, reviewStats.getMin());
+                    assertEquals(9.0, reviewStats.getMax());
+                    assertEquals(8.0, reviewStats.getAverage());
+                });
+    }
+
+    @Test
+    void getReviewStats_VersionBumpedByUnratedReviews() {
+        //given
+        List.of(new Review(null, 4L, "Good Movie", 7.0), new Review(null, 4L, "Not rated yet", null))
+                .forEach(review -> webTestClient
+                        .post()
+                        .uri(REVIEWS_URL)
+                        .bodyValue(review)
+                        .exchange()
+                        .expectStatus().isCreated());
+
+        //when
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId=4")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .hasSize(1)
+                .value(statsOfMovies -> {
+                    var reviewStats = statsOfMovies.get(0);
+                    assertEquals(1, reviewStats.getCount());
+                    assertEquals(2, reviewStats.getVersion());
+                });
+    }
 }
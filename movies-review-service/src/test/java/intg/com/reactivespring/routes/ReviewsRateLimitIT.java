@@ -0,0 +1,68 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * movies-service fans the requests of all its callers out to the review service from the same address, a trusted
+ * one, with the id of the caller of each : the callers have a limit each, not one for all of them.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "rateLimit.routes[0].path=/v1/reviews/**",
+        "rateLimit.routes[0].requestsPerSecond=0.1",
+        "rateLimit.routes[0].burst=2",
+})
+public class ReviewsRateLimitIT {
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    @LocalServerPort
+    int port;
+
+    // over the network, for the requests to have a remote address
+    WebTestClient webTestClient;
+
+    @MockBean
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + port)
+                .build();
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(1L)).thenReturn(Flux.empty());
+    }
+
+    @Test
+    void callersOfMoviesServiceHaveALimitEach() {
+        //given
+        get("alice").expectStatus().isOk();
+        get("alice").expectStatus().isOk();
+
+        //when
+        get("alice").expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        //then
+        get("bob").expectStatus().isOk();
+    }
+
+    private WebTestClient.ResponseSpec get(String clientId) {
+        return webTestClient.get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .header("X-Client-Id", clientId)
+                .exchange();
+    }
+}
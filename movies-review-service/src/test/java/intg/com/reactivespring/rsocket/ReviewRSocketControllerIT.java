@@ -0,0 +1,123 @@
+package com.reactivespring.rsocket;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.rsocket.server.port=0")
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+public class ReviewRSocketControllerIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReactiveMongoOperations reactiveMongoOperations;
+
+    @Autowired
+    RSocketRequester.Builder rSocketRequesterBuilder;
+
+    @LocalRSocketServerPort
+    int rSocketServerPort;
+
+    RSocketRequester rSocketRequester;
+
+    @BeforeEach
+    void setUp() {
+
+        var reviewsList = List.of(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Awesome Movie1", 9.0),
+                new Review("3", 2L, "Excellent Movie", 8.0));
+        reviewReactiveRepository.saveAll(reviewsList)
+                .blockLast();
+
+        rSocketRequester = rSocketRequesterBuilder.tcp("localhost", rSocketServerPort);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rSocketRequester.dispose();
+        reviewReactiveRepository.deleteAll()
+                .block();
+        reactiveMongoOperations.dropCollection(ReviewStats.class)
+                .block();
+    }
+
+    @Test
+    void getReviews() {
+        var reviews = rSocketRequester.route("reviews.{movieInfoId}", 1)
+                .retrieveFlux(Review.class);
+
+        // each request goes over the wire as a REQUEST_N frame, nothing more is sent until then
+        StepVerifier.create(reviews, 1)
+                .expectNextCount(1)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviews_Page() {
+        var reviews = rSocketRequester.route("reviews.{movieInfoId}.{page}.{size}", 1, 1, 1)
+                .retrieveFlux(Review.class);
+
+        StepVerifier.create(reviews)
+                .assertNext(review -> assertEquals("2", review.getReviewId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewStats() {
+        var reviewStats = rSocketRequester.route("reviews.{movieInfoId}.stats", 3)
+                .retrieveMono(ReviewStats.class);
+
+        StepVerifier.create(reviewStats)
+                .assertNext(stats -> {
+                    assertEquals(3L, stats.getMovieInfoId());
+                    assertEquals(0, stats.getCount());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void streamReviews() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        var reviewStream = rSocketRequester.route("reviews.stream")
+                .retrieveFlux(Review.class);
+
+        StepVerifier.create(reviewStream)
+                .assertNext(review1 -> assertEquals("Awesome Movie", review1.getComment()))
+                .thenCancel()
+                .verify();
+    }
+}
@@ -0,0 +1,45 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.ReviewNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GlobalErrorHandlerTest {
+
+    private final GlobalErrorHandler globalErrorHandler = new GlobalErrorHandler();
+
+    @Test
+    void errorResponse() {
+        //given
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews/abc"));
+
+        //when
+        globalErrorHandler.handle(exchange, new ReviewNotFoundException("Review not Found for the given Review Id")).block();
+
+        //then
+        assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+        assertEquals("Review not Found for the given Review Id", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void errorAfterTheResponseWasCommittedIsRethrown() {
+        //given
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews"));
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        exchange.getResponse().setComplete().block();
+        var ex = new IllegalStateException("Failed mid-stream");
+
+        //when
+        StepVerifier.create(globalErrorHandler.handle(exchange, ex))
+                .expectErrorMatches(error -> error == ex)
+                .verify();
+
+        //then
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+    }
+}
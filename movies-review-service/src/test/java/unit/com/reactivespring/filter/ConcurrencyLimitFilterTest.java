@@ -0,0 +1,102 @@
+package com.reactivespring.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyLimitFilterTest {
+
+    private final List<Sinks.Empty<Void>> handlers = new ArrayList<>();
+
+    // a handler which completes when told to
+    private final WebFilterChain chain = exchange -> {
+        Sinks.Empty<Void> handler = Sinks.empty();
+        handlers.add(handler);
+        return handler.asMono();
+    };
+
+    @Test
+    void requestsOverTheLimitAreShed() {
+        //given
+        var concurrencyLimitFilter = new ConcurrencyLimitFilter(2, 2, 2, 10, Duration.ofMillis(1500));
+
+        //when
+        var first = get("/v1/reviews/abc");
+        concurrencyLimitFilter.filter(first, chain).subscribe();
+        concurrencyLimitFilter.filter(get("/v1/reviews/def"), chain).subscribe();
+        var shed = get("/v1/reviews/ghi");
+        concurrencyLimitFilter.filter(shed, chain).subscribe();
+
+        //then
+        assertEquals(2, handlers.size());
+        assertNull(first.getResponse().getStatusCode());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shed.getResponse().getStatusCode());
+        assertEquals("2", shed.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        handlers.get(0).tryEmitEmpty();
+        concurrencyLimitFilter.filter(get("/v1/reviews/ghi"), chain).subscribe();
+        assertEquals(3, handlers.size());
+        assertEquals(2, concurrencyLimitFilter.inFlight());
+    }
+
+    @Test
+    void healthChecksAndStreamsAreNotLimitedWithTheCrud() {
+        //given
+        var concurrencyLimitFilter = new ConcurrencyLimitFilter(1, 1, 1, 1, Duration.ofSeconds(1));
+        concurrencyLimitFilter.filter(get("/v1/reviews/abc"), chain).subscribe();
+
+        //when
+        concurrencyLimitFilter.filter(get("/actuator/health"), chain).subscribe();
+        concurrencyLimitFilter.filter(get("/v1/reviews/stream"), chain).subscribe();
+        var secondStream = get("/v1/reviews/stream");
+        concurrencyLimitFilter.filter(secondStream, chain).subscribe();
+
+        //then
+        assertEquals(3, handlers.size());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, secondStream.getResponse().getStatusCode());
+    }
+
+    @Test
+    void limitFollowsTheLatency() {
+        //given
+        var concurrencyLimitFilter = new ConcurrencyLimitFilter(20, 4, 200, 10, Duration.ofSeconds(1));
+        var steady = Duration.ofMillis(10).toNanos();
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            concurrencyLimitFilter.sample(steady, (int) concurrencyLimitFilter.limit());
+        }
+
+        //then
+        var grown = concurrencyLimitFilter.limit();
+        assertTrue(grown > 20, "limit : " + grown);
+
+        // requests queueing up, ten times as slow
+        for (int i = 0; i < 100; i++) {
+            concurrencyLimitFilter.sample(steady * 10, (int) concurrencyLimitFilter.limit());
+        }
+        var shrunk = concurrencyLimitFilter.limit();
+        assertTrue(shrunk < grown / 2, "limit : " + shrunk);
+
+        // a limit far from being reached is left alone
+        concurrencyLimitFilter.sample(steady, 1);
+        assertEquals(shrunk, concurrencyLimitFilter.limit());
+    }
+
+    private MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+}
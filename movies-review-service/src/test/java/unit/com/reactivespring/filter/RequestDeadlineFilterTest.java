@@ -0,0 +1,93 @@
+package com.reactivespring.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestDeadlineFilterTest {
+
+    private final RequestDeadlineFilter requestDeadlineFilter = new RequestDeadlineFilter();
+
+    @Test
+    void readsPastTheirDeadlineAreCancelled() {
+        //given
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews/abc")
+                .header(RequestDeadlineFilter.TIMEOUT_HEADER, "50"));
+        var cancelled = new AtomicBoolean();
+
+        //when
+        StepVerifier.create(requestDeadlineFilter.filter(exchange, ex -> Mono.<Void>never()
+                        .doOnCancel(() -> cancelled.set(true))))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        //then
+        assertTrue(cancelled.get());
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void readsPastTheirDeadlineAfterTheFirstBytesFail() {
+        //given
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews")
+                .header(RequestDeadlineFilter.TIMEOUT_HEADER, "50"));
+        var cancelled = new AtomicBoolean();
+
+        //when
+        // the status is out, the rest of the body never comes
+        StepVerifier.create(requestDeadlineFilter.filter(exchange, ex -> {
+                    ex.getResponse().setStatusCode(HttpStatus.OK);
+                    return ex.getResponse().setComplete()
+                            .then(Mono.<Void>never())
+                            .doOnCancel(() -> cancelled.set(true));
+                }))
+                .expectErrorSatisfies(ex -> assertEquals(HttpStatus.GATEWAY_TIMEOUT, ((ResponseStatusException) ex).getStatus()))
+                .verify(Duration.ofSeconds(5));
+
+        //then
+        assertTrue(cancelled.get());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void requestsWithNoTimeLeftAreNotHandled() {
+        //given
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews/abc")
+                .header(RequestDeadlineFilter.TIMEOUT_HEADER, "0"));
+        var handled = new AtomicBoolean();
+
+        //when
+        requestDeadlineFilter.filter(exchange, ex -> Mono.fromRunnable(() -> handled.set(true))).block();
+
+        //then
+        assertFalse(handled.get());
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void writesRunToTheirEnd() {
+        //given
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/v1/reviews")
+                .header(RequestDeadlineFilter.TIMEOUT_HEADER, "50"));
+
+        //when
+        StepVerifier.create(requestDeadlineFilter.filter(exchange, ex -> Mono.delay(Duration.ofMillis(200)).then()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        //then
+        assertNull(exchange.getResponse().getStatusCode());
+    }
+}
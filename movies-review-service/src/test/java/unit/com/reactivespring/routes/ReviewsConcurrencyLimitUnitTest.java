@@ -0,0 +1,123 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.config.ConcurrencyLimitConfig;
+import com.reactivespring.config.DurabilityTemplates;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.handler.ReviewSearchHandler;
+import com.reactivespring.handler.ReviewStatsHandler;
+import com.reactivespring.handler.ReviewsHandler;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.search.ReviewSearchIndex;
+import com.reactivespring.service.KnownMovies;
+import com.reactivespring.service.ReviewEvents;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.ReviewWriteBehindBuffer;
+import com.reactivespring.service.TopRatedMovies;
+import com.reactivespring.service.TrendingMovies;
+import com.reactivespring.validator.ReviewValidator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * One request at a time is allowed.
+ */
+@WebFluxTest
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewsHandler.class, ReviewStatsHandler.class, TrendingMovies.class,
+        ReviewSearchHandler.class, ReviewSearchIndex.class, ReviewEvents.class, GlobalErrorHandler.class,
+        ConcurrencyLimitConfig.class})
+@TestPropertySource(properties = {
+        "concurrencyLimit.initialLimit=1",
+        "concurrencyLimit.minLimit=1",
+        "concurrencyLimit.maxLimit=1",
+        "concurrencyLimit.retryAfter=2s",
+})
+public class ReviewsConcurrencyLimitUnitTest {
+
+    @MockBean
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    @MockBean
+    private ReviewValidator reviewValidator;
+
+    @MockBean
+    private ReviewWriteBehindBuffer reviewWriteBehindBuffer;
+
+    @MockBean
+    private DurabilityTemplates durabilityTemplates;
+
+    @MockBean
+    private ReactiveMongoOperations reactiveMongoOperations;
+
+    @MockBean
+    private ReviewStatsService reviewStatsService;
+
+    @MockBean
+    private TopRatedMovies topRatedMovies;
+
+    @MockBean
+    private KnownMovies knownMovies;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReviewEvents reviewEvents;
+
+    @Test
+    void requestsOverTheLimitAreShed() throws Exception {
+        //given
+        Sinks.Empty<Void> slowQuery = Sinks.empty();
+        when(reviewReactiveRepository.findAll()).thenReturn(slowQuery.asMono().thenMany(Flux.<Review>empty()));
+        // holds the only request allowed
+        var held = CompletableFuture.runAsync(() -> webTestClient.get()
+                .uri("/v1/reviews")
+                .exchange()
+                .expectStatus().isOk());
+        verify(reviewReactiveRepository, timeout(5000)).findAll();
+
+        //when
+        webTestClient.get()
+                .uri("/v1/reviews/top?k=3")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2");
+
+        //then
+        // the streams have their own priority class
+        reviewEvents.publish(new Review("abc", 1L, "Awesome Movie", 9.0));
+        var stream = webTestClient.get()
+                .uri("/v1/reviews/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Review.class)
+                .getResponseBody();
+        StepVerifier.create(stream)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        slowQuery.tryEmitEmpty();
+        held.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -1,30 +1,58 @@
 package com.reactivespring.routes;
 
+import com.mongodb.client.result.DeleteResult;
+import com.reactivespring.config.DurabilityTemplates;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.domain.TrendingMovie;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewQueueFullException;
 import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.handler.ResponseMediaTypes;
+import com.reactivespring.handler.ReviewSearchHandler;
+import com.reactivespring.handler.ReviewStatsHandler;
 import com.reactivespring.handler.ReviewsHandler;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.search.ReviewSearchIndex;
+import com.reactivespring.service.KnownMovies;
+import com.reactivespring.service.ReviewEvents;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.ReviewWriteBehindBuffer;
+import com.reactivespring.service.TopRatedMovies;
+import com.reactivespring.service.TrendingMovies;
 import com.reactivespring.validator.ReviewValidator;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyIterable;
 import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isA;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewsHandler.class, GlobalErrorHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewsHandler.class, ReviewStatsHandler.class, TrendingMovies.class,
+        ReviewSearchHandler.class, ReviewSearchIndex.class, ReviewEvents.class, GlobalErrorHandler.class})
 public class ReviewsUnitTest {
 
     @MockBean
@@ -33,9 +61,37 @@ public class ReviewsUnitTest {
     @MockBean
     private ReviewValidator reviewValidator;
 
+    @MockBean
+    private ReviewWriteBehindBuffer reviewWriteBehindBuffer;
+
+    @MockBean
+    private DurabilityTemplates durabilityTemplates;
+
+    @MockBean
+    private ReactiveMongoOperations reactiveMongoOperations;
+
+    @MockBean
+    private ReviewStatsService reviewStatsService;
+
+    @MockBean
+    private TopRatedMovies topRatedMovies;
+
+    @MockBean
+    private KnownMovies knownMovies;
+
     @Autowired
     private WebTestClient webTestClient;
 
+    @BeforeEach
+    void setUp() {
+        when(durabilityTemplates.forTier(any())).thenReturn(reactiveMongoOperations);
+        when(reviewStatsService.ensureStats(any())).thenReturn(Mono.empty());
+        when(reviewStatsService.recordAdded(any())).thenReturn(Mono.empty());
+        when(reviewStatsService.recordUpdated(any(), any())).thenReturn(Mono.empty());
+        when(reviewStatsService.recordDeleted(any())).thenReturn(Mono.empty());
+        when(knownMovies.verify(any())).thenReturn(Mono.empty());
+    }
+
     @Test
     void getAllReviews() {
         //given
@@ -61,12 +117,66 @@ public class ReviewsUnitTest {
 
     }
 
+    @Test
+    void getAllReviews_Smile() {
+        //given
+        when(reviewReactiveRepository.findAll()).thenReturn(Flux.just(
+                new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("def", 2L, "Excellent Movie", 8.0)));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews")
+                .accept(ResponseMediaTypes.APPLICATION_SMILE, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType(ResponseMediaTypes.APPLICATION_SMILE)
+                .expectBodyList(Review.class)
+                .value(reviews -> {
+                    assertEquals(2, reviews.size());
+                    assertEquals("Excellent Movie", reviews.get(1).getComment());
+                });
+    }
+
+    @Test
+    void getReviews_Fields() {
+        //given
+        when(reviewReactiveRepository.findReviews(1L, Pageable.unpaged(), Set.of("comment", "rating")))
+                .thenReturn(Flux.just(new Review(null, null, "Awesome Movie", 9.0)));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews?movieInfoId=1&fields=rating,comment")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].comment").isEqualTo("Awesome Movie")
+                .jsonPath("$[0].rating").isEqualTo(9.0)
+                .jsonPath("$[0].reviewId").doesNotExist()
+                .jsonPath("$[0].movieInfoId").doesNotExist();
+    }
+
+    @Test
+    void getReviews_InvalidFields() {
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews?fields=comment,author")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void addReview() {
         //given
         var review = new Review(null, 1L, "Awesome Movie", 9.0);
 
-        when(reviewReactiveRepository.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reactiveMongoOperations.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
         doCallRealMethod().when(reviewValidator).validate(any(), any());
         //when
         webTestClient
@@ -86,6 +196,86 @@ public class ReviewsUnitTest {
 
     }
 
+    @Test
+    void addReview_InvalidDurability() {
+        //given
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(durabilityTemplates.resolve(any(), eq("FAST")))
+                .thenThrow(new ReviewDataException("Invalid X-Write-Durability : FAST"));
+        doCallRealMethod().when(reviewValidator).validate(any(), any());
+        //when
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .header(DurabilityTemplates.DURABILITY_HEADER, "FAST")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Invalid X-Write-Durability : FAST");
+    }
+
+    @Test
+    void addReview_WriteBehind() {
+        //given
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reviewWriteBehindBuffer.isEnabled()).thenReturn(true);
+        when(reviewWriteBehindBuffer.getAckMode()).thenReturn(ReviewWriteBehindBuffer.AckMode.ACCEPTED);
+        when(reviewWriteBehindBuffer.enqueue(isA(Review.class))).thenReturn(Mono.never());
+        //when
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(Review.class)
+                .consumeWith(reviewResponse -> {
+                    var queuedReview = reviewResponse.getResponseBody();
+                    assertNotNull(queuedReview);
+                    assertEquals("Awesome Movie", queuedReview.getComment());
+                });
+
+    }
+
+    @Test
+    void addReview_WriteBehind_QueueFull() {
+        //given
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reviewWriteBehindBuffer.isEnabled()).thenReturn(true);
+        when(reviewWriteBehindBuffer.enqueue(isA(Review.class))).thenThrow(new ReviewQueueFullException("Review queue is full, please retry later"));
+        //when
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().exists(HttpHeaders.RETRY_AFTER);
+
+    }
+
+    @Test
+    void addReview_UnknownMovie() {
+        //given
+        var review = new Review(null, 42L, "Awesome Movie", 9.0);
+
+        when(knownMovies.verify(42L)).thenReturn(Mono.error(new ReviewDataException("rating.movieInfoId : no movie found for 42")));
+        //when
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("rating.movieInfoId : no movie found for 42");
+
+    }
+
     @Test
     void addReview_Validations() {
         //given
@@ -108,7 +298,7 @@ public class ReviewsUnitTest {
 
         var reviewUpdate = new Review(null, 1L, "Not an Awesome Movie", 8.0);
 
-        when(reviewReactiveRepository.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Not an Awesome Movie", 8.0)));
+        when(reactiveMongoOperations.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Not an Awesome Movie", 8.0)));
         when(reviewReactiveRepository.findById((String) any())).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
         doCallRealMethod().when(reviewValidator).validate(any(), any());
         //when
@@ -136,7 +326,7 @@ public class ReviewsUnitTest {
         //given
         var reviewId = "abc";
         when(reviewReactiveRepository.findById((String) any())).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
-        when(reviewReactiveRepository.deleteById((String) any())).thenReturn(Mono.empty());
+        when(reactiveMongoOperations.remove(isA(Query.class), eq(Review.class))).thenReturn(Mono.just(DeleteResult.acknowledged(1)));
         doCallRealMethod().when(reviewValidator).validate(any(), any());
 
         //when
@@ -147,5 +337,165 @@ public class ReviewsUnitTest {
                 .expectStatus().isNoContent();
     }
 
+    @Test
+    void getReviewStats() {
+        //given
+        when(reviewStatsService.getStats(List.of(1L))).thenReturn(Flux.just(new ReviewStats(1L, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L), 0)));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/stats?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .hasSize(1)
+                .value(statsOfMovies -> {
+                    var reviewStats = statsOfMovies.get(0);
+                    assertEquals(2, reviewStats.getCount());
+                    assertEquals(8.5, reviewStats.getAverage());
+                });
+    }
+
+    @Test
+    void getReviewStats_Bulk() {
+        //given
+        when(reviewStatsService.getStats(List.of(1L, 2L))).thenReturn(Flux.just(
+                new ReviewStats(1L, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L), 0),
+                ReviewStats.empty(2L)));
 
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/stats?movieInfoId=1,2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .value(reviewStats -> {
+                    assertEquals(2, reviewStats.size());
+                    assertEquals(0, reviewStats.get(1).getCount());
+                });
+    }
+
+    @Test
+    void getReviewStats_MissingMovieInfoId() {
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/stats")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getTopRated() {
+        //given
+        when(topRatedMovies.top(2, 5)).thenReturn(List.of(
+                new ReviewStats(1L, 10, 90.0, 8.0, 10.0, Map.of(), 0),
+                new ReviewStats(2L, 5, 40.0, 7.0, 9.0, Map.of(), 0)));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/top?k=2&minReviews=5")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewStats.class)
+                .value(reviewStats -> {
+                    assertEquals(2, reviewStats.size());
+                    assertEquals(1L, reviewStats.get(0).getMovieInfoId());
+                });
+    }
+
+    @Test
+    void getTopRated_InvalidK() {
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/top?k=0")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getTrending() {
+        //given
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reactiveMongoOperations.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isCreated();
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/trending?window=15m")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(TrendingMovie.class)
+                .value(trendingMovies -> {
+                    assertEquals(1L, trendingMovies.get(0).getMovieInfoId());
+                });
+    }
+
+    @Test
+    void getTrending_WindowTooLarge() {
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/trending?window=7d")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void searchReviews() {
+        //given
+        var review = new Review(null, 1L, "Breathtaking cinematography", 9.0);
+        var savedReview = new Review("def", 1L, "Breathtaking cinematography", 9.0);
+
+        when(reactiveMongoOperations.save(isA(Review.class))).thenReturn(Mono.just(savedReview));
+        when(reviewReactiveRepository.findAllById(anyIterable())).thenReturn(Flux.just(savedReview));
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isCreated();
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/search?q=cinematography&movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .value(reviews -> {
+                    assertEquals(1, reviews.size());
+                    assertEquals("def", reviews.get(0).getReviewId());
+                });
+    }
+
+    @Test
+    void searchReviews_MissingQuery() {
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/search")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
 }
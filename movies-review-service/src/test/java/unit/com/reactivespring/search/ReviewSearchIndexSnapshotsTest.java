@@ -0,0 +1,70 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReviewSearchIndexSnapshotsTest {
+
+    private final ReactiveMongoOperations mongoOperations = mock(ReactiveMongoOperations.class);
+
+    @TempDir
+    Path snapshotDir;
+
+    @Test
+    void writesSinceTheSnapshotAreReplayedAndDeletesReconciled() throws IOException {
+        //given
+        var snapshotPath = snapshotDir.resolve("reviews-search.idx");
+        var previous = new ReviewSearchIndex();
+        previous.index(new Review("a", 1L, "Awesome movie, awesome cast", 9.0));
+        previous.index(new Review("b", 1L, "Awesome", 8.0));
+        previous.index(new Review("c", 2L, "Boring movie with an awful ending", 3.0));
+        try (var out = new DataOutputStream(Files.newOutputStream(snapshotPath))) {
+            previous.writeSnapshot(out);
+        }
+        // since the snapshot : b edited, c deleted, d added
+        var b = new Review("b", 1L, "Dull", 2.0);
+        var d = new Review("d", 2L, "An awesome ending", 7.0);
+        when(mongoOperations.find(any(Query.class), eq(Review.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            if (query.getQueryObject().containsKey("updatedAt")) {
+                return Flux.just(b, d);
+            }
+            return Flux.just(new Review("a", null, null, null), new Review("b", null, null, null),
+                    new Review("d", null, null, null));
+        });
+        when(mongoOperations.count(any(Query.class), eq(Review.class))).thenReturn(Mono.just(3L));
+        var reviewSearchIndex = new ReviewSearchIndex();
+        var snapshots = new ReviewSearchIndexSnapshots(reviewSearchIndex, mongoOperations, snapshotPath.toString(),
+                Duration.ofMinutes(5), 0.25, Duration.ofMinutes(1));
+
+        //when
+        reviewSearchIndex.index(new Review("e", 3L, "Awesome soundtrack", 8.0));
+        snapshots.loadIndex().block();
+
+        //then
+        assertEquals(4, reviewSearchIndex.size());
+        assertFalse(reviewSearchIndex.contains("c"));
+        assertEquals(List.of("a", "e", "d"), reviewSearchIndex.search("awesome", null, 10));
+        assertEquals(List.of("b"), reviewSearchIndex.search("dull", null, 10));
+        assertEquals(List.of(), reviewSearchIndex.search("boring", null, 10));
+    }
+}
@@ -0,0 +1,210 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReviewSearchIndexTest {
+
+    private final ReviewSearchIndex reviewSearchIndex = new ReviewSearchIndex();
+
+    @BeforeEach
+    void setUp() {
+        reviewSearchIndex.index(new Review("a", 1L, "Awesome movie, awesome cast", 9.0));
+        reviewSearchIndex.index(new Review("b", 1L, "Awesome", 8.0));
+        reviewSearchIndex.index(new Review("c", 2L, "Boring movie with an awful ending", 3.0));
+    }
+
+    @Test
+    void rankedWithBm25() {
+        assertEquals(List.of("b", "a"), reviewSearchIndex.search("AWESOME", null, 10));
+        assertEquals(List.of("c", "a"), reviewSearchIndex.search("boring movie", null, 10));
+        assertEquals(List.of("c"), reviewSearchIndex.search("boring movie", null, 1));
+    }
+
+    @Test
+    void filteredByMovie() {
+        assertEquals(List.of("a"), reviewSearchIndex.search("movie", 1L, 10));
+    }
+
+    @Test
+    void updatesAndDeletesAreApplied() {
+        reviewSearchIndex.index(new Review("a", 1L, "Dull", 2.0));
+        reviewSearchIndex.remove("c");
+
+        assertEquals(List.of("b"), reviewSearchIndex.search("awesome", null, 10));
+        assertEquals(List.of(), reviewSearchIndex.search("movie", null, 10));
+        assertEquals(List.of("a"), reviewSearchIndex.search("dull", null, 10));
+        assertEquals(2, reviewSearchIndex.size());
+    }
+
+    @Test
+    void compactionKeepsTheLiveReviews() {
+        reviewSearchIndex.remove("a");
+        reviewSearchIndex.remove("b");
+
+        assertTrue(reviewSearchIndex.compact(0.25));
+        assertEquals(List.of("c"), reviewSearchIndex.search("awesome movie", null, 10));
+        reviewSearchIndex.index(new Review("d", 2L, "An awesome ending", 7.0));
+        assertEquals(List.of("d", "c"), reviewSearchIndex.search("ending", null, 10));
+    }
+
+    @Test
+    void deletedDocsDoNotCountInTheDocumentFrequency() {
+        //given
+        var index = new ReviewSearchIndex();
+        index.index(new Review("1", 1L, "xenon", 5.0));
+        index.index(new Review("2", 1L, "yak", 5.0));
+        index.index(new Review("3", 1L, "yak zebra", 5.0));
+
+        //when
+        for (int i = 4; i < 7; i++) {
+            index.index(new Review(String.valueOf(i), 1L, "xenon", 5.0));
+            index.remove(String.valueOf(i));
+        }
+
+        //then
+        assertEquals(List.of("1", "2", "3"), index.search("xenon yak", null, 10));
+    }
+
+    @Test
+    void documentFrequencyIsKeptThroughSnapshotsAndCompaction() throws IOException {
+        //given
+        var comments = List.of("xenon", "yak", "yak zebra", "xenon yak", "zebra zebra yak", "xenon xenon xenon");
+        var live = new ReviewSearchIndex();
+        for (int i = 0; i < 30; i++) {
+            var review = new Review(String.valueOf(i), 1L, comments.get(i % comments.size()), 5.0);
+            reviewSearchIndex.index(review);
+            if (i % 3 == 0) {
+                reviewSearchIndex.remove(review.getReviewId());
+            } else {
+                live.index(review);
+            }
+        }
+        live.remove("a");
+        live.remove("b");
+        live.remove("c");
+        reviewSearchIndex.remove("a");
+        reviewSearchIndex.remove("b");
+        reviewSearchIndex.remove("c");
+
+        //when
+        var bytes = new ByteArrayOutputStream();
+        reviewSearchIndex.writeSnapshot(new DataOutputStream(bytes));
+        var restored = new ReviewSearchIndex();
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        var compacted = new ReviewSearchIndex();
+        compacted.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertTrue(compacted.compact(0.25));
+
+        //then
+        // the same scores as an index that never held the deleted reviews
+        for (String query : List.of("xenon yak", "zebra", "yak zebra xenon")) {
+            var expected = live.search(query, null, 5);
+            assertEquals(5, expected.size());
+            assertEquals(expected, reviewSearchIndex.search(query, null, 5), query);
+            assertEquals(expected, restored.search(query, null, 5), query);
+            assertEquals(expected, compacted.search(query, null, 5), query);
+        }
+    }
+
+    @Test
+    void compactionKeepsTheWritesMadeWhileItRuns() throws InterruptedException {
+        //given
+        var comments = List.of("awesome movie", "boring movie", "awful ending", "awesome cast", "dull");
+        var random = new Random(42);
+        var expected = new HashMap<String, Review>();
+        var running = new AtomicBoolean(true);
+        var compactions = new Thread(() -> {
+            while (running.get()) {
+                reviewSearchIndex.compact(0.0);
+            }
+        });
+        compactions.start();
+
+        //when
+        try {
+            for (int i = 0; i < 50_000; i++) {
+                var reviewId = String.valueOf(random.nextInt(5_000));
+                if (random.nextInt(4) == 0) {
+                    reviewSearchIndex.remove(reviewId);
+                    expected.remove(reviewId);
+                } else {
+                    var review = new Review(reviewId, (long) random.nextInt(3), comments.get(random.nextInt(comments.size())), 5.0);
+                    reviewSearchIndex.index(review);
+                    expected.put(reviewId, review);
+                }
+            }
+        } finally {
+            running.set(false);
+            compactions.join();
+        }
+
+        //then
+        expected.keySet().removeAll(List.of("a", "b", "c"));
+        reviewSearchIndex.remove("a");
+        reviewSearchIndex.remove("b");
+        reviewSearchIndex.remove("c");
+        var rebuilt = new ReviewSearchIndex();
+        expected.values().forEach(rebuilt::index);
+        assertEquals(rebuilt.size(), reviewSearchIndex.size());
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(expected.containsKey(String.valueOf(i)), reviewSearchIndex.contains(String.valueOf(i)));
+        }
+        for (String query : List.of("awesome", "movie", "ending cast", "dull")) {
+            for (Long movieInfoId : Arrays.asList(null, 0L, 1L, 2L)) {
+                assertEquals(new HashSet<>(rebuilt.search(query, movieInfoId, 10_000)),
+                        new HashSet<>(reviewSearchIndex.search(query, movieInfoId, 10_000)));
+            }
+        }
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        reviewSearchIndex.remove("b");
+        var bytes = new ByteArrayOutputStream();
+        reviewSearchIndex.writeSnapshot(new DataOutputStream(bytes));
+
+        var restored = new ReviewSearchIndex();
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(2, restored.size());
+        assertEquals(List.of("a"), restored.search("awesome", null, 10));
+        assertEquals(List.of("c", "a"), restored.search("boring movie", null, 10));
+    }
+
+    @Test
+    void writesWhileLoadingAreAppliedAfterIt() throws IOException {
+        //given
+        var bytes = new ByteArrayOutputStream();
+        reviewSearchIndex.writeSnapshot(new DataOutputStream(bytes));
+        var loading = new ReviewSearchIndex();
+        loading.startLoading();
+
+        //when
+        loading.index(new Review("d", 2L, "An awesome ending", 7.0));
+        loading.remove("a");
+        loading.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        //then
+        assertEquals(List.of("b", "a"), loading.search("awesome", null, 10));
+        loading.finishLoading();
+        assertEquals(List.of("b", "d"), loading.search("awesome", null, 10));
+        assertEquals(3, loading.size());
+    }
+}
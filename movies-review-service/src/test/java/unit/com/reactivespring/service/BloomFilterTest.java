@@ -0,0 +1,22 @@
+package com.reactivespring.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BloomFilterTest {
+
+    @Test
+    void noFalseNegativesAndBoundedFalsePositives() {
+        var bloomFilter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> bloomFilter.add(String.valueOf(i)));
+
+        assertTrue(IntStream.range(0, 10_000).allMatch(i -> bloomFilter.mightContain(String.valueOf(i))));
+        var falsePositives = IntStream.range(10_000, 110_000)
+                .filter(i -> bloomFilter.mightContain(String.valueOf(i)))
+                .count();
+        assertTrue(falsePositives < 2_000, "false positives : " + falsePositives);
+    }
+}
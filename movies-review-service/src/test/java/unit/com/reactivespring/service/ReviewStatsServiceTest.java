@@ -0,0 +1,140 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReviewStatsServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final ReactiveMongoOperations mongoOperations = mock(ReactiveMongoOperations.class);
+    private final ReviewStatsService reviewStatsService = new ReviewStatsService(mongoOperations, Duration.ofHours(1));
+
+    @BeforeEach
+    void setUp() {
+        // two reviews of movie 1, rated 8.0 and 9.0
+        when(mongoOperations.aggregate(any(Aggregation.class), eq(Review.class), eq(Document.class)))
+                .thenReturn(Flux.just(bucket(8, 8.0), bucket(9, 9.0)));
+    }
+
+    @Test
+    void recomputeRetriesWhenAnIncrementLandsInBetween() {
+        //given
+        when(mongoOperations.findById(1L, ReviewStats.class))
+                .thenReturn(Mono.just(stats(3)), Mono.just(stats(4)));
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ReviewStats.class)))
+                .thenAnswer(invocation -> {
+                    // the version 3 has been incremented to 4 since it was read
+                    var version = invocation.<Query>getArgument(0).getQueryObject().get("version");
+                    return Long.valueOf(4).equals(version) ? Mono.just(stats(5)) : Mono.empty();
+                });
+
+        //when
+        var reviewStats = reviewStatsService.recompute(1L).block(TIMEOUT);
+
+        //then
+        assertEquals(5, reviewStats.getVersion());
+        verify(mongoOperations, times(2)).aggregate(any(Aggregation.class), eq(Review.class), eq(Document.class));
+        verify(mongoOperations, times(2)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ReviewStats.class));
+    }
+
+    @Test
+    void recomputeGivesUpAfterTooManyConflicts() {
+        //given
+        when(mongoOperations.findById(1L, ReviewStats.class)).thenReturn(Mono.just(stats(3)));
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ReviewStats.class)))
+                .thenReturn(Mono.empty());
+
+        //when
+        var recompute = reviewStatsService.recompute(1L);
+
+        //then
+        assertThrows(IllegalStateException.class, () -> recompute.block(TIMEOUT));
+    }
+
+    @Test
+    void ensureStatsSeedsMissingStatsFromTheReviews() {
+        //given
+        when(mongoOperations.exists(any(Query.class), eq(ReviewStats.class))).thenReturn(Mono.just(false));
+        when(mongoOperations.insert(any(ReviewStats.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        //when
+        reviewStatsService.ensureStats(1L).block(TIMEOUT);
+
+        //then
+        verify(mongoOperations).insert(eq(new ReviewStats(1L, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L), 0)));
+    }
+
+    @Test
+    void ensureStatsLeavesExistingStatsAlone() {
+        //given
+        when(mongoOperations.exists(any(Query.class), eq(ReviewStats.class))).thenReturn(Mono.just(true));
+
+        //when
+        reviewStatsService.ensureStats(1L).block(TIMEOUT);
+
+        //then
+        verify(mongoOperations, never()).aggregate(any(Aggregation.class), eq(Review.class), eq(Document.class));
+        verify(mongoOperations, never()).insert(any(ReviewStats.class));
+    }
+
+    @Test
+    void ensureStatsLosingTheRaceToAnotherSeed() {
+        //given
+        when(mongoOperations.exists(any(Query.class), eq(ReviewStats.class))).thenReturn(Mono.just(false));
+        when(mongoOperations.insert(any(ReviewStats.class))).thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+
+        //when
+        var seeded = reviewStatsService.ensureStats(1L).block(TIMEOUT);
+
+        //then
+        assertNull(seeded);
+    }
+
+    @Test
+    void incrementWithoutStatsFails() {
+        //given
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ReviewStats.class)))
+                .thenReturn(Mono.empty());
+
+        //when
+        var recordAdded = reviewStatsService.recordAdded(new Review("abc", 1L, "Awesome Movie", 9.0));
+
+        //then
+        // the caller queues the movie for a recompute
+        assertThrows(IllegalStateException.class, () -> recordAdded.block(TIMEOUT));
+    }
+
+    private static Document bucket(long bucket, double rating) {
+        return new Document("_id", bucket).append("count", 1).append("sum", rating).append("min", rating).append("max", rating);
+    }
+
+    private static ReviewStats stats(long version) {
+        return new ReviewStats(1L, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L), version);
+    }
+}
@@ -0,0 +1,154 @@
+package com.reactivespring.service;
+
+import com.reactivespring.config.DurabilityTemplates;
+import com.reactivespring.config.DurabilityTier;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewQueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReviewWriteBehindBufferTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final DurabilityTemplates durabilityTemplates = mock(DurabilityTemplates.class);
+    private final ReactiveMongoOperations mongoOperations = mock(ReactiveMongoOperations.class);
+    // the reviews of every insertMany, in order
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private Function<List<Review>, Mono<Void>> insertDelay = batch -> Mono.empty();
+    private ReviewWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        when(durabilityTemplates.forTier(any())).thenReturn(mongoOperations);
+        when(mongoOperations.insert(anyCollection(), eq(Review.class))).thenAnswer(invocation -> {
+            var reviews = new ArrayList<Review>(invocation.<Collection<Review>>getArgument(0));
+            return insertDelay.apply(reviews)
+                    .thenMany(Flux.fromIterable(reviews))
+                    .doOnComplete(() -> batches.add(reviews.stream().map(Review::getComment).collect(Collectors.toList())));
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        buffer.stop();
+    }
+
+    @Test
+    void flushedOnceABatchIsFull() {
+        //given
+        buffer = start(10, 3, Duration.ofHours(1));
+
+        //when
+        var flushed = IntStream.range(0, 4)
+                .mapToObj(i -> buffer.enqueue(review(i)))
+                .collect(Collectors.toList());
+
+        //then
+        flushed.subList(0, 3).forEach(review -> review.block(TIMEOUT));
+        assertEquals(List.of(List.of("0", "1", "2")), batches);
+        assertEquals(1, buffer.getQueueDepth());
+    }
+
+    @Test
+    void flushedOnTheNextTick() {
+        //given
+        buffer = start(10, 100, Duration.ofMillis(50));
+
+        //when
+        var flushed = buffer.enqueue(review(0));
+
+        //then
+        assertEquals("0", flushed.block(TIMEOUT).getComment());
+        assertEquals(List.of(List.of("0")), batches);
+        assertEquals(0, buffer.getQueueDepth());
+    }
+
+    @Test
+    void rejectedOnceTheQueueIsFull() {
+        //given
+        var insert = Sinks.empty();
+        insertDelay = batch -> insert.asMono().then();
+        buffer = start(2, 1, Duration.ofHours(1));
+        var flushed = List.of(buffer.enqueue(review(0)), buffer.enqueue(review(1)));
+
+        //when
+        assertThrows(ReviewQueueFullException.class, () -> buffer.enqueue(review(2)));
+        insertDelay = batch -> Mono.empty();
+        insert.tryEmitEmpty();
+
+        //then
+        flushed.forEach(review -> review.block(TIMEOUT));
+        assertEquals(0, buffer.getQueueDepth());
+        buffer.enqueue(review(3)).block(TIMEOUT);
+        assertEquals(List.of(List.of("0"), List.of("1"), List.of("3")), batches);
+    }
+
+    @Test
+    void slowInsertsOnlyDelayTheFollowingBatches() {
+        //given
+        insertDelay = batch -> Mono.delay(Duration.ofMillis(50)).then();
+        buffer = start(1000, 2, Duration.ofMillis(5));
+
+        //when
+        var flushed = IntStream.range(0, 11)
+                .mapToObj(i -> buffer.enqueue(review(i)))
+                .collect(Collectors.toList());
+
+        //then
+        flushed.forEach(review -> review.block(TIMEOUT));
+        assertEquals(IntStream.range(0, 11).mapToObj(String::valueOf).collect(Collectors.toList()),
+                batches.stream().flatMap(List::stream).collect(Collectors.toList()));
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 2));
+        assertEquals(0, buffer.getQueueDepth());
+    }
+
+    @Test
+    void rejectedOnceStopped() throws InterruptedException {
+        //given
+        buffer = start(10, 100, Duration.ofHours(1));
+        var flushed = buffer.enqueue(review(0));
+
+        //when
+        buffer.stop();
+
+        //then
+        assertEquals("0", flushed.block(TIMEOUT).getComment());
+        assertThrows(ReviewQueueFullException.class, () -> buffer.enqueue(review(1)));
+        assertEquals(0, buffer.getQueueDepth());
+    }
+
+    private ReviewWriteBehindBuffer start(int queueCapacity, int batchSize, Duration flushInterval) {
+        var writeBehindBuffer = new ReviewWriteBehindBuffer(durabilityTemplates, DurabilityTier.ACKNOWLEDGED, true,
+                "flushed", queueCapacity, batchSize, flushInterval);
+        writeBehindBuffer.start();
+        return writeBehindBuffer;
+    }
+
+    private static Review review(int i) {
+        return new Review(null, 1L, String.valueOf(i), 8.0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ReviewStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class TopRatedMoviesTest {
+
+    private final TopRatedMovies topRatedMovies = new TopRatedMovies(mock(ReactiveMongoOperations.class), Duration.ofMinutes(5));
+
+    @Test
+    void rankedByAverageThenCount() {
+        topRatedMovies.update(new ReviewStats(1L, 2, 16.0, 8.0, 8.0, Map.of(), 0));
+        topRatedMovies.update(new ReviewStats(2L, 1, 9.0, 9.0, 9.0, Map.of(), 0));
+        topRatedMovies.update(new ReviewStats(3L, 4, 32.0, 8.0, 8.0, Map.of(), 0));
+
+        assertEquals(List.of(2L, 3L, 1L), movieInfoIds(3, 1));
+        assertEquals(List.of(3L), movieInfoIds(1, 3));
+    }
+
+    @Test
+    void updateReplacesThePreviousRanking() {
+        topRatedMovies.update(new ReviewStats(1L, 1, 9.0, 9.0, 9.0, Map.of(), 1));
+        topRatedMovies.update(new ReviewStats(2L, 1, 8.0, 8.0, 8.0, Map.of(), 1));
+
+        topRatedMovies.update(new ReviewStats(1L, 2, 14.0, 5.0, 9.0, Map.of(), 2));
+        assertEquals(List.of(2L, 1L), movieInfoIds(10, 1));
+
+        topRatedMovies.update(new ReviewStats(2L, 0, 0.0, null, null, Map.of(), 2));
+        assertEquals(List.of(1L), movieInfoIds(10, 1));
+    }
+
+    @Test
+    void staleStatsDoNotReplaceNewerOnes() {
+        //given
+        topRatedMovies.update(new ReviewStats(1L, 2, 18.0, 9.0, 9.0, Map.of(), 2));
+        topRatedMovies.update(new ReviewStats(2L, 1, 8.0, 8.0, 8.0, Map.of(), 1));
+
+        //when
+        // a reload which read the stats of movie 1 before its second review
+        topRatedMovies.update(new ReviewStats(1L, 1, 3.0, 3.0, 3.0, Map.of(), 1));
+        topRatedMovies.update(new ReviewStats(1L, 1, 3.0, 3.0, 3.0, Map.of(), 2));
+
+        //then
+        assertEquals(List.of(1L, 2L), movieInfoIds(10, 1));
+        assertEquals(2, topRatedMovies.top(1, 1).get(0).getCount());
+    }
+
+    @Test
+    void staleStatsDoNotBringBackAMovieWithoutReviews() {
+        //given
+        topRatedMovies.update(new ReviewStats(1L, 1, 9.0, 9.0, 9.0, Map.of(), 1));
+        topRatedMovies.update(new ReviewStats(1L, 0, 0.0, null, null, Map.of(), 2));
+
+        //when
+        topRatedMovies.update(new ReviewStats(1L, 1, 9.0, 9.0, 9.0, Map.of(), 1));
+
+        //then
+        assertEquals(List.of(), movieInfoIds(10, 1));
+    }
+
+    private List<Long> movieInfoIds(int k, long minReviews) {
+        return topRatedMovies.top(k, minReviews).stream()
+                .map(ReviewStats::getMovieInfoId)
+                .collect(Collectors.toList());
+    }
+}
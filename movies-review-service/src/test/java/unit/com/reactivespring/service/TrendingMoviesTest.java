@@ -0,0 +1,53 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.TrendingMovie;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TrendingMoviesTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final TrendingMovies trendingMovies = new TrendingMovies(Duration.ofMinutes(1), Duration.ofMinutes(60), 2);
+
+    @Test
+    void rankedByReviewsWithinTheWindow() {
+        var now = 1_000 * MINUTE;
+        trendingMovies.record(1L, now - 20 * MINUTE);
+        trendingMovies.record(1L, now - 20 * MINUTE);
+        trendingMovies.record(1L, now - 20 * MINUTE);
+        trendingMovies.record(2L, now - 5 * MINUTE);
+        trendingMovies.record(2L, now);
+
+        assertEquals(List.of(new TrendingMovie(2L, 2)), trendingMovies.trending(Duration.ofMinutes(15), 10, now));
+        assertEquals(List.of(new TrendingMovie(1L, 3), new TrendingMovie(2L, 2)),
+                trendingMovies.trending(Duration.ofMinutes(30), 10, now));
+    }
+
+    @Test
+    void recycledBucketsAgeOut() {
+        var now = 1_000 * MINUTE;
+        trendingMovies.record(1L, now);
+        // same slot of the ring, one full turn later
+        trendingMovies.record(2L, now + 60 * MINUTE);
+
+        assertEquals(List.of(new TrendingMovie(2L, 1)), trendingMovies.trending(Duration.ofMinutes(60), 10, now + 60 * MINUTE));
+        assertEquals(List.of(), trendingMovies.trending(Duration.ofMinutes(60), 10, now + 120 * MINUTE));
+    }
+
+    @Test
+    void moviesPerBucketAreCapped() {
+        var now = 1_000 * MINUTE;
+        trendingMovies.record(1L, now);
+        trendingMovies.record(2L, now);
+        trendingMovies.record(3L, now);
+        trendingMovies.record(1L, now);
+
+        assertEquals(List.of(new TrendingMovie(1L, 2), new TrendingMovie(2L, 1)),
+                trendingMovies.trending(Duration.ofMinutes(1), 10, now));
+    }
+}
@@ -0,0 +1,52 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.BulkheadFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounds the calls in flight to one downstream, whatever its instances, with a short line of calls waiting for
+ * one of them to end. Beyond it the calls fail at once with a {@link BulkheadFullException} : a downstream which
+ * stopped answering holds maxConcurrentCalls + maxQueuedCalls requests at most, instead of every request of the
+ * service.
+ */
+public class Bulkhead implements ExchangeFilterFunction {
+
+    private final String downstream;
+    private final Permits calls;
+    private final Counter rejected;
+
+    public Bulkhead(String downstream, int maxConcurrentCalls, int maxQueuedCalls) {
+        this.downstream = downstream;
+        this.calls = new Permits(maxConcurrentCalls, maxQueuedCalls, this::full);
+        var tags = Tags.of("downstream", downstream);
+        this.rejected = Metrics.counter("restClient.bulkhead.rejected", tags);
+        Metrics.gauge("restClient.bulkhead.active", tags, calls, Permits::active);
+        Metrics.gauge("restClient.bulkhead.queued", tags, calls, Permits::queued);
+        Metrics.gauge("restClient.bulkhead.saturation", tags, calls, permits -> (double) permits.active() / permits.maxActive());
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return calls.exchange(request, next);
+    }
+
+    int active() {
+        return calls.active();
+    }
+
+    int queued() {
+        return calls.queued();
+    }
+
+    private BulkheadFullException full() {
+        rejected.increment();
+        return new BulkheadFullException("Too many calls in progress to " + downstream);
+    }
+}
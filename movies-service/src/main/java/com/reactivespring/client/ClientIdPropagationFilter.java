@@ -0,0 +1,34 @@
+package com.reactivespring.client;
+
+import com.reactivespring.filter.ClientIdFilter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends the id of the caller of the request along with the calls it makes, for the rate limits of the other services
+ * to count them against that caller. They only read it from the addresses they trust, ours among them.
+ */
+public class ClientIdPropagationFilter implements ExchangeFilterFunction {
+
+    private final String clientIdHeader;
+
+    public ClientIdPropagationFilter(String clientIdHeader) {
+        this.clientIdHeader = clientIdHeader;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            var clientId = context.<String>getOrEmpty(ClientIdFilter.CLIENT_ID);
+            if (clientId.isEmpty()) {
+                return next.exchange(request);
+            }
+            return next.exchange(ClientRequest.from(request)
+                    .headers(headers -> headers.set(clientIdHeader, clientId.get()))
+                    .build());
+        });
+    }
+}
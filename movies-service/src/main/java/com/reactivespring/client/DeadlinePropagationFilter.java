@@ -0,0 +1,32 @@
+package com.reactivespring.client;
+
+import com.reactivespring.util.Deadline;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends the time left until the deadline of the request along with the calls it makes, for the other services to
+ * give up on them in time as well. A call made once the deadline is over fails without being sent.
+ */
+public class DeadlinePropagationFilter implements ExchangeFilterFunction {
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            var deadline = context.<Deadline>getOrEmpty(Deadline.class);
+            if (deadline.isEmpty()) {
+                return next.exchange(request);
+            }
+            if (deadline.get().isExpired()) {
+                return Mono.error(deadline.get().exceeded());
+            }
+            var remainingMillis = Math.max(1, deadline.get().remaining().toMillis());
+            return next.exchange(ClientRequest.from(request)
+                    .header(Deadline.TIMEOUT_HEADER, String.valueOf(remainingMillis))
+                    .build());
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package com.reactivespring.client;
+
+import org.springframework.beans.factory.DisposableBean;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * The connection pool of one downstream, reported as the reactor.netty.connection.provider metrics under its
+ * name, and optionally event loops of its own instead of the ones of the server.
+ */
+public class DownstreamResources implements DisposableBean {
+
+    private final ConnectionProvider connectionProvider;
+    private final LoopResources loopResources;
+    private final boolean ownLoops;
+
+    public DownstreamResources(String name, int maxConnections, int eventLoopThreads, LoopResources sharedLoopResources) {
+        this.connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .metrics(true)
+                .build();
+        this.ownLoops = eventLoopThreads > 0;
+        this.loopResources = ownLoops ? LoopResources.create(name, eventLoopThreads, true) : sharedLoopResources;
+    }
+
+    /**
+     * Sends Accept-Encoding: gzip and decompresses the responses transparently.
+     */
+    public HttpClient httpClient() {
+        return HttpClient.create(connectionProvider)
+                .runOn(loopResources)
+                .compress(true);
+    }
+
+    @Override
+    public void destroy() {
+        connectionProvider.dispose();
+        if (ownLoops) {
+            loopResources.dispose();
+        }
+    }
+}
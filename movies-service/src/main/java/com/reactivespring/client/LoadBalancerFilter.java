@@ -0,0 +1,231 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads the calls to a downstream over its instances, the requests to the host and port of the configured url
+ * being sent to one of them instead. Two healthy instances are picked at random and the one with the fewest
+ * requests in flight gets the call, or the faster one when they have as many and one is twice as slow. This
+ * keeps away from a slow instance without herding every caller onto the same least loaded one.
+ * <p>
+ * An instance failing maxFailures calls in a row, with a connection error or a 5xx, is ejected for ejectionTime.
+ * A GET failing to reach an instance is sent to another one. When every instance is ejected they are all tried
+ * again, rather than failing the calls without trying.
+ * <p>
+ * The requests with the {@link #UNBALANCED} attribute are sent as they are, to the instance they name.
+ */
+@Slf4j
+public class LoadBalancerFilter implements ExchangeFilterFunction {
+
+    public static final String UNBALANCED = LoadBalancerFilter.class.getName() + ".unbalanced";
+
+    private final Map<String, List<Instance>> instancesByDownstream = new ConcurrentHashMap<>();
+    private final int maxFailures;
+    private final long ejectionNanos;
+    private final LongSupplier nanoTime;
+
+    public LoadBalancerFilter(int maxFailures, Duration ejectionTime) {
+        this(maxFailures, ejectionTime, System::nanoTime);
+    }
+
+    LoadBalancerFilter(int maxFailures, Duration ejectionTime, LongSupplier nanoTime) {
+        if (maxFailures < 1) {
+            throw new IllegalArgumentException("maxFailures must be greater than zero");
+        }
+        this.maxFailures = maxFailures;
+        this.ejectionNanos = ejectionTime.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Sends the requests to the host and port of url to the given instances, each a scheme, host and port.
+     */
+    public LoadBalancerFilter instances(URI url, List<URI> instances) {
+        if (instances.isEmpty()) {
+            throw new IllegalArgumentException("No instances for " + url);
+        }
+        var downstream = downstream(url);
+        var balanced = new ArrayList<Instance>();
+        for (URI instance : instances) {
+            balanced.add(new Instance(downstream, instance));
+        }
+        instancesByDownstream.put(downstream, List.copyOf(balanced));
+        return this;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        var instances = instancesByDownstream.get(downstream(request.url()));
+        if (instances == null || request.attribute(UNBALANCED).isPresent()) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> exchange(request, next, instances, new HashSet<>()));
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, List<Instance> instances,
+                                          Set<Instance> tried) {
+        return Mono.defer(() -> {
+            var instance = choose(instances, tried);
+            tried.add(instance);
+            var outstanding = new AtomicBoolean(true);
+            Runnable release = () -> {
+                if (outstanding.compareAndSet(true, false)) {
+                    instance.outstanding.decrementAndGet();
+                }
+            };
+            var start = nanoTime.getAsLong();
+            instance.outstanding.incrementAndGet();
+            return next.exchange(instance.route(request))
+                    .map(response -> {
+                        instance.completed(nanoTime.getAsLong() - start, !response.statusCode().is5xxServerError());
+                        return response.mutate()
+                                .body(body -> body.doFinally(signal -> release.run()))
+                                .build();
+                    })
+                    .onErrorResume(ex -> {
+                        instance.completed(nanoTime.getAsLong() - start, false);
+                        release.run();
+                        if (request.method() != HttpMethod.GET || tried.size() >= instances.size()) {
+                            return Mono.error(ex);
+                        }
+                        log.info("Retrying on another instance than {} : {}", instance.authority, ex.getMessage());
+                        return exchange(request, next, instances, tried);
+                    })
+                    .doOnCancel(release);
+        });
+    }
+
+    private Instance choose(List<Instance> instances, Set<Instance> tried) {
+        var now = nanoTime.getAsLong();
+        var candidates = new ArrayList<Instance>(instances.size());
+        for (Instance instance : instances) {
+            if (!tried.contains(instance) && instance.isAvailable(now)) {
+                candidates.add(instance);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Instance instance : instances) {
+                if (!tried.contains(instance)) {
+                    candidates.add(instance);
+                }
+            }
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(candidates.size());
+        var second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        var a = candidates.get(first);
+        var b = candidates.get(second);
+        var aOutstanding = a.outstanding.get();
+        var bOutstanding = b.outstanding.get();
+        if (aOutstanding != bOutstanding) {
+            return aOutstanding < bOutstanding ? a : b;
+        }
+        // the first pick is as random as the second, it stands unless twice as slow
+        return a.latencyNanos.get() > 2 * b.latencyNanos.get() ? b : a;
+    }
+
+    int outstanding(URI instance) {
+        return find(instance).outstanding.get();
+    }
+
+    boolean isEjected(URI instance) {
+        return !find(instance).isAvailable(nanoTime.getAsLong());
+    }
+
+    private Instance find(URI instance) {
+        var authority = downstream(instance);
+        return instancesByDownstream.values().stream()
+                .flatMap(List::stream)
+                .filter(candidate -> candidate.authority.equals(authority))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static String downstream(URI url) {
+        return url.getHost() + ":" + url.getPort();
+    }
+
+    private class Instance {
+
+        private final String downstream;
+        private final URI uri;
+        private final String authority;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // moving average of the time to the response headers, weighing the last call by one tenth
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong ejectedUntil;
+        private final Timer latency;
+
+        Instance(String downstream, URI uri) {
+            this.downstream = downstream;
+            this.uri = uri;
+            this.authority = downstream(uri);
+            this.ejectedUntil = new AtomicLong(nanoTime.getAsLong());
+            var tags = Tags.of("downstream", downstream, "instance", authority);
+            this.latency = Metrics.timer("restClient.instance.latency", tags);
+            Metrics.gauge("restClient.instance.outstanding", tags, outstanding);
+            Metrics.gauge("restClient.instance.ejected", tags, this, instance -> instance.isAvailable(nanoTime.getAsLong()) ? 0 : 1);
+        }
+
+        ClientRequest route(ClientRequest request) {
+            var url = UriComponentsBuilder.fromUri(request.url())
+                    .scheme(uri.getScheme())
+                    .host(uri.getHost())
+                    .port(uri.getPort())
+                    .build(true)
+                    .toUri();
+            return ClientRequest.from(request).url(url).build();
+        }
+
+        boolean isAvailable(long now) {
+            return now - ejectedUntil.get() >= 0;
+        }
+
+        void completed(long elapsedNanos, boolean success) {
+            latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            latencyNanos.accumulateAndGet(elapsedNanos, (average, elapsed) -> average == 0 ? elapsed : average + (elapsed - average) / 10);
+            if (success) {
+                consecutiveFailures.set(0);
+                return;
+            }
+            if (consecutiveFailures.incrementAndGet() >= maxFailures) {
+                consecutiveFailures.set(0);
+                ejectedUntil.set(nanoTime.getAsLong() + ejectionNanos);
+                Metrics.counter("restClient.instance.ejections", "downstream", downstream, "instance", authority).increment();
+                log.warn("Ejecting the instance {} after {} failures in a row", authority, maxFailures);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The calls to movies-info-service, over HTTP or RSocket depending on restClient.transport.
+ */
+public interface MoviesInfoClient {
+
+    Mono<MovieInfo> retrieveMovieInfo(String movieId);
+
+    /**
+     * Same as {@link #retrieveMovieInfo(String)}, with the response headers, the ETag among them when the transport has one.
+     */
+    Mono<ResponseEntity<MovieInfo>> retrieveMovieInfoEntity(String movieId);
+
+    Flux<MovieInfo> retrieveMovieInfoStream();
+}
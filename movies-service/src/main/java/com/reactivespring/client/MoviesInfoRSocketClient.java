@@ -0,0 +1,73 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.util.RetryUtil;
+import io.rsocket.exceptions.ApplicationErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+
+/**
+ * Calls movies-info-service over RSocket : the stream of movie infos is paced by our demand, sent upstream as
+ * REQUEST_N frames. The connection is opened on the first call, and again after it was lost.
+ */
+@Component
+@ConditionalOnProperty(name = "restClient.transport", havingValue = "rsocket")
+@Slf4j
+public class MoviesInfoRSocketClient implements MoviesInfoClient {
+
+    private final RSocketRequester rSocketRequester;
+
+    public MoviesInfoRSocketClient(RSocketRequester.Builder rSocketRequesterBuilder,
+                                   @Value("${restClient.moviesInfoRSocketUrl}") URI moviesInfoRSocketUrl) {
+        this.rSocketRequester = rSocketRequesterBuilder.tcp(moviesInfoRSocketUrl.getHost(), moviesInfoRSocketUrl.getPort());
+    }
+
+    @Override
+    public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+
+        return rSocketRequester.route("movieinfo.{id}", movieId)
+                .retrieveMono(MovieInfo.class)
+                // an unknown id completes without a payload
+                .switchIfEmpty(Mono.error(() -> new MoviesInfoClientException("There is no MovieInfo available for the passed in Id : " + movieId,
+                        HttpStatus.NOT_FOUND.value())))
+                .onErrorMap(ApplicationErrorException.class, ex -> new MoviesInfoServerException(ex.getMessage()))
+                .retryWhen(RetryUtil.retrySpec())
+                .log();
+    }
+
+    /**
+     * There are no headers over RSocket, so no ETag either.
+     */
+    @Override
+    public Mono<ResponseEntity<MovieInfo>> retrieveMovieInfoEntity(String movieId) {
+        return retrieveMovieInfo(movieId)
+                .map(ResponseEntity::ok);
+    }
+
+    @Override
+    public Flux<MovieInfo> retrieveMovieInfoStream() {
+
+        return rSocketRequester.route("movieinfo.stream")
+                .retrieveFlux(MovieInfo.class)
+                .onErrorMap(ApplicationErrorException.class, ex -> new MoviesInfoServerException(ex.getMessage()))
+                .transform(RetryUtil::retryBeforeFirstElement)
+                .log();
+    }
+
+    @PreDestroy
+    void dispose() {
+        rSocketRequester.dispose();
+    }
+}
@@ -3,30 +3,69 @@ package com.reactivespring.client;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.util.Deadline;
 import com.reactivespring.util.RetryUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClient.ResponseSpec;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
+
 @Component
+@ConditionalOnProperty(name = "restClient.transport", havingValue = "http", matchIfMissing = true)
 @Slf4j
-public class MoviesInfoRestClient {
+public class MoviesInfoRestClient implements MoviesInfoClient {
 
     private final WebClient webClient;
+    private final WebClient streamWebClient;
 
     @Value("${restClient.moviesInfoUrl}")
     private String moviesInfoUrl;
 
-    public MoviesInfoRestClient(WebClient webClient) {
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient,
+                                @Qualifier("moviesInfoStreamWebClient") WebClient streamWebClient) {
         this.webClient = webClient;
+        this.streamWebClient = streamWebClient;
     }
 
+    @Override
     public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
 
+        return retrieve(movieId)
+                .bodyToMono(MovieInfo.class)
+                //.retry(3)
+                //.retryWhen(Retry.fixedDelay(3, Duration.ofMillis(500)))
+                .retryWhen(RetryUtil.retrySpec())
+                .transform(Deadline::withDeadline)
+                .log();
+
+    }
+
+    /**
+     * Same as {@link #retrieveMovieInfo(String)}, with the response headers, the ETag among them.
+     */
+    @Override
+    public Mono<ResponseEntity<MovieInfo>> retrieveMovieInfoEntity(String movieId) {
+
+        return retrieve(movieId)
+                .toEntity(MovieInfo.class)
+                .retryWhen(RetryUtil.retrySpec())
+                .transform(Deadline::withDeadline)
+                .log();
+    }
+
+    private ResponseSpec retrieve(String movieId) {
+
         var url = moviesInfoUrl.concat("/{id}");
 
         return webClient.get()
@@ -44,21 +83,41 @@ public class MoviesInfoRestClient {
                     log.info("Status code : {}", clientResponse.statusCode().value());
                     return clientResponse.bodyToMono(String.class)
                             .flatMap(response -> Mono.error(new MoviesInfoServerException(response)));
-                }))
-                .bodyToMono(MovieInfo.class)
-                //.retry(3)
-                //.retryWhen(Retry.fixedDelay(3, Duration.ofMillis(500)))
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
-
+                }));
     }
 
+    @Override
     public Flux<MovieInfo> retrieveMovieInfoStream() {
 
         var url = moviesInfoUrl.concat("/stream");
 
-        return webClient.get()
+        return retrieveMovieInfoStream(streamWebClient.get()
+                .uri(url));
+    }
+
+    /**
+     * The movie infos added through the given instance, whatever the balancing of the calls over the instances :
+     * each instance streams the ones added through it only.
+     */
+    public Flux<MovieInfo> retrieveMovieInfoStream(URI instance) {
+
+        var url = UriComponentsBuilder.fromHttpUrl(moviesInfoUrl.concat("/stream"))
+                .scheme(instance.getScheme())
+                .host(instance.getHost())
+                .port(instance.getPort())
+                .build(true)
+                .toUri();
+
+        return retrieveMovieInfoStream(streamWebClient.get()
                 .uri(url)
+                .attribute(LoadBalancerFilter.UNBALANCED, true));
+    }
+
+    private Flux<MovieInfo> retrieveMovieInfoStream(WebClient.RequestHeadersSpec<?> request) {
+
+        // apart from the lookups, which the open streams must not hold up
+        return request
+                .accept(MediaType.APPLICATION_NDJSON)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
                     log.info("Status code : {}", clientResponse.statusCode().value());
@@ -72,7 +131,8 @@ public class MoviesInfoRestClient {
                 }))
                 .bodyToFlux(MovieInfo.class)
                 //.retry(3)
-                .retryWhen(RetryUtil.retrySpec())
+                .transform(RetryUtil::retryBeforeFirstElement)
+                .transform(Deadline::withDeadlineMany)
                 .log();
 
     }
@@ -0,0 +1,193 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers for a short while the ids movies-info-service answered a 404 for, so that the next requests for them,
+ * bots scanning ids mostly, get their 404 without a call. At most maxSize ids are kept, the oldest go first.
+ * <p>
+ * An id is forgotten as soon as its creation shows up on the streams of the added movie infos, one per instance
+ * of movies-info-service, which are followed from the first miss on. The ttl bounds how long a miss can outlive
+ * a creation which was not seen, one added while a stream was reconnecting.
+ */
+@Slf4j
+public class NegativeCachingMoviesInfoClient implements MoviesInfoClient {
+
+    private final MoviesInfoClient moviesInfoClient;
+    private final List<Supplier<Flux<MovieInfo>>> creationStreams;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier nanoTime;
+    // movie id -> expiry, in insertion order which is the expiry order too ; guarded by itself
+    private final LinkedHashMap<String, Long> missing = new LinkedHashMap<>();
+    // bumped by every creation seen, a 404 answered across one may be about the id just created
+    private final AtomicLong creations = new AtomicLong();
+    private final AtomicBoolean following = new AtomicBoolean();
+    private final Disposable.Composite creationsSubscriptions = Disposables.composite();
+
+    private final Counter hits = Metrics.counter("restClient.moviesInfo.negativeCache.hits");
+    private final Counter stores = Metrics.counter("restClient.moviesInfo.negativeCache.stores");
+    private final Counter evictions = Metrics.counter("restClient.moviesInfo.negativeCache.evictions");
+    private final Counter invalidations = Metrics.counter("restClient.moviesInfo.negativeCache.invalidations");
+
+    /**
+     * @param creationStreams the streams of the movie infos added through each instance
+     */
+    public NegativeCachingMoviesInfoClient(MoviesInfoClient moviesInfoClient, List<Supplier<Flux<MovieInfo>>> creationStreams,
+                                           Duration ttl, int maxSize) {
+        this(moviesInfoClient, creationStreams, ttl, maxSize, System::nanoTime);
+    }
+
+    NegativeCachingMoviesInfoClient(MoviesInfoClient moviesInfoClient, List<Supplier<Flux<MovieInfo>>> creationStreams,
+                                    Duration ttl, int maxSize, LongSupplier nanoTime) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be greater than zero");
+        }
+        this.moviesInfoClient = moviesInfoClient;
+        this.creationStreams = List.copyOf(creationStreams);
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+        this.nanoTime = nanoTime;
+        Metrics.gauge("restClient.moviesInfo.negativeCache.size", this, NegativeCachingMoviesInfoClient::size);
+    }
+
+    @Override
+    public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        return lookup(movieId, () -> moviesInfoClient.retrieveMovieInfo(movieId));
+    }
+
+    @Override
+    public Mono<ResponseEntity<MovieInfo>> retrieveMovieInfoEntity(String movieId) {
+        return lookup(movieId, () -> moviesInfoClient.retrieveMovieInfoEntity(movieId));
+    }
+
+    @Override
+    public Flux<MovieInfo> retrieveMovieInfoStream() {
+        return moviesInfoClient.retrieveMovieInfoStream();
+    }
+
+    private <T> Mono<T> lookup(String movieId, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            if (isMissing(movieId)) {
+                hits.increment();
+                return Mono.error(new MoviesInfoClientException("There is no MovieInfo available for the passed in Id : " + movieId,
+                        HttpStatus.NOT_FOUND.value(), false));
+            }
+            var creationsBefore = creations.get();
+            return call.get()
+                    .doOnError(MoviesInfoClientException.class, ex -> {
+                        if (ex.getStatusCode() == HttpStatus.NOT_FOUND.value() && creations.get() == creationsBefore) {
+                            store(movieId);
+                        }
+                    });
+        });
+    }
+
+    boolean isMissing(String movieId) {
+        synchronized (missing) {
+            var expiry = missing.get(movieId);
+            if (expiry == null) {
+                return false;
+            }
+            if (expiry - nanoTime.getAsLong() > 0) {
+                return true;
+            }
+            missing.remove(movieId);
+            return false;
+        }
+    }
+
+    int size() {
+        synchronized (missing) {
+            return missing.size();
+        }
+    }
+
+    private void store(String movieId) {
+        var now = nanoTime.getAsLong();
+        synchronized (missing) {
+            missing.remove(movieId);
+            missing.put(movieId, now + ttlNanos);
+            // the oldest first : the expired ones, then the ones over maxSize
+            var oldest = missing.values().iterator();
+            while (oldest.hasNext()) {
+                var expiry = oldest.next();
+                if (expiry - now <= 0) {
+                    oldest.remove();
+                } else if (missing.size() > maxSize) {
+                    oldest.remove();
+                    evictions.increment();
+                } else {
+                    break;
+                }
+            }
+        }
+        stores.increment();
+        followCreations();
+    }
+
+    private void invalidate(String movieId) {
+        creations.incrementAndGet();
+        Long removed;
+        synchronized (missing) {
+            removed = missing.remove(movieId);
+        }
+        if (removed != null) {
+            invalidations.increment();
+        }
+    }
+
+    private void clear() {
+        synchronized (missing) {
+            missing.clear();
+        }
+    }
+
+    /**
+     * Follows the added movie infos for as long as the service runs. Whatever was added while a stream was down
+     * went unseen, so the misses are all forgotten each time one goes down.
+     */
+    private void followCreations() {
+        if (!following.compareAndSet(false, true)) {
+            return;
+        }
+        creationStreams.forEach(creationStream -> creationsSubscriptions.add(followCreations(creationStream)));
+    }
+
+    private Disposable followCreations(Supplier<Flux<MovieInfo>> creationStream) {
+        return Flux.defer(creationStream)
+                .doOnError(ex -> log.warn("Stream of the added movie infos lost : {}", ex.getMessage()))
+                .doFinally(signalType -> clear())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .transientErrors(true))
+                .repeatWhen(completions -> completions.delayElements(Duration.ofSeconds(1)))
+                .subscribe(movieInfo -> invalidate(movieInfo.getMovieInfoId()),
+                        ex -> log.error("Stopped following the added movie infos", ex));
+    }
+
+    @PreDestroy
+    void dispose() {
+        creationsSubscriptions.dispose();
+    }
+}
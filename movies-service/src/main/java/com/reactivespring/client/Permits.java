@@ -0,0 +1,152 @@
+package com.reactivespring.client;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the calls in flight, the ones over maxActive waiting in line for a permit to be released, and failing
+ * with the given error once maxQueued of them are already waiting. A permit is held until the response body has
+ * been read or released with {@link ClientResponse#releaseBody()}, which the WebClient does for the responses its
+ * callers leave unread, or the call failed or was cancelled, or its response was dropped on the way.
+ */
+class Permits {
+
+    private final int maxActive;
+    private final int maxQueued;
+    private final Supplier<? extends Throwable> queueFull;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Queue<Waiter> pending = new ConcurrentLinkedQueue<>();
+    // the size of a ConcurrentLinkedQueue is computed by walking it
+    private final AtomicInteger queued = new AtomicInteger();
+
+    Permits(int maxActive, int maxQueued, Supplier<? extends Throwable> queueFull) {
+        if (maxActive < 1) {
+            throw new IllegalArgumentException("maxActive must be greater than zero");
+        }
+        this.maxActive = maxActive;
+        this.maxQueued = maxQueued;
+        this.queueFull = queueFull;
+    }
+
+    Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next) {
+        return acquire()
+                .then(Mono.defer(() -> {
+                    var released = new AtomicBoolean();
+                    Runnable release = () -> {
+                        if (released.compareAndSet(false, true)) {
+                            release();
+                        }
+                    };
+                    return next.exchange(request)
+                            .map(response -> response.mutate()
+                                    .body(body -> body.doFinally(signal -> release.run()))
+                                    .build())
+                            .doOnError(ex -> release.run())
+                            .doOnCancel(release)
+                            // emitted after a cancel, the response is never read : its connection goes back too
+                            .doOnDiscard(ClientResponse.class, response -> {
+                                release.run();
+                                response.releaseBody().subscribe();
+                            });
+                }));
+    }
+
+    int active() {
+        return active.get();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    int maxActive() {
+        return maxActive;
+    }
+
+    private Mono<Void> acquire() {
+        return Mono.create(sink -> {
+            if (tryAcquire()) {
+                sink.success();
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                sink.error(queueFull.get());
+                return;
+            }
+            var waiter = new Waiter(sink);
+            pending.add(waiter);
+            sink.onCancel(() -> {
+                // granted concurrently, the permit goes to the next waiter
+                if (!waiter.cancel()) {
+                    release();
+                }
+                if (pending.remove(waiter)) {
+                    queued.decrementAndGet();
+                }
+            });
+            // a permit may have been released before the waiter was queued
+            drain();
+        });
+    }
+
+    private void release() {
+        active.decrementAndGet();
+        drain();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            var current = active.get();
+            if (current >= maxActive) {
+                return false;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        while (!pending.isEmpty() && tryAcquire()) {
+            var waiter = pending.poll();
+            if (waiter != null) {
+                queued.decrementAndGet();
+            }
+            if (waiter == null || !waiter.grant()) {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private static class Waiter {
+
+        private final MonoSink<Void> sink;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Waiter(MonoSink<Void> sink) {
+            this.sink = sink;
+        }
+
+        boolean grant() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            sink.success();
+            return true;
+        }
+
+        boolean cancel() {
+            return done.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The calls to the review service, over HTTP or RSocket depending on restClient.transport.
+ */
+public interface ReviewsClient {
+
+    Flux<Review> retrieveReviews(String movieId);
+
+    Flux<Review> retrieveReviews(String movieId, int page, int size);
+
+    Mono<ReviewStats> retrieveReviewStats(String movieId);
+}
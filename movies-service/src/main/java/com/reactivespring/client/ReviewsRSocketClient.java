@@ -0,0 +1,68 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.util.RetryUtil;
+import io.rsocket.exceptions.ApplicationErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+
+/**
+ * Calls the review service over RSocket : the streams of reviews are paced by our demand, sent upstream as
+ * REQUEST_N frames. The connection is opened on the first call, and again after it was lost.
+ */
+@Component
+@ConditionalOnProperty(name = "restClient.transport", havingValue = "rsocket")
+@Slf4j
+public class ReviewsRSocketClient implements ReviewsClient {
+
+    private final RSocketRequester rSocketRequester;
+
+    public ReviewsRSocketClient(RSocketRequester.Builder rSocketRequesterBuilder,
+                                @Value("${restClient.reviewsRSocketUrl}") URI reviewsRSocketUrl) {
+        this.rSocketRequester = rSocketRequesterBuilder.tcp(reviewsRSocketUrl.getHost(), reviewsRSocketUrl.getPort());
+    }
+
+    @Override
+    public Flux<Review> retrieveReviews(String movieId) {
+
+        return rSocketRequester.route("reviews.{movieInfoId}", movieId)
+                .retrieveFlux(Review.class)
+                .onErrorMap(ApplicationErrorException.class, ex -> new ReviewsServerException(ex.getMessage()))
+                .transform(RetryUtil::retryBeforeFirstElement);
+    }
+
+    @Override
+    public Flux<Review> retrieveReviews(String movieId, int page, int size) {
+
+        return rSocketRequester.route("reviews.{movieInfoId}.{page}.{size}", movieId, page, size)
+                .retrieveFlux(Review.class)
+                // never trust the downstream to honour the page size
+                .take(size)
+                .onErrorMap(ApplicationErrorException.class, ex -> new ReviewsServerException(ex.getMessage()))
+                .transform(RetryUtil::retryBeforeFirstElement);
+    }
+
+    @Override
+    public Mono<ReviewStats> retrieveReviewStats(String movieId) {
+
+        return rSocketRequester.route("reviews.{movieInfoId}.stats", movieId)
+                .retrieveMono(ReviewStats.class)
+                .onErrorMap(ApplicationErrorException.class, ex -> new ReviewsServerException(ex.getMessage()))
+                .retryWhen(RetryUtil.retrySpec());
+    }
+
+    @PreDestroy
+    void dispose() {
+        rSocketRequester.dispose();
+    }
+}
@@ -1,36 +1,81 @@
 package com.reactivespring.client;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.util.Deadline;
 import com.reactivespring.util.RetryUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClient.ResponseSpec;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Component
+@ConditionalOnProperty(name = "restClient.transport", havingValue = "http", matchIfMissing = true)
 @Slf4j
-public class ReviewsRestClient {
+public class ReviewsRestClient implements ReviewsClient {
 
     private final WebClient webClient;
 
     @Value("${restClient.reviewsUrl}")
     private String reviewsUrl;
 
-    public ReviewsRestClient(WebClient webClient) {
+    public ReviewsRestClient(@Qualifier("reviewsWebClient") WebClient webClient) {
         this.webClient = webClient;
     }
 
+    @Override
     public Flux<Review> retrieveReviews(String movieId) {
         String url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
                 .queryParam("movieInfoId", movieId)
                 .buildAndExpand().toString();
 
+        return retrieve(url)
+                .bodyToFlux(Review.class)
+                .transform(RetryUtil::retryBeforeFirstElement)
+                .transform(Deadline::withDeadlineMany);
+    }
+
+    @Override
+    public Flux<Review> retrieveReviews(String movieId, int page, int size) {
+        String url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
+                .queryParam("movieInfoId", movieId)
+                .queryParam("page", page)
+                .queryParam("size", size)
+                .buildAndExpand().toString();
+
+        return retrieve(url)
+                .bodyToFlux(Review.class)
+                // never trust the downstream to honour the page size
+                .take(size)
+                .transform(RetryUtil::retryBeforeFirstElement)
+                .transform(Deadline::withDeadlineMany);
+    }
+
+    @Override
+    public Mono<ReviewStats> retrieveReviewStats(String movieId) {
+        String url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
+                .path("/stats")
+                .queryParam("movieInfoId", movieId)
+                .buildAndExpand().toString();
+
+        // the stats always come as a list, of one movie here
+        return retrieve(url)
+                .bodyToFlux(ReviewStats.class)
+                .next()
+                .retryWhen(RetryUtil.retrySpec())
+                .transform(Deadline::withDeadline);
+    }
+
+    private ResponseSpec retrieve(String url) {
         return webClient.get()
                 .uri(url)
                 .retrieve()
@@ -40,14 +85,12 @@ public class ReviewsRestClient {
                         return Mono.empty();
                     }
                     return clientResponse.bodyToMono(String.class)
-                            .flatMap(response -> Mono.error(new ReviewsClientException(response)));
+                            .flatMap(response -> Mono.error(new ReviewsClientException(response, clientResponse.statusCode().value())));
                 }))
                 .onStatus(HttpStatus::is5xxServerError, (clientResponse -> {
                     log.info("Status code : {}", clientResponse.statusCode().value());
                     return clientResponse.bodyToMono(String.class)
                             .flatMap(response -> Mono.error(new ReviewsServerException(response)));
-                }))
-                .bodyToFlux(Review.class)
-                .retryWhen(RetryUtil.retrySpec());
+                }));
     }
 }
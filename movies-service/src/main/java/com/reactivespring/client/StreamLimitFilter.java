@@ -0,0 +1,68 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.BulkheadFullException;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounds the requests in flight to each downstream, the HTTP/2 streams when the calls go over h2c. Reactor Netty
+ * fails the requests over the max concurrent streams of the server instead of queueing them, as it does for the
+ * HTTP/1.1 connections, so the extra ones wait here for a stream to be released, up to maxQueuedStreams of them,
+ * and fail with a {@link BulkheadFullException} beyond it. A stream is held until the response body has been read,
+ * or the request failed or was cancelled.
+ */
+public class StreamLimitFilter implements ExchangeFilterFunction {
+
+    private final String client;
+    private final int maxConcurrentStreams;
+    private final int maxQueuedStreams;
+    private final Map<String, Permits> streamsByDownstream = new ConcurrentHashMap<>();
+
+    public StreamLimitFilter(String client, int maxConcurrentStreams, int maxQueuedStreams) {
+        if (maxConcurrentStreams < 1) {
+            throw new IllegalArgumentException("maxConcurrentStreams must be greater than zero");
+        }
+        this.client = client;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.maxQueuedStreams = maxQueuedStreams;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return streamsByDownstream.computeIfAbsent(downstream(request.url()), this::streams)
+                .exchange(request, next);
+    }
+
+    int active(URI url) {
+        var streams = streamsByDownstream.get(downstream(url));
+        return streams == null ? 0 : streams.active();
+    }
+
+    int pending(URI url) {
+        var streams = streamsByDownstream.get(downstream(url));
+        return streams == null ? 0 : streams.queued();
+    }
+
+    private Permits streams(String downstream) {
+        var streams = new Permits(maxConcurrentStreams, maxQueuedStreams,
+                () -> new BulkheadFullException("Too many streams open to " + downstream));
+        var tags = Tags.of("client", client, "downstream", downstream);
+        Metrics.gauge("restClient.streams.active", tags, streams, Permits::active);
+        Metrics.gauge("restClient.streams.pending", tags, streams, Permits::queued);
+        return streams;
+    }
+
+    // the connections, and so the streams, are pooled per host and port
+    private static String downstream(URI url) {
+        return url.getHost() + ":" + url.getPort();
+    }
+}
@@ -0,0 +1,32 @@
+package com.reactivespring.config;
+
+import com.reactivespring.client.ClientIdPropagationFilter;
+import com.reactivespring.filter.ClientIdFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+@Configuration
+@ConditionalOnProperty(name = "clientId.enabled", havingValue = "true", matchIfMissing = true)
+public class ClientIdConfig {
+
+    @Bean
+    public ClientIdFilter clientIdFilter(@Value("${clientId.header:X-Client-Id}") String clientIdHeader,
+                                         @Value("${clientId.trustedProxies:}") String[] trustedProxies) {
+        return new ClientIdFilter(clientIdHeader, Arrays.stream(trustedProxies)
+                .map(String::trim)
+                .filter(trustedProxy -> !trustedProxy.isEmpty())
+                .collect(Collectors.toSet()));
+    }
+
+    @Bean
+    public WebClientCustomizer clientIdWebClientCustomizer(@Value("${clientId.header:X-Client-Id}") String clientIdHeader) {
+        var clientIdPropagationFilter = new ClientIdPropagationFilter(clientIdHeader);
+        return webClientBuilder -> webClientBuilder.filter(clientIdPropagationFilter);
+    }
+}
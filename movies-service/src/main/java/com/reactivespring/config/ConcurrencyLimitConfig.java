@@ -0,0 +1,29 @@
+package com.reactivespring.config;
+
+import com.reactivespring.filter.ConcurrencyLimitFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "concurrencyLimit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    /**
+     * Ahead of the other filters, a shed request must cost as little as possible.
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public ConcurrencyLimitFilter concurrencyLimitFilter(@Value("${concurrencyLimit.initialLimit:20}") int initialLimit,
+                                                         @Value("${concurrencyLimit.minLimit:4}") int minLimit,
+                                                         @Value("${concurrencyLimit.maxLimit:500}") int maxLimit,
+                                                         @Value("${concurrencyLimit.maxStreams:1000}") int maxStreams,
+                                                         @Value("${concurrencyLimit.retryAfter:1s}") Duration retryAfter) {
+        return new ConcurrencyLimitFilter(initialLimit, minLimit, maxLimit, maxStreams, retryAfter);
+    }
+}
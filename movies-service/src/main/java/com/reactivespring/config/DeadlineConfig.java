@@ -0,0 +1,28 @@
+package com.reactivespring.config;
+
+import com.reactivespring.client.DeadlinePropagationFilter;
+import com.reactivespring.filter.RequestDeadlineFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "deadline.enabled", havingValue = "true", matchIfMissing = true)
+public class DeadlineConfig {
+
+    @Bean
+    public RequestDeadlineFilter requestDeadlineFilter(@Value("${deadline.defaultTimeout:5s}") Duration defaultTimeout,
+                                                       @Value("${deadline.maxTimeout:30s}") Duration maxTimeout) {
+        return new RequestDeadlineFilter(defaultTimeout, maxTimeout);
+    }
+
+    @Bean
+    public WebClientCustomizer deadlineWebClientCustomizer() {
+        var deadlinePropagationFilter = new DeadlinePropagationFilter();
+        return webClientBuilder -> webClientBuilder.filter(deadlinePropagationFilter);
+    }
+}
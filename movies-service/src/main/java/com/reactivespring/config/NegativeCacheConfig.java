@@ -0,0 +1,44 @@
+package com.reactivespring.config;
+
+import com.reactivespring.client.MoviesInfoClient;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.NegativeCachingMoviesInfoClient;
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Configuration
+@ConditionalOnProperty(name = "restClient.moviesInfo.negativeCache.enabled", havingValue = "true", matchIfMissing = true)
+public class NegativeCacheConfig {
+
+    /**
+     * In front of the client of the transport in use, HTTP or RSocket, which is the one injected here. Each
+     * instance of movies-info-service streams the movie infos added through it only : over HTTP with
+     * restClient.moviesInfoInstances, the stream of every instance is followed.
+     */
+    @Bean
+    @Primary
+    public NegativeCachingMoviesInfoClient negativeCachingMoviesInfoClient(MoviesInfoClient moviesInfoClient,
+                                                                           @Value("${restClient.moviesInfoInstances:}") String[] moviesInfoInstances,
+                                                                           @Value("${restClient.moviesInfo.negativeCache.ttl:10s}") Duration ttl,
+                                                                           @Value("${restClient.moviesInfo.negativeCache.maxSize:10000}") int maxSize) {
+        List<Supplier<Flux<MovieInfo>>> creationStreams = List.of(moviesInfoClient::retrieveMovieInfoStream);
+        var instances = WebClientConfig.toUris(moviesInfoInstances);
+        if (moviesInfoClient instanceof MoviesInfoRestClient && !instances.isEmpty()) {
+            var moviesInfoRestClient = (MoviesInfoRestClient) moviesInfoClient;
+            creationStreams = instances.stream()
+                    .<Supplier<Flux<MovieInfo>>>map(instance -> () -> moviesInfoRestClient.retrieveMovieInfoStream(instance))
+                    .collect(Collectors.toList());
+        }
+        return new NegativeCachingMoviesInfoClient(moviesInfoClient, creationStreams, ttl, maxSize);
+    }
+}
@@ -1,14 +1,170 @@
 package com.reactivespring.config;
 
+import com.reactivespring.client.Bulkhead;
+import com.reactivespring.client.DownstreamResources;
+import com.reactivespring.client.LoadBalancerFilter;
+import com.reactivespring.client.StreamLimitFilter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Configuration
 public class WebClientConfig {
 
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    // the lookups wait for an h2c stream as they would for a pooled HTTP/1.1 connection, the bulkhead bounds them already
+    private static final int LOOKUPS_QUEUED_STREAMS = Integer.MAX_VALUE;
+
+    /**
+     * Asks for Smile, a binary encoding of the JSON data model which is much cheaper to parse and
+     * produce, and which our services write as soon as it is on their classpath. JSON remains acceptable,
+     * for the endpoints which only write JSON. The requests which set their own Accept, such as the NDJSON
+     * streams, are left alone.
+     */
+    @Bean
+    public WebClientCustomizer smileWebClientCustomizer(@Value("${restClient.smile:true}") boolean smile) {
+        return webClientBuilder -> {
+            if (smile) {
+                webClientBuilder.defaultHeader(HttpHeaders.ACCEPT, APPLICATION_SMILE.toString(), "application/json;q=0.9");
+            }
+        };
+    }
+
+    /**
+     * The connections and, with restClient.moviesInfo.eventLoopThreads, the event loops of the calls to the movie
+     * info service, apart from the ones of the reviews.
+     */
+    @Bean
+    public DownstreamResources moviesInfoResources(ReactorResourceFactory reactorResourceFactory,
+                                                   @Value("${restClient.moviesInfo.maxConnections:16}") int maxConnections,
+                                                   @Value("${restClient.moviesInfo.eventLoopThreads:0}") int eventLoopThreads) {
+        return new DownstreamResources("moviesInfo", maxConnections, eventLoopThreads, reactorResourceFactory.getLoopResources());
+    }
+
+    /**
+     * The /stream subscriptions hold their call, and over HTTP/1.1 their connection, for as long as their client
+     * stays, so they get connections and a bulkhead of their own : however many of them are open, the lookups
+     * of movie infos are not held up.
+     */
+    @Bean
+    public DownstreamResources moviesInfoStreamResources(ReactorResourceFactory reactorResourceFactory,
+                                                         @Value("${restClient.moviesInfoStream.maxConnections:500}") int maxConnections,
+                                                         @Value("${restClient.moviesInfoStream.eventLoopThreads:0}") int eventLoopThreads) {
+        return new DownstreamResources("moviesInfoStream", maxConnections, eventLoopThreads, reactorResourceFactory.getLoopResources());
+    }
+
+    @Bean
+    public DownstreamResources reviewsResources(ReactorResourceFactory reactorResourceFactory,
+                                                @Value("${restClient.reviews.maxConnections:16}") int maxConnections,
+                                                @Value("${restClient.reviews.eventLoopThreads:0}") int eventLoopThreads) {
+        return new DownstreamResources("reviews", maxConnections, eventLoopThreads, reactorResourceFactory.getLoopResources());
+    }
+
+    @Bean
+    public WebClient moviesInfoWebClient(WebClient.Builder builder,
+                                         @Qualifier("moviesInfoResources") DownstreamResources moviesInfoResources,
+                                         @Value("${restClient.moviesInfo.maxConcurrentCalls:32}") int maxConcurrentCalls,
+                                         @Value("${restClient.moviesInfo.maxQueuedCalls:100}") int maxQueuedCalls,
+                                         @Value("${restClient.http2.enabled:false}") boolean http2,
+                                         @Value("${restClient.http2.maxConcurrentStreams:100}") int maxConcurrentStreams) {
+        var bulkhead = new Bulkhead("moviesInfo", maxConcurrentCalls, maxQueuedCalls);
+        var streamLimit = new StreamLimitFilter("moviesInfo", maxConcurrentStreams, LOOKUPS_QUEUED_STREAMS);
+        return downstreamWebClient(builder, moviesInfoResources, bulkhead, http2, streamLimit);
+    }
+
+    @Bean
+    public WebClient moviesInfoStreamWebClient(WebClient.Builder builder,
+                                               @Qualifier("moviesInfoStreamResources") DownstreamResources moviesInfoStreamResources,
+                                               @Value("${restClient.moviesInfoStream.maxConcurrentCalls:1000}") int maxConcurrentCalls,
+                                               @Value("${restClient.http2.enabled:false}") boolean http2,
+                                               @Value("${restClient.http2.maxConcurrentStreams:100}") int maxConcurrentStreams) {
+        // a subscription waiting for another one to end could wait forever, for a call as well as for a stream
+        var bulkhead = new Bulkhead("moviesInfoStream", maxConcurrentCalls, 0);
+        var streamLimit = new StreamLimitFilter("moviesInfoStream", maxConcurrentStreams, 0);
+        return downstreamWebClient(builder, moviesInfoStreamResources, bulkhead, http2, streamLimit);
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder.build();
+    public WebClient reviewsWebClient(WebClient.Builder builder,
+                                      @Qualifier("reviewsResources") DownstreamResources reviewsResources,
+                                      @Value("${restClient.reviews.maxConcurrentCalls:32}") int maxConcurrentCalls,
+                                      @Value("${restClient.reviews.maxQueuedCalls:100}") int maxQueuedCalls,
+                                      @Value("${restClient.http2.enabled:false}") boolean http2,
+                                      @Value("${restClient.http2.maxConcurrentStreams:100}") int maxConcurrentStreams) {
+        var bulkhead = new Bulkhead("reviews", maxConcurrentCalls, maxQueuedCalls);
+        var streamLimit = new StreamLimitFilter("reviews", maxConcurrentStreams, LOOKUPS_QUEUED_STREAMS);
+        return downstreamWebClient(builder, reviewsResources, bulkhead, http2, streamLimit);
+    }
+
+    /**
+     * The bulkhead comes first, ahead of the load balancer, so that it bounds the calls to all the instances of
+     * the downstream. With restClient.http2.enabled the calls go over h2c, upgraded from HTTP/1.1 so that a
+     * downstream without server.http2.enabled still answers, and each connection carries many requests at once
+     * as streams.
+     */
+    private static WebClient downstreamWebClient(WebClient.Builder builder, DownstreamResources resources,
+                                                 Bulkhead bulkhead, boolean http2, StreamLimitFilter streamLimit) {
+        builder.filters(filters -> filters.add(0, bulkhead));
+        var httpClient = resources.httpClient();
+        if (!http2) {
+            return builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                    .build();
+        }
+        var h2cClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        return builder.clientConnector(new ReactorClientHttpConnector(h2cClient))
+                .filter(streamLimit)
+                .build();
+    }
+
+    /**
+     * Spreads the calls over the instances listed for each downstream, from restClient.moviesInfoInstances and
+     * restClient.reviewsInstances, which replace the host and port of the corresponding url. The calls to a
+     * downstream without instances still go to its url. The filter comes ahead of the h2c stream limit, so
+     * that the streams are bounded per instance.
+     */
+    @Bean
+    public WebClientCustomizer loadBalancerWebClientCustomizer(@Value("${restClient.moviesInfoUrl}") URI moviesInfoUrl,
+                                                               @Value("${restClient.moviesInfoInstances:}") String[] moviesInfoInstances,
+                                                               @Value("${restClient.reviewsUrl}") URI reviewsUrl,
+                                                               @Value("${restClient.reviewsInstances:}") String[] reviewsInstances,
+                                                               @Value("${restClient.loadBalancer.maxFailures:3}") int maxFailures,
+                                                               @Value("${restClient.loadBalancer.ejectionTime:30s}") Duration ejectionTime) {
+        var moviesInfo = toUris(moviesInfoInstances);
+        var reviews = toUris(reviewsInstances);
+        if (moviesInfo.isEmpty() && reviews.isEmpty()) {
+            return webClientBuilder -> {
+            };
+        }
+        var loadBalancerFilter = new LoadBalancerFilter(maxFailures, ejectionTime);
+        if (!moviesInfo.isEmpty()) {
+            loadBalancerFilter.instances(moviesInfoUrl, moviesInfo);
+        }
+        if (!reviews.isEmpty()) {
+            loadBalancerFilter.instances(reviewsUrl, reviews);
+        }
+        return webClientBuilder -> webClientBuilder.filters(filters -> filters.add(0, loadBalancerFilter));
+    }
+
+    static List<URI> toUris(String[] instances) {
+        return Arrays.stream(instances)
+                .map(String::trim)
+                .filter(instance -> !instance.isEmpty())
+                .map(URI::create)
+                .collect(Collectors.toList());
     }
 }
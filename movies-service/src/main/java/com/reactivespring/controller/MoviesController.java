@@ -1,44 +1,194 @@
 package com.reactivespring.controller;
 
-import com.reactivespring.client.MoviesInfoRestClient;
-import com.reactivespring.client.ReviewsRestClient;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.client.MoviesInfoClient;
+import com.reactivespring.client.ReviewsClient;
 import com.reactivespring.domain.Movie;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieSummary;
+import com.reactivespring.domain.ReviewStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @RestController
 @RequestMapping("/v1/movies")
+@Slf4j
 public class MoviesController {
 
-    private final MoviesInfoRestClient moviesInfoRestClient;
-    private final ReviewsRestClient reviewsRestClient;
+    private final MoviesInfoClient moviesInfoClient;
+    private final ReviewsClient reviewsClient;
+    private final ObjectMapper objectMapper;
+
+    @Value("${movies.reviews.pageSize:100}")
+    private int defaultPageSize;
+
+    @Value("${movies.reviews.maxPageSize:500}")
+    private int maxPageSize;
 
-    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient) {
-        this.moviesInfoRestClient = moviesInfoRestClient;
-        this.reviewsRestClient = reviewsRestClient;
+    @Value("${movies.cacheControl.maxAge:0s}")
+    private Duration cacheControlMaxAge;
+
+    public MoviesController(MoviesInfoClient moviesInfoClient, ReviewsClient reviewsClient,
+                            ObjectMapper objectMapper) {
+        this.moviesInfoClient = moviesInfoClient;
+        this.reviewsClient = reviewsClient;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Full view : the movie info with one page of its reviews.
+     * The ETag combines the one of the movie info with the version of the review stats, bumped by every write of a
+     * review of the movie, as the summary view does : a revalidation is answered from the two of them, without
+     * fetching the reviews. A write becomes visible once its stats update is done, right after it.
+     * A full page comes with a Link header to the next one : counting the reviews would cost a call to the stats,
+     * so the last page may be an empty one.
+     */
     @GetMapping("/{id}")
-    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId) {
-
-        return moviesInfoRestClient.retrieveMovieInfo(movieId)
-                //moviesInfoRestClient.retrieveMovieInfo_exchange(movieId)
-                .flatMap(movieInfo -> {
-                    var reviewList = reviewsRestClient.retrieveReviews(movieId)
-                            .collectList();
-                    return reviewList.map(reviews -> new Movie(movieInfo, reviews));
+    public Mono<ResponseEntity<Movie>> retrieveMovieById(@PathVariable("id") String movieId,
+                                                         @RequestParam(value = "page", defaultValue = "0") int page,
+                                                         @RequestParam(value = "size", required = false) Integer size,
+                                                         ServerWebExchange exchange) {
+
+        var pageNumber = Math.max(page, 0);
+        var pageSize = Math.min(size != null && size > 0 ? size : defaultPageSize, maxPageSize);
+        // without the stats there is no ETag, the reviews can still be sent
+        var reviewsVersion = reviewsClient.retrieveReviewStats(movieId)
+                .map(reviewStats -> Optional.of(String.valueOf(reviewStats.getVersion())))
+                .onErrorResume(ex -> {
+                    log.warn("No review stats for the ETag of movie {} : {}", movieId, ex.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(Optional.empty());
+        return Mono.zip(moviesInfoClient.retrieveMovieInfoEntity(movieId), reviewsVersion)
+                .flatMap(movieAndVersion -> {
+                    var movieInfo = movieAndVersion.getT1();
+                    var etag = movieEtag(movieInfo, movieAndVersion.getT2(), "." + pageNumber + "." + pageSize);
+                    if (etag != null && exchange.checkNotModified(etag)) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(etag)
+                                .cacheControl(cacheControl())
+                                .<Movie>build());
+                    }
+                    return reviewsClient.retrieveReviews(movieId, pageNumber, pageSize)
+                            .collectList()
+                            .map(reviews -> {
+                                var builder = ok(etag);
+                                if (reviews.size() == pageSize) {
+                                    builder.header(HttpHeaders.LINK, nextPageLink(exchange, pageNumber, pageSize));
+                                }
+                                return builder.body(new Movie(movieInfo.getBody(), reviews));
+                            });
+                });
+
+    }
+
+    /**
+     * Summary view : the movie info with its rating stats, no reviews at all.
+     */
+    @GetMapping(value = "/{id}", params = "view=summary")
+    public Mono<ResponseEntity<MovieSummary>> retrieveMovieSummaryById(@PathVariable("id") String movieId) {
+
+        var reviewStats = reviewsClient.retrieveReviewStats(movieId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+        // with an ETag set, a matching If-None-Match gets a 304 without the body being written
+        return Mono.zip(moviesInfoClient.retrieveMovieInfoEntity(movieId), reviewStats)
+                .map(movieAndStats -> {
+                    var stats = movieAndStats.getT2();
+                    var etag = movieEtag(movieAndStats.getT1(), stats.map(ReviewStats::getVersion).map(String::valueOf), "");
+                    return ok(etag).body(new MovieSummary(movieAndStats.getT1().getBody(), stats.orElse(ReviewStats.empty(null))));
                 });
+    }
+
+    private static String nextPageLink(ServerWebExchange exchange, int pageNumber, int pageSize) {
+        var next = UriComponentsBuilder.fromHttpRequest(exchange.getRequest())
+                .replaceQueryParam("page", pageNumber + 1)
+                .replaceQueryParam("size", pageSize)
+                .build()
+                .toUriString();
+        return "<" + next + ">; rel=\"next\"";
+    }
+
+    /**
+     * Derives a strong ETag from the one of the movie info, null if there is none or it is weak.
+     */
+    private static String movieEtag(ResponseEntity<MovieInfo> movieInfo, Optional<String> reviewsVersion, String suffix) {
+        var movieInfoEtag = movieInfo.getHeaders().getETag();
+        if (movieInfoEtag == null || movieInfoEtag.startsWith("W/") || reviewsVersion.isEmpty()) {
+            return null;
+        }
+        return "\"" + movieInfoEtag.replace("\"", "") + "." + reviewsVersion.get() + suffix + "\"";
+    }
+
+    private ResponseEntity.BodyBuilder ok(String etag) {
+        var builder = ResponseEntity.ok().cacheControl(cacheControl());
+        return etag != null ? builder.eTag(etag) : builder;
+    }
+
+    private CacheControl cacheControl() {
+        return CacheControl.maxAge(cacheControlMaxAge).mustRevalidate();
+    }
+
+    /**
+     * Streamed view : the same JSON as the full view with every review, but written as the reviews arrive
+     * instead of being collected first. The movie info goes out as soon as it is known, so a failure of the
+     * reviews can only cut the response short, not turn it into an error status.
+     * A view parameter takes precedence, so that a request matches a single mapping.
+     */
+    @GetMapping(value = "/{id}", params = {"stream=true", "!view"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> retrieveMovieByIdStreamed(@PathVariable("id") String movieId, ServerHttpResponse response) {
+
+        var bufferFactory = response.bufferFactory();
+        return moviesInfoClient.retrieveMovieInfo(movieId)
+                .flatMapMany(movieInfo -> {
+                    var first = new AtomicBoolean(true);
+                    var reviews = reviewsClient.retrieveReviews(movieId)
+                            .map(review -> toJson(bufferFactory, first.getAndSet(false) ? "" : ",", review, ""));
+                    return Flux.concat(
+                            Mono.fromCallable(() -> toJson(bufferFactory, "{\"movieInfo\":", movieInfo, ",\"reviewList\":[")),
+                            reviews,
+                            Mono.fromCallable(() -> bufferFactory.wrap("]}".getBytes(StandardCharsets.UTF_8))));
+                });
+    }
 
+    private DataBuffer toJson(DataBufferFactory bufferFactory, String prefix, Object value, String suffix) {
+        try {
+            var json = objectMapper.writeValueAsBytes(value);
+            return bufferFactory.allocateBuffer(prefix.length() + json.length + suffix.length())
+                    .write(prefix, StandardCharsets.UTF_8)
+                    .write(json)
+                    .write(suffix, StandardCharsets.UTF_8);
+        } catch (JsonProcessingException ex) {
+            throw Exceptions.propagate(ex);
+        }
     }
 
     @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
     public Flux<MovieInfo> retrieveMovieInfo() {
-        return moviesInfoRestClient.retrieveMovieInfoStream();
+        return moviesInfoClient.retrieveMovieInfoStream();
     }
 }
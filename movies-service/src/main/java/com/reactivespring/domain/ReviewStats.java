@@ -0,0 +1,28 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewStats {
+
+    private Long movieInfoId;
+    private long count;
+    private Double average;
+    private Double min;
+    private Double max;
+    // number of reviews per rating, rounded down : "0" to "10"
+    private Map<String, Long> histogram = new HashMap<>();
+    // bumped by the reviews service on every write to the reviews of the movie
+    private long version;
+
+    public static ReviewStats empty(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 0, null, null, null, new HashMap<>(), 0);
+    }
+}
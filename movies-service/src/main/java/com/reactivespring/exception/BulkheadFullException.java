@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class BulkheadFullException extends RuntimeException {
+    private final String message;
+
+    public BulkheadFullException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
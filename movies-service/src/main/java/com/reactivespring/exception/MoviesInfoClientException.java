@@ -10,6 +10,15 @@ public class MoviesInfoClientException extends RuntimeException {
         this.statusCode = statusCode;
     }
 
+    /**
+     * Without a stack trace, for the errors which are not raised by a call : filling it in costs more than the rest.
+     */
+    public MoviesInfoClientException(String message, Integer statusCode, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.message = message;
+        this.statusCode = statusCode;
+    }
+
     @Override
     public String getMessage() {
         return message;
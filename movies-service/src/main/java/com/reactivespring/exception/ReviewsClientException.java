@@ -2,9 +2,15 @@ package com.reactivespring.exception;
 
 public class ReviewsClientException extends RuntimeException {
     private final String message;
+    private final Integer statusCode;
 
-    public ReviewsClientException(String message) {
+    public ReviewsClientException(String message, Integer statusCode) {
         super(message);
         this.message = message;
+        this.statusCode = statusCode;
+    }
+
+    public Integer getStatusCode() {
+        return statusCode;
     }
 }
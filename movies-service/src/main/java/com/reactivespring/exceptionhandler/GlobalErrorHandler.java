@@ -1,7 +1,11 @@
 package com.reactivespring.exceptionhandler;
 
+import com.reactivespring.exception.BulkheadFullException;
+import com.reactivespring.exception.DeadlineExceededException;
 import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,12 +17,41 @@ public class GlobalErrorHandler {
 
     @ExceptionHandler(MoviesInfoClientException.class)
     public ResponseEntity<String> handleClientException(MoviesInfoClientException ex) {
-        log.error("Exception caught in handleClientException :  {} ", ex.getMessage(), ex);
+        if (ex.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+            // an unknown id is the mistake of the caller, and ids scanned by bots make a lot of them
+            log.info("Exception caught in handleClientException :  {} ", ex.getMessage());
+        } else {
+            log.error("Exception caught in handleClientException :  {} ", ex.getMessage(), ex);
+        }
         log.info("Status value is : {}", ex.getStatusCode());
         return ResponseEntity.status(HttpStatus.valueOf(ex.getStatusCode()))
                 .body(ex.getMessage());
     }
 
+    /**
+     * Such as a 429 of the rate limit of the review service, which counts the calls made on behalf of our caller.
+     */
+    @ExceptionHandler(ReviewsClientException.class)
+    public ResponseEntity<String> handleReviewsClientException(ReviewsClientException ex) {
+        log.info("Exception caught in handleReviewsClientException :  {} ", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.valueOf(ex.getStatusCode()))
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<String> handleBulkheadFullException(BulkheadFullException ex) {
+        log.warn("Exception caught in handleBulkheadFullException :  {} ", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handleDeadlineExceededException(DeadlineExceededException ex) {
+        log.warn("Exception caught in handleDeadlineExceededException :  {} ", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ex.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException ex) {
         log.error("Exception caught in handleClientException :  {} ", ex.getMessage(), ex);
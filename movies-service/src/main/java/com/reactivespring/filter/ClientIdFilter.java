@@ -0,0 +1,53 @@
+package com.reactivespring.filter;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Set;
+
+/**
+ * Tells who the caller of each request is, for the calls it makes to send along : the other services limit the
+ * rate of each of our callers rather than the one of movies-service as a whole. The caller is the remote address
+ * of the request, or its clientIdHeader when it comes through one of the trustedProxies.
+ */
+public class ClientIdFilter implements WebFilter {
+
+    public static final String CLIENT_ID = "clientId";
+
+    private final String clientIdHeader;
+    private final Set<String> trustedProxies;
+
+    public ClientIdFilter(String clientIdHeader, Set<String> trustedProxies) {
+        this.clientIdHeader = clientIdHeader;
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var clientId = clientId(exchange.getRequest());
+        if (clientId == null) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange)
+                .contextWrite(Context.of(CLIENT_ID, clientId));
+    }
+
+    private String clientId(ServerHttpRequest request) {
+        var remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return null;
+        }
+        var address = remoteAddress.getAddress().getHostAddress();
+        if (trustedProxies.contains(address)) {
+            var clientId = request.getHeaders().getFirst(clientIdHeader);
+            if (clientId != null && !clientId.isBlank()) {
+                return clientId;
+            }
+        }
+        return address;
+    }
+}
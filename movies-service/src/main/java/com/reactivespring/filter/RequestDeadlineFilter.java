@@ -0,0 +1,54 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.util.Deadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+
+/**
+ * Sets the deadline of each request, from its X-Request-Timeout header in milliseconds or defaultTimeout without
+ * it, at most maxTimeout. The /stream subscriptions last as long as their client, and the streamed views as long as
+ * the reviews keep coming : neither gets a deadline unless it asks for one, since their status is sent with the first
+ * bytes and a deadline could only cut the body short behind a 200.
+ */
+@Slf4j
+public class RequestDeadlineFilter implements WebFilter {
+
+    private final Duration defaultTimeout;
+    private final Duration maxTimeout;
+
+    public RequestDeadlineFilter(Duration defaultTimeout, Duration maxTimeout) {
+        this.defaultTimeout = defaultTimeout;
+        this.maxTimeout = maxTimeout;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var request = exchange.getRequest();
+        var header = request.getHeaders().getFirst(Deadline.TIMEOUT_HEADER);
+        Duration timeout;
+        if (header != null) {
+            try {
+                timeout = Duration.ofMillis(Long.parseLong(header.trim()));
+            } catch (NumberFormatException ex) {
+                log.debug("Ignoring the invalid {} : {}", Deadline.TIMEOUT_HEADER, header);
+                timeout = defaultTimeout;
+            }
+        } else if (request.getPath().pathWithinApplication().value().endsWith("/stream")
+                || "true".equals(request.getQueryParams().getFirst("stream"))) {
+            return chain.filter(exchange);
+        } else {
+            timeout = defaultTimeout;
+        }
+        if (timeout.compareTo(maxTimeout) > 0) {
+            timeout = maxTimeout;
+        }
+        return chain.filter(exchange)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(timeout)));
+    }
+}
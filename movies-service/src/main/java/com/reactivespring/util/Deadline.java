@@ -0,0 +1,61 @@
+package com.reactivespring.util;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * The time by which the caller of a request needs its response, carried in the Reactor Context of the request
+ * under the Deadline class. The calls to the other services are bounded by the time left, which is also sent to
+ * them in the X-Request-Timeout header, in milliseconds.
+ */
+public final class Deadline {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final long nanos;
+
+    private Deadline(long nanos) {
+        this.nanos = nanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(nanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return nanos - System.nanoTime() <= 0;
+    }
+
+    public DeadlineExceededException exceeded() {
+        return new DeadlineExceededException("The deadline of the request has been exceeded");
+    }
+
+    /**
+     * Fails with a {@link DeadlineExceededException} once the deadline of the request has passed, the call being
+     * cancelled. Without a deadline in the context the call is left as it is.
+     */
+    public static <T> Mono<T> withDeadline(Mono<T> mono) {
+        return Mono.deferContextual(context -> context.<Deadline>getOrEmpty(Deadline.class)
+                .map(deadline -> deadline.isExpired()
+                        ? Mono.<T>error(deadline.exceeded())
+                        : mono.timeout(deadline.remaining(), Mono.error(deadline::exceeded)))
+                .orElse(mono));
+    }
+
+    public static <T> Flux<T> withDeadlineMany(Flux<T> flux) {
+        return Flux.deferContextual(context -> context.<Deadline>getOrEmpty(Deadline.class)
+                .map(deadline -> deadline.isExpired()
+                        ? Flux.<T>error(deadline.exceeded())
+                        // every element restarts the timer, with the time left until the same deadline
+                        : flux.timeout(Mono.delay(deadline.remaining()), element -> Mono.delay(deadline.remaining()),
+                        Mono.error(deadline::exceeded)))
+                .orElse(flux));
+    }
+}
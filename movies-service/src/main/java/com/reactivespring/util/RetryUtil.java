@@ -3,18 +3,36 @@ package com.reactivespring.util;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsServerException;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.util.retry.Retry;
-import reactor.util.retry.RetrySpec;
+import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RetryUtil {
 
 
     public static Retry retrySpec() {
-        return RetrySpec.fixedDelay(3, Duration.ofSeconds(1))
+        return fixedDelaySpec();
+    }
+
+    /**
+     * Retries a stream like {@link #retrySpec()}, but only as long as it has not emitted anything:
+     * the elements already passed downstream would be sent a second time by the retry.
+     */
+    public static <T> Flux<T> retryBeforeFirstElement(Flux<T> flux) {
+        return Flux.defer(() -> {
+            var emitted = new AtomicBoolean();
+            return flux
+                    .doOnNext(element -> emitted.set(true))
+                    .retryWhen(fixedDelaySpec().modifyErrorFilter(filter -> filter.and(ex -> !emitted.get())));
+        });
+    }
+
+    private static RetryBackoffSpec fixedDelaySpec() {
+        return Retry.fixedDelay(3, Duration.ofSeconds(1))
                 .filter((ex) -> ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException)
                 .onRetryExhaustedThrow(((retryBackoffSpec, retrySignal) -> Exceptions.propagate(retrySignal.failure())));
-
     }
 }
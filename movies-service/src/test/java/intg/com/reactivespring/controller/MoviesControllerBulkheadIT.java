@@ -0,0 +1,105 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The review service hangs, one call to it at a time is allowed and none may wait.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/movieinfo",
+        "restClient.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+        "restClient.reviews.maxConcurrentCalls=1",
+        "restClient.reviews.maxQueuedCalls=0",
+})
+public class MoviesControllerBulkheadIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @LocalServerPort
+    int port;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        stubFor(get(urlEqualTo("/v1/movieinfo/abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(get(urlEqualTo("/v1/movieinfo/stream"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/x-ndjson")
+                        .withBody("{\"movieInfoId\":\"abc\",\"name\":\"Batman Begins\",\"year\":2005}\n")));
+        stubFor(get(urlPathEqualTo("/v1/reviews/stats"))
+                .willReturn(aResponse()
+                        .withFixedDelay(3000)
+                        .withStatus(404)));
+    }
+
+    @Test
+    void retrieveMovieSummaryById_ReviewsBulkheadFull() throws InterruptedException {
+        //given
+        // holds the only call allowed to the review service
+        WebClient.create("http://localhost:" + port)
+                .get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(response -> {
+                }, ex -> {
+                });
+        for (int i = 0; i < 50 && WireMock.findAll(getRequestedFor(urlPathEqualTo("/v1/reviews/stats"))).isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+
+        //when
+        var start = System.nanoTime();
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+
+        webTestClient.get()
+                .uri("/v1/movies/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+
+        //then
+        // neither waited for the review service
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(2)) < 0, "elapsed : " + elapsed);
+    }
+}
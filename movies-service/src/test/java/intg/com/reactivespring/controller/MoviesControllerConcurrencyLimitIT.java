@@ -0,0 +1,101 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+
+/**
+ * One request at a time is allowed, the movie info service hangs.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/movieinfo",
+        "restClient.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+        "concurrencyLimit.initialLimit=1",
+        "concurrencyLimit.minLimit=1",
+        "concurrencyLimit.maxLimit=1",
+        "concurrencyLimit.retryAfter=2s",
+})
+public class MoviesControllerConcurrencyLimitIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @LocalServerPort
+    int port;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        stubFor(get(urlEqualTo("/v1/movieinfo/abc"))
+                .willReturn(aResponse()
+                        .withFixedDelay(3000)
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(get(urlEqualTo("/v1/movieinfo/stream"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/x-ndjson")
+                        .withBody("{\"movieInfoId\":\"abc\",\"name\":\"Batman Begins\",\"year\":2005}\n")));
+    }
+
+    @Test
+    void requestsOverTheLimitAreShed() throws InterruptedException {
+        //given
+        // holds the only request allowed
+        WebClient.create("http://localhost:" + port)
+                .get()
+                .uri("/v1/movies/{id}", "abc")
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(response -> {
+                }, ex -> {
+                });
+        for (int i = 0; i < 50 && WireMock.findAll(getRequestedFor(urlEqualTo("/v1/movieinfo/abc"))).isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2");
+
+        //then
+        // the streams and the health checks have their own priority classes
+        webTestClient.get()
+                .uri("/v1/movies/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+
+        webTestClient.get()
+                .uri("/actuator/health")
+                .exchange()
+                .expectStatus().isOk();
+    }
+}
@@ -1,26 +1,38 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.config.WebClientConfig;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieSummary;
+import com.reactivespring.domain.Review;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.time.Duration;
+import java.util.List;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.matching;
 import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -29,6 +41,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 @TestPropertySource(properties = {
         "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfo",
         "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+        // the tests answer the same id differently
+        "restClient.moviesInfo.negativeCache.enabled=false",
 })
 public class MoviesControllerIT {
 
@@ -70,6 +84,44 @@ public class MoviesControllerIT {
                         }
                 );
         //then
+        // WireMock gzips the responses of the clients which accept it
+        WireMock.verify(getRequestedFor(urlEqualTo("/v1/movieinfo/" + movieId))
+                .withHeader("Accept-Encoding", containing("gzip")));
+    }
+
+    @Test
+    void retrieveMovieById_SmileReviews() throws Exception {
+        //given
+        var movieId = "abc";
+        var smileMapper = new ObjectMapper(new SmileFactory());
+        var reviews = List.of(new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Excellent Movie", 8.0));
+        stubFor(get(urlEqualTo("/v1/movieinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", WebClientConfig.APPLICATION_SMILE.toString())
+                        .withBody(smileMapper.writeValueAsBytes(reviews))));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assertEquals(2, movie.getReviewList().size());
+                            assertEquals("Excellent Movie", movie.getReviewList().get(1).getComment());
+                        }
+                );
+        //then
+        WireMock.verify(getRequestedFor(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", containing(WebClientConfig.APPLICATION_SMILE.toString())));
     }
 
     @Test
@@ -172,4 +224,68 @@ public class MoviesControllerIT {
 
         WireMock.verify(4, getRequestedFor(urlPathMatching("/v1/reviews*")));
     }
+
+    @Test
+    void retrieveMovieSummaryById() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews/stats"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[{\"movieInfoId\":1,\"count\":2,\"average\":8.5,\"min\":8.0,\"max\":9.0,\"histogram\":{\"8\":1,\"9\":1}}]")));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieSummary.class)
+                .consumeWith(movieSummaryEntityExchangeResult -> {
+                            var movieSummary = movieSummaryEntityExchangeResult.getResponseBody();
+                            assertEquals("Batman Begins", movieSummary.getMovieInfo().getName());
+                            assertEquals(2, movieSummary.getReviewStats().getCount());
+                        }
+                );
+        //then
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    @Test
+    void retrieveMovieById_DeadlineExceeded() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withFixedDelay(3000)
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        var start = System.nanoTime();
+        webTestClient.get()
+                .uri("/v1/movies/{id}", "abc")
+                .header("X-Request-Timeout", "500")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+        //then
+        // answered when the caller gives up, not when the review service answers
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(2)) < 0, "elapsed : " + elapsed);
+        // the downstreams are told the time left
+        WireMock.verify(getRequestedFor(urlEqualTo("/v1/movieinfo/" + movieId))
+                .withHeader("X-Request-Timeout", matching("[1-9][0-9]*")));
+    }
 }
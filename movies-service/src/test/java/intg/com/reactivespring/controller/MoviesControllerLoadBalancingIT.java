@@ -0,0 +1,108 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.reactivespring.domain.Movie;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two stub instances of each downstream, and a third one which refuses the connections.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+public class MoviesControllerLoadBalancingIT {
+
+    private static final List<WireMockServer> INSTANCES = List.of(instance(), instance());
+    private static final int REFUSING_PORT = freePort();
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @DynamicPropertySource
+    static void instances(DynamicPropertyRegistry registry) {
+        var instances = "http://localhost:" + INSTANCES.get(0).port()
+                + ",http://localhost:" + INSTANCES.get(1).port()
+                + ",http://localhost:" + REFUSING_PORT;
+        registry.add("restClient.moviesInfoUrl", () -> "http://movies-info/v1/movieinfo");
+        registry.add("restClient.moviesInfoInstances", () -> instances);
+        registry.add("restClient.reviewsUrl", () -> "http://reviews/v1/reviews");
+        registry.add("restClient.reviewsInstances", () -> instances);
+        registry.add("restClient.loadBalancer.maxFailures", () -> "1");
+    }
+
+    private static WireMockServer instance() {
+        var server = new WireMockServer(options().dynamicPort().usingFilesUnderClasspath("."));
+        server.start();
+        server.stubFor(get(urlEqualTo("/v1/movieinfo/abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        server.stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+        return server;
+    }
+
+    private static int freePort() {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        INSTANCES.forEach(WireMockServer::stop);
+    }
+
+    @Test
+    void retrieveMovieById_SpreadOverInstances() {
+        //when
+        for (int i = 0; i < 20; i++) {
+            webTestClient.get()
+                    .uri("/v1/movies/{id}", "abc")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(Movie.class)
+                    .consumeWith(movieEntityExchangeResult -> {
+                                var movie = movieEntityExchangeResult.getResponseBody();
+                                assertEquals(2, movie.getReviewList().size());
+                                assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                            }
+                    );
+        }
+
+        //then
+        // the refusing instance was ejected, each call going to one of the stubs
+        var movieInfoCalls = 0;
+        for (WireMockServer instance : INSTANCES) {
+            var calls = instance.countRequestsMatching(getRequestedFor(urlEqualTo("/v1/movieinfo/abc")).build()).getCount();
+            assertTrue(calls > 0, "calls to " + instance.port() + " : " + calls);
+            movieInfoCalls += calls;
+        }
+        assertEquals(20, movieInfoCalls);
+    }
+}
@@ -0,0 +1,64 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+
+/**
+ * The movie info service knows no movie, and streams no creation while the tests run.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/movieinfo",
+        "restClient.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+})
+public class MoviesControllerNegativeCacheIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        stubFor(get(urlEqualTo("/v1/movieinfo/stream"))
+                .willReturn(aResponse()
+                        .withFixedDelay(10000)
+                        .withHeader("Content-Type", "application/x-ndjson")));
+        stubFor(get(urlEqualTo("/v1/movieinfo/unknown"))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+    }
+
+    @Test
+    void retrieveMovieById_404_Cached() {
+        //when
+        for (var view : new String[]{"", "?view=summary", "?stream=true"}) {
+            webTestClient.get()
+                    .uri("/v1/movies/unknown" + view)
+                    .exchange()
+                    .expectStatus().isNotFound()
+                    .expectBody(String.class)
+                    .isEqualTo("There is no MovieInfo available for the passed in Id : unknown");
+        }
+
+        //then
+        WireMock.verify(exactly(1), getRequestedFor(urlEqualTo("/v1/movieinfo/unknown")));
+    }
+}
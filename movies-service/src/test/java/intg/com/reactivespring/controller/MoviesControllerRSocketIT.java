@@ -0,0 +1,157 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieSummary;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The movies service answers the other services' RSocket routes itself, with the stubs below.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@Import(MoviesControllerRSocketIT.StubRSocketController.class)
+@TestPropertySource(properties = {
+        "spring.rsocket.server.port=7094",
+        "restClient.transport=rsocket",
+        "restClient.moviesInfoRSocketUrl=tcp://localhost:7094",
+        "restClient.reviewsRSocketUrl=tcp://localhost:7094",
+        // the stream below is endless, a miss would have it followed for good
+        "restClient.moviesInfo.negativeCache.enabled=false",
+})
+public class MoviesControllerRSocketIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    StubRSocketController stubRSocketController;
+
+    @Controller
+    static class StubRSocketController {
+
+        final AtomicLong firstMovieInfoStreamRequest = new AtomicLong();
+
+        @MessageMapping("movieinfo.{id}")
+        Mono<MovieInfo> getMovieInfoById(@DestinationVariable String id) {
+            if (!id.equals("abc")) {
+                return Mono.empty();
+            }
+            return Mono.just(new MovieInfo("abc", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"),
+                    LocalDate.parse("2005-06-15")));
+        }
+
+        @MessageMapping("movieinfo.stream")
+        Flux<MovieInfo> streamMovieInfo() {
+            return Flux.range(0, Integer.MAX_VALUE)
+                    .map(i -> new MovieInfo("id" + i, "Movie " + i, 2005, List.of("Christian Bale"), null))
+                    .doOnRequest(n -> firstMovieInfoStreamRequest.compareAndSet(0, n));
+        }
+
+        @MessageMapping("reviews.{movieInfoId}.{page}.{size}")
+        Flux<Review> getReviews(@DestinationVariable String movieInfoId, @DestinationVariable int page,
+                                @DestinationVariable int size) {
+            return Flux.just(new Review("1", 1L, "Awesome Movie", 9.0),
+                    new Review("2", 1L, "Excellent Movie", 8.0));
+        }
+
+        @MessageMapping("reviews.{movieInfoId}.stats")
+        Mono<ReviewStats> getReviewStats(@DestinationVariable String movieInfoId) {
+            return Mono.just(new ReviewStats(1L, 2, 8.5, 8.0, 9.0, Map.of("8", 1L, "9", 1L), 3));
+        }
+    }
+
+    @Test
+    void retrieveMovieById() {
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assertEquals(2, movie.getReviewList().size());
+                            assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                            // there is no ETag of the movie info over RSocket to derive one from
+                            assertNull(movieEntityExchangeResult.getResponseHeaders().getFirst(HttpHeaders.ETAG));
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieById_404() {
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", "def")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("There is no MovieInfo available for the passed in Id : def");
+    }
+
+    @Test
+    void retrieveMovieSummaryById() {
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieSummary.class)
+                .consumeWith(movieSummaryEntityExchangeResult -> {
+                            var movieSummary = movieSummaryEntityExchangeResult.getResponseBody();
+                            assertEquals("Batman Begins", movieSummary.getMovieInfo().getName());
+                            assertEquals(3, movieSummary.getReviewStats().getVersion());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieInfoStream_Backpressure() {
+        //when
+        var movieInfoStream = webTestClient.get()
+                .uri("/v1/movies/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoStream)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+
+        //then
+        // the demand of the HTTP response reached the stub over the wire, instead of an unbounded request
+        var firstRequest = stubRSocketController.firstMovieInfoStreamRequest.get();
+        assertTrue(firstRequest > 0 && firstRequest < Long.MAX_VALUE, "first request : " + firstRequest);
+    }
+}
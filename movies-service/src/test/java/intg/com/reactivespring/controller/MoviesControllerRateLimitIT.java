@@ -0,0 +1,112 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+/**
+ * The other services limit the rate of each client, and only count the calls of movies-service against the caller
+ * whose id they carry : the review service has used up the limit of one caller only.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/movieinfo",
+        "restClient.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+        // the test client stands for a gateway in front of movies-service
+        "clientId.trustedProxies=127.0.0.1,0:0:0:0:0:0:0:1",
+})
+public class MoviesControllerRateLimitIT {
+
+    @LocalServerPort
+    int port;
+
+    // over the network, for the requests to have a remote address
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + port)
+                .build();
+        WireMock.reset();
+        stubFor(get(urlEqualTo("/v1/movieinfo/abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(get(urlPathEqualTo("/v1/reviews/stats"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[{\"movieInfoId\":1,\"count\":2,\"min\":8.0,\"max\":9.0,\"histogram\":{\"8\":1,\"9\":1}}]")));
+        stubFor(get(urlPathEqualTo("/v1/reviews/stats"))
+                .withHeader("X-Client-Id", equalTo("bob"))
+                .willReturn(aResponse()
+                        .withStatus(429)
+                        .withHeader("Retry-After", "1")
+                        .withBody("Too Many Requests")));
+    }
+
+    @Test
+    void callsCarryTheIdOfTheCaller() {
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .header("X-Client-Id", "alice")
+                .exchange()
+                .expectStatus().isOk();
+
+        //then
+        verify(getRequestedFor(urlEqualTo("/v1/movieinfo/abc"))
+                .withHeader("X-Client-Id", equalTo("alice")));
+        verify(getRequestedFor(urlPathEqualTo("/v1/reviews/stats"))
+                .withHeader("X-Client-Id", equalTo("alice")));
+    }
+
+    @Test
+    void callerOverItsLimitGets429() {
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .header("X-Client-Id", "bob")
+                .exchange()
+                //then
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        // the limit of the other callers is untouched
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .header("X-Client-Id", "alice")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void callerWithoutAnIdIsItsAddress() {
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .exchange()
+                .expectStatus().isOk();
+
+        //then
+        verify(getRequestedFor(urlEqualTo("/v1/movieinfo/abc"))
+                .withHeader("X-Client-Id", equalTo("127.0.0.1")));
+    }
+}
@@ -0,0 +1,101 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.domain.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The streams of movie infos stay open, one lookup of a movie info at a time is allowed and none may wait.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/movieinfo",
+        "restClient.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+        "restClient.moviesInfo.maxConcurrentCalls=1",
+        "restClient.moviesInfo.maxQueuedCalls=0",
+})
+public class MoviesControllerStreamIsolationIT {
+
+    private static final int OPEN_STREAMS = 5;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @LocalServerPort
+    int port;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        stubFor(get(urlEqualTo("/v1/movieinfo/stream"))
+                .willReturn(aResponse()
+                        .withFixedDelay(5000)
+                        .withHeader("Content-Type", "application/x-ndjson")));
+        stubFor(get(urlEqualTo("/v1/movieinfo/abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+    }
+
+    @Test
+    void retrieveMovieById_WhileStreamsAreOpen() throws InterruptedException {
+        //given
+        var streams = new ArrayList<Disposable>();
+        for (int i = 0; i < OPEN_STREAMS; i++) {
+            streams.add(WebClient.create("http://localhost:" + port)
+                    .get()
+                    .uri("/v1/movies/stream")
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .retrieve()
+                    .bodyToFlux(String.class)
+                    .subscribe(movieInfo -> {
+                    }, ex -> {
+                    }));
+        }
+        for (int i = 0; i < 50 && WireMock.findAll(getRequestedFor(urlEqualTo("/v1/movieinfo/stream"))).size() < OPEN_STREAMS; i++) {
+            Thread.sleep(50);
+        }
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult ->
+                        assertEquals("Batman Begins", movieEntityExchangeResult.getResponseBody().getMovieInfo().getName()));
+
+        //then
+        assertEquals(OPEN_STREAMS, WireMock.findAll(getRequestedFor(urlEqualTo("/v1/movieinfo/stream"))).size());
+        streams.forEach(Disposable::dispose);
+    }
+}
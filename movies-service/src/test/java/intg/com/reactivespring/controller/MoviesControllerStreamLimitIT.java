@@ -0,0 +1,110 @@
+package com.reactivespring.controller;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The movie info service speaks h2c and its streams never end, two streams are allowed at once.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "restClient.http2.enabled=true",
+        "restClient.http2.maxConcurrentStreams=2",
+})
+public class MoviesControllerStreamLimitIT {
+
+    private static final int MAX_STREAMS = 2;
+
+    // whether each stream request received came as an HTTP/2 stream
+    private static final List<Boolean> streamRequests = new CopyOnWriteArrayList<>();
+
+    private static final DisposableServer moviesInfoService = HttpServer.create()
+            .port(0)
+            .protocol(HttpProtocol.H2C, HttpProtocol.HTTP11)
+            .route(routes -> routes.get("/v1/movieinfo/stream", (request, response) -> {
+                // the HTTP/2 frames are translated to HTTP/1.1 objects, with the id of their stream as a header
+                streamRequests.add(request.requestHeaders().contains("x-http2-stream-id"));
+                return response.header("Content-Type", MediaType.APPLICATION_NDJSON_VALUE)
+                        .sendString(Flux.concat(
+                                Flux.just("{\"movieInfoId\":\"abc\",\"name\":\"Batman Begins\",\"year\":2005}\n"),
+                                Flux.never()));
+            }))
+            .bindNow();
+
+    @DynamicPropertySource
+    static void downstreams(DynamicPropertyRegistry registry) {
+        registry.add("restClient.moviesInfoUrl", () -> "http://localhost:" + moviesInfoService.port() + "/v1/movieinfo");
+        registry.add("restClient.reviewsUrl", () -> "http://localhost:" + moviesInfoService.port() + "/v1/reviews");
+    }
+
+    @AfterAll
+    static void stopMoviesInfoService() {
+        moviesInfoService.disposeNow();
+    }
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void streamOverTheLimitFailsAtOnce() throws InterruptedException {
+        //given
+        var streams = new ArrayList<Disposable>();
+        for (int i = 0; i < MAX_STREAMS; i++) {
+            streams.add(WebClient.create("http://localhost:" + port)
+                    .get()
+                    .uri("/v1/movies/stream")
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .retrieve()
+                    .bodyToFlux(String.class)
+                    .subscribe(movieInfo -> {
+                    }, ex -> {
+                    }));
+        }
+        for (int i = 0; i < 100 && streamRequests.size() < MAX_STREAMS; i++) {
+            Thread.sleep(50);
+        }
+
+        //when
+        var start = System.nanoTime();
+        WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + port)
+                .responseTimeout(Duration.ofSeconds(10))
+                .build()
+                .get()
+                .uri("/v1/movies/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        //then
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(2)) < 0, "elapsed : " + elapsed);
+        assertEquals(MAX_STREAMS, streamRequests.size());
+        assertEquals(List.of(true, true), streamRequests);
+        streams.forEach(Disposable::dispose);
+    }
+}
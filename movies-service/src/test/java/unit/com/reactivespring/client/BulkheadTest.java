@@ -0,0 +1,94 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.BulkheadFullException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkheadTest {
+
+    private static final URI REVIEWS_URL = URI.create("http://localhost:8081/v1/reviews");
+
+    private final List<Sinks.One<ClientResponse>> exchanges = new ArrayList<>();
+
+    private Mono<ClientResponse> exchange(Bulkhead bulkhead) {
+        return bulkhead.filter(ClientRequest.create(HttpMethod.GET, REVIEWS_URL).build(), request -> {
+            Sinks.One<ClientResponse> response = Sinks.one();
+            exchanges.add(response);
+            return response.asMono();
+        });
+    }
+
+    @Test
+    void callsOverTheQueueFailAtOnce() {
+        //given
+        var bulkhead = new Bulkhead("reviews", 2, 1);
+        var errors = new ArrayList<Throwable>();
+
+        //when
+        for (int i = 0; i < 4; i++) {
+            exchange(bulkhead).subscribe(response -> response.releaseBody().subscribe(), errors::add);
+        }
+
+        //then
+        assertEquals(2, exchanges.size());
+        assertEquals(2, bulkhead.active());
+        assertEquals(1, bulkhead.queued());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof BulkheadFullException);
+
+        // the queued call takes the place of the first one to end
+        exchanges.get(0).tryEmitValue(ClientResponse.create(HttpStatus.OK).body("[]").build());
+        assertEquals(3, exchanges.size());
+        assertEquals(2, bulkhead.active());
+        assertEquals(0, bulkhead.queued());
+    }
+
+    @Test
+    void cancelledCallsLeaveTheQueue() {
+        //given
+        var bulkhead = new Bulkhead("reviews", 1, 1);
+        var inFlight = exchange(bulkhead).subscribe();
+        var waiting = exchange(bulkhead).subscribe();
+
+        //when
+        waiting.dispose();
+        inFlight.dispose();
+
+        //then
+        assertEquals(1, exchanges.size());
+        assertEquals(0, bulkhead.active());
+        assertEquals(0, bulkhead.queued());
+    }
+
+    @Test
+    void unreadResponsesReleaseTheirPermit() {
+        //given
+        var bulkhead = new Bulkhead("reviews", 1, 0);
+        var webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK).body("[]").build()))
+                .filter(bulkhead)
+                .build();
+
+        //when
+        webClient.get().uri(REVIEWS_URL).exchangeToMono(response -> Mono.just(response.statusCode())).block();
+        webClient.get().uri(REVIEWS_URL).retrieve().toBodilessEntity().block();
+        exchange(bulkhead).flatMap(ClientResponse::releaseBody).subscribe();
+        exchanges.get(0).tryEmitValue(ClientResponse.create(HttpStatus.OK).body("[]").build());
+
+        //then
+        assertEquals(0, bulkhead.active());
+    }
+}
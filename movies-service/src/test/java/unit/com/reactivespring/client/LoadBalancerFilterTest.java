@@ -0,0 +1,146 @@
+package com.reactivespring.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadBalancerFilterTest {
+
+    private static final URI REVIEWS_URL = URI.create("http://localhost:8081/v1/reviews?movieInfoId=1");
+    private static final URI INSTANCE_1 = URI.create("http://localhost:9081");
+    private static final URI INSTANCE_2 = URI.create("http://localhost:9082");
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final List<URI> urls = new ArrayList<>();
+    private final List<Sinks.One<ClientResponse>> exchanges = new ArrayList<>();
+
+    private Mono<ClientResponse> exchange(LoadBalancerFilter loadBalancerFilter, URI url) {
+        return loadBalancerFilter.filter(ClientRequest.create(HttpMethod.GET, url).build(), request -> {
+            urls.add(request.url());
+            Sinks.One<ClientResponse> response = Sinks.one();
+            exchanges.add(response);
+            return response.asMono();
+        });
+    }
+
+    private static ClientResponse response(HttpStatus status) {
+        return ClientResponse.create(status).body("[]").build();
+    }
+
+    @Test
+    void requestsGoToTheInstanceWithFewerInFlight() {
+        //given
+        var loadBalancerFilter = new LoadBalancerFilter(3, Duration.ofSeconds(30), nanoTime::get)
+                .instances(REVIEWS_URL, List.of(INSTANCE_1, INSTANCE_2));
+
+        //when
+        exchange(loadBalancerFilter, REVIEWS_URL).subscribe(response -> response.releaseBody().subscribe());
+        exchange(loadBalancerFilter, REVIEWS_URL).subscribe(response -> response.releaseBody().subscribe());
+
+        //then
+        assertEquals(1, loadBalancerFilter.outstanding(INSTANCE_1));
+        assertEquals(1, loadBalancerFilter.outstanding(INSTANCE_2));
+        assertEquals("/v1/reviews", urls.get(0).getPath());
+        assertEquals("movieInfoId=1", urls.get(0).getQuery());
+
+        // the instance whose body has been read takes the next request
+        var released = urls.get(0).getPort();
+        exchanges.get(0).tryEmitValue(response(HttpStatus.OK));
+        exchange(loadBalancerFilter, REVIEWS_URL).subscribe();
+        assertEquals(released, urls.get(2).getPort());
+    }
+
+    @Test
+    void failingInstanceIsEjectedThenTriedAgain() {
+        //given
+        var loadBalancerFilter = new LoadBalancerFilter(2, Duration.ofSeconds(30), nanoTime::get)
+                .instances(REVIEWS_URL, List.of(INSTANCE_1, INSTANCE_2));
+
+        //when
+        for (int i = 0; i < 64 && !loadBalancerFilter.isEjected(INSTANCE_1); i++) {
+            exchange(loadBalancerFilter, REVIEWS_URL).subscribe(response -> response.releaseBody().subscribe());
+            var last = exchanges.size() - 1;
+            var status = urls.get(last).getPort() == INSTANCE_1.getPort() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK;
+            exchanges.get(last).tryEmitValue(response(status));
+        }
+
+        //then
+        assertTrue(loadBalancerFilter.isEjected(INSTANCE_1));
+        for (int i = 0; i < 4; i++) {
+            exchange(loadBalancerFilter, REVIEWS_URL).subscribe();
+            assertEquals(INSTANCE_2.getPort(), urls.get(urls.size() - 1).getPort());
+        }
+
+        nanoTime.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertFalse(loadBalancerFilter.isEjected(INSTANCE_1));
+        exchange(loadBalancerFilter, REVIEWS_URL).subscribe();
+        assertEquals(INSTANCE_1.getPort(), urls.get(urls.size() - 1).getPort());
+    }
+
+    @Test
+    void connectionErrorIsRetriedOnAnotherInstance() {
+        //given
+        var loadBalancerFilter = new LoadBalancerFilter(3, Duration.ofSeconds(30), nanoTime::get)
+                .instances(REVIEWS_URL, List.of(INSTANCE_1, INSTANCE_2));
+        var statuses = new ArrayList<HttpStatus>();
+        exchange(loadBalancerFilter, REVIEWS_URL).subscribe(response -> statuses.add(response.statusCode()));
+
+        //when
+        exchanges.get(0).tryEmitError(new IllegalStateException("Connection refused"));
+
+        //then
+        assertEquals(2, urls.size());
+        assertTrue(urls.get(0).getPort() != urls.get(1).getPort());
+        exchanges.get(1).tryEmitValue(response(HttpStatus.OK));
+        assertEquals(List.of(HttpStatus.OK), statuses);
+    }
+
+    @Test
+    void otherDownstreamsAreLeftAlone() {
+        //given
+        var loadBalancerFilter = new LoadBalancerFilter(3, Duration.ofSeconds(30), nanoTime::get)
+                .instances(REVIEWS_URL, List.of(INSTANCE_1, INSTANCE_2));
+        var movieInfoUrl = URI.create("http://localhost:8080/v1/movieinfo/1");
+
+        //when
+        exchange(loadBalancerFilter, movieInfoUrl).subscribe();
+
+        //then
+        assertEquals(List.of(movieInfoUrl), urls);
+    }
+
+    @Test
+    void unbalancedRequestsAreSentAsTheyAre() {
+        //given
+        var loadBalancerFilter = new LoadBalancerFilter(3, Duration.ofSeconds(30), nanoTime::get)
+                .instances(REVIEWS_URL, List.of(INSTANCE_1, INSTANCE_2));
+        var request = ClientRequest.create(HttpMethod.GET, REVIEWS_URL)
+                .attribute(LoadBalancerFilter.UNBALANCED, true)
+                .build();
+
+        //when
+        loadBalancerFilter.filter(request, unbalanced -> {
+            urls.add(unbalanced.url());
+            return Mono.empty();
+        }).subscribe();
+
+        //then
+        assertEquals(List.of(REVIEWS_URL), urls);
+        assertEquals(0, loadBalancerFilter.outstanding(INSTANCE_1));
+        assertEquals(0, loadBalancerFilter.outstanding(INSTANCE_2));
+    }
+}
@@ -0,0 +1,104 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NegativeCachingMoviesInfoClientTest {
+
+    private final MoviesInfoClient moviesInfoClient = mock(MoviesInfoClient.class);
+    private final Sinks.Many<MovieInfo> creations = Sinks.many().multicast().directBestEffort();
+    private final AtomicLong now = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        when(moviesInfoClient.retrieveMovieInfo(anyString()))
+                .thenAnswer(invocation -> Mono.error(new MoviesInfoClientException("MovieNotFound", 404)));
+        when(moviesInfoClient.retrieveMovieInfoStream()).thenReturn(creations.asFlux());
+    }
+
+    @Test
+    void missesAreAnsweredWithoutACallUntilTheyExpire() {
+        //given
+        var negativeCachingMoviesInfoClient = new NegativeCachingMoviesInfoClient(moviesInfoClient, List.of(moviesInfoClient::retrieveMovieInfoStream), Duration.ofSeconds(10), 100, now::get);
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(negativeCachingMoviesInfoClient.retrieveMovieInfo("abc"))
+                    .expectErrorMatches(ex -> ex instanceof MoviesInfoClientException
+                            && ((MoviesInfoClientException) ex).getStatusCode() == 404)
+                    .verify();
+        }
+
+        //then
+        verify(moviesInfoClient, times(1)).retrieveMovieInfo("abc");
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertFalse(negativeCachingMoviesInfoClient.isMissing("abc"));
+    }
+
+    @Test
+    void creationForgetsTheMiss() {
+        //given
+        var negativeCachingMoviesInfoClient = new NegativeCachingMoviesInfoClient(moviesInfoClient, List.of(moviesInfoClient::retrieveMovieInfoStream), Duration.ofSeconds(10), 100, now::get);
+        negativeCachingMoviesInfoClient.retrieveMovieInfo("abc").onErrorResume(ex -> Mono.empty()).block();
+        negativeCachingMoviesInfoClient.retrieveMovieInfo("def").onErrorResume(ex -> Mono.empty()).block();
+
+        //when
+        creations.tryEmitNext(new MovieInfo("abc", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")));
+
+        //then
+        assertFalse(negativeCachingMoviesInfoClient.isMissing("abc"));
+        assertTrue(negativeCachingMoviesInfoClient.isMissing("def"));
+        // the stream is followed once for all the misses
+        verify(moviesInfoClient, times(1)).retrieveMovieInfoStream();
+    }
+
+    @Test
+    void oldestMissesGoFirstOverMaxSize() {
+        //given
+        var negativeCachingMoviesInfoClient = new NegativeCachingMoviesInfoClient(moviesInfoClient, List.of(moviesInfoClient::retrieveMovieInfoStream), Duration.ofSeconds(10), 2, now::get);
+
+        //when
+        for (var movieId : List.of("a", "b", "c")) {
+            negativeCachingMoviesInfoClient.retrieveMovieInfo(movieId).onErrorResume(ex -> Mono.empty()).block();
+        }
+
+        //then
+        assertEquals(2, negativeCachingMoviesInfoClient.size());
+        assertFalse(negativeCachingMoviesInfoClient.isMissing("a"));
+        assertTrue(negativeCachingMoviesInfoClient.isMissing("c"));
+    }
+
+    @Test
+    void creationOnAnyInstanceForgetsTheMiss() {
+        //given
+        Sinks.Many<MovieInfo> otherInstanceCreations = Sinks.many().multicast().directBestEffort();
+        var negativeCachingMoviesInfoClient = new NegativeCachingMoviesInfoClient(moviesInfoClient,
+                List.of(creations::asFlux, otherInstanceCreations::asFlux), Duration.ofSeconds(10), 100, now::get);
+        negativeCachingMoviesInfoClient.retrieveMovieInfo("abc").onErrorResume(ex -> Mono.empty()).block();
+
+        //when
+        otherInstanceCreations.tryEmitNext(new MovieInfo("abc", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")));
+
+        //then
+        assertFalse(negativeCachingMoviesInfoClient.isMissing("abc"));
+    }
+}
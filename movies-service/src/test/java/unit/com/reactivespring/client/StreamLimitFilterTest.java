@@ -0,0 +1,121 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.BulkheadFullException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StreamLimitFilterTest {
+
+    private static final URI REVIEWS_URL = URI.create("http://localhost:8081/v1/reviews");
+    private static final URI MOVIE_INFO_URL = URI.create("http://localhost:8080/v1/movieinfo/1");
+
+    private final List<Sinks.One<ClientResponse>> exchanges = new ArrayList<>();
+
+    private Mono<ClientResponse> exchange(StreamLimitFilter streamLimitFilter, URI url) {
+        return streamLimitFilter.filter(ClientRequest.create(HttpMethod.GET, url).build(), request -> {
+            Sinks.One<ClientResponse> response = Sinks.one();
+            exchanges.add(response);
+            return response.asMono();
+        });
+    }
+
+    private static ClientResponse response() {
+        return ClientResponse.create(HttpStatus.OK).body("[]").build();
+    }
+
+    @Test
+    void streamsOverTheLimitWaitForABodyToBeRead() {
+        //given
+        var streamLimitFilter = new StreamLimitFilter("reviews", 2, Integer.MAX_VALUE);
+        var bodies = new ArrayList<String>();
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            exchange(streamLimitFilter, REVIEWS_URL)
+                    .flatMap(response -> response.bodyToMono(String.class))
+                    .subscribe(bodies::add);
+        }
+
+        //then
+        assertEquals(2, exchanges.size());
+        assertEquals(2, streamLimitFilter.active(REVIEWS_URL));
+        assertEquals(1, streamLimitFilter.pending(REVIEWS_URL));
+
+        exchanges.get(0).tryEmitValue(response());
+        assertEquals(List.of("[]"), bodies);
+        assertEquals(3, exchanges.size());
+        assertEquals(2, streamLimitFilter.active(REVIEWS_URL));
+        assertEquals(0, streamLimitFilter.pending(REVIEWS_URL));
+
+        exchanges.get(1).tryEmitValue(response());
+        exchanges.get(2).tryEmitValue(response());
+        assertEquals(3, bodies.size());
+        assertEquals(0, streamLimitFilter.active(REVIEWS_URL));
+    }
+
+    @Test
+    void streamsOverTheLimitFailWithoutAQueue() {
+        //given
+        var streamLimitFilter = new StreamLimitFilter("moviesInfoStream", 1, 0);
+        exchange(streamLimitFilter, MOVIE_INFO_URL).subscribe();
+
+        //when
+        var overTheLimit = exchange(streamLimitFilter, MOVIE_INFO_URL);
+
+        //then
+        assertThrows(BulkheadFullException.class, overTheLimit::block);
+        assertEquals(1, exchanges.size());
+        assertEquals(0, streamLimitFilter.pending(MOVIE_INFO_URL));
+    }
+
+    @Test
+    void downstreamsAreLimitedSeparately() {
+        //given
+        var streamLimitFilter = new StreamLimitFilter("reviews", 1, Integer.MAX_VALUE);
+
+        //when
+        exchange(streamLimitFilter, REVIEWS_URL).subscribe();
+        exchange(streamLimitFilter, MOVIE_INFO_URL).subscribe();
+
+        //then
+        assertEquals(2, exchanges.size());
+        assertEquals(1, streamLimitFilter.active(REVIEWS_URL));
+        assertEquals(1, streamLimitFilter.active(MOVIE_INFO_URL));
+    }
+
+    @Test
+    void failedAndCancelledRequestsReleaseTheirStream() {
+        //given
+        var streamLimitFilter = new StreamLimitFilter("reviews", 1, Integer.MAX_VALUE);
+        exchange(streamLimitFilter, REVIEWS_URL).subscribe(response -> {
+        }, ex -> {
+        });
+        var waiting = exchange(streamLimitFilter, REVIEWS_URL).subscribe();
+        var inFlight = exchange(streamLimitFilter, REVIEWS_URL).subscribe();
+        assertEquals(2, streamLimitFilter.pending(REVIEWS_URL));
+
+        //when
+        waiting.dispose();
+        exchanges.get(0).tryEmitError(new IllegalStateException("connection reset"));
+
+        //then
+        assertEquals(2, exchanges.size());
+        assertEquals(1, streamLimitFilter.active(REVIEWS_URL));
+        assertEquals(0, streamLimitFilter.pending(REVIEWS_URL));
+
+        inFlight.dispose();
+        assertEquals(0, streamLimitFilter.active(REVIEWS_URL));
+    }
+}
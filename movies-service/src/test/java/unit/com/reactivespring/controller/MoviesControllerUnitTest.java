@@ -4,23 +4,36 @@ import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieSummary;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.exception.ReviewsServerException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesController.class)
@@ -36,6 +49,10 @@ public class MoviesControllerUnitTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @BeforeEach
+    void setUp() {
+        when(reviewsRestClient.retrieveReviewStats(anyString())).thenReturn(Mono.empty());
+    }
 
     @Test
     void retrieveMovieById() {
@@ -46,11 +63,11 @@ public class MoviesControllerUnitTest {
                 new Review(null, 2L, "Excellent Movie", 8.0));
 
         var movieId = "abc";
-        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
-                .thenReturn(Mono.just(new MovieInfo(movieId, "Batman Begins",
-                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))));
 
-        when(reviewsRestClient.retrieveReviews(anyString()))
+        when(reviewsRestClient.retrieveReviews(anyString(), anyInt(), anyInt()))
                 .thenReturn(Flux.fromIterable(reviewList));
 
         //when
@@ -58,6 +75,8 @@ public class MoviesControllerUnitTest {
                 .uri("/v1/movies/{id}", "abc")
                 .exchange()
                 .expectStatus().isOk()
+                // the last page
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
                 .expectBody(Movie.class)
                 .consumeWith(movieEntityExchangeResult -> {
                             var movie = movieEntityExchangeResult.getResponseBody();
@@ -76,10 +95,10 @@ public class MoviesControllerUnitTest {
                 new Review(null, 1L, "Awesome Movie1", 9.0),
                 new Review(null, 2L, "Excellent Movie", 8.0));
 
-        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
                 .thenReturn(Mono.error(new MoviesInfoClientException("MovieNotFound", 404)));
 
-        when(reviewsRestClient.retrieveReviews(anyString()))
+        when(reviewsRestClient.retrieveReviews(anyString(), anyInt(), anyInt()))
                 .thenReturn(Flux.fromIterable(reviewList));
 
         //when
@@ -105,10 +124,10 @@ public class MoviesControllerUnitTest {
                 new Review(null, 2L, "Excellent Movie", 8.0));
 
         var errorMsg = "Service Unavailable";
-        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
                 .thenReturn(Mono.error(new MoviesInfoServerException(errorMsg)));
 
-        when(reviewsRestClient.retrieveReviews(anyString()))
+        when(reviewsRestClient.retrieveReviews(anyString(), anyInt(), anyInt()))
                 .thenReturn(Flux.fromIterable(reviewList));
 
         //when
@@ -124,5 +143,234 @@ public class MoviesControllerUnitTest {
                 );
     }
 
+    @Test
+    void retrieveMovieById_Paged() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))));
+
+        when(reviewsRestClient.retrieveReviews(anyString(), eq(2), eq(1)))
+                .thenReturn(Flux.just(new Review(null, 1L, "Excellent Movie", 8.0)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?page=2&size=1", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.LINK, link -> assertTrue(link.endsWith("/v1/movies/abc?page=3&size=1>; rel=\"next\""), link))
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assertEquals(1, movie.getReviewList().size());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieById_NextPageKeepsTheQuery() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))));
+
+        when(reviewsRestClient.retrieveReviews(anyString(), eq(0), eq(2)))
+                .thenReturn(Flux.just(new Review(null, 1L, "Excellent Movie", 8.0), new Review(null, 1L, "Awesome Movie", 9.0)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?size=2&lang=en", "abc")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.LINK, link -> assertTrue(link.endsWith("/v1/movies/abc?lang=en&page=1&size=2>; rel=\"next\""), link));
+    }
+
+    @Test
+    void retrieveMovieById_NotModified() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok().eTag("\"info\"").body(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))));
+        when(reviewsRestClient.retrieveReviewStats(anyString()))
+                .thenReturn(Mono.just(new ReviewStats(1L, 1, 8.0, 8.0, 8.0, Map.of("8", 1L), 3)));
+        when(reviewsRestClient.retrieveReviews(anyString(), anyInt(), anyInt()))
+                .thenReturn(Flux.just(new Review(null, 1L, "Excellent Movie", 8.0)));
+
+        //when
+        var etag = webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Movie.class)
+                .getResponseHeaders()
+                .getETag();
+
+        //then
+        assertNotNull(etag);
+        assertEquals("\"info.3.0.100\"", etag);
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        // the revalidation needed neither the reviews nor their serialization
+        verify(reviewsRestClient, times(1)).retrieveReviews(anyString(), anyInt(), anyInt());
+
+        // a review edited, the stats version bumped
+        when(reviewsRestClient.retrieveReviewStats(anyString()))
+                .thenReturn(Mono.just(new ReviewStats(1L, 1, 8.0, 8.0, 8.0, Map.of("8", 1L), 4)));
+        when(reviewsRestClient.retrieveReviews(anyString(), anyInt(), anyInt()))
+                .thenReturn(Flux.just(new Review(null, 1L, "Excellent Movie, edited", 8.0)));
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"info.4.0.100\"")
+                .expectBody(Movie.class)
+                .value(movie -> assertEquals("Excellent Movie, edited", movie.getReviewList().get(0).getComment()));
+    }
+
+    @Test
+    void retrieveMovieById_NoStats() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok().eTag("\"info\"").body(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))));
+        when(reviewsRestClient.retrieveReviewStats(anyString()))
+                .thenReturn(Mono.error(new ReviewsServerException("Server Exception in ReviewsService")));
+        when(reviewsRestClient.retrieveReviews(anyString(), anyInt(), anyInt()))
+                .thenReturn(Flux.just(new Review(null, 1L, "Excellent Movie", 8.0)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.ETAG)
+                .expectBody(Movie.class)
+                .value(movie -> assertEquals(1, movie.getReviewList().size()));
+    }
+
+    @Test
+    void retrieveMovieSummaryById() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))));
+
+        when(reviewsRestClient.retrieveReviewStats(anyString()))
+                .thenReturn(Mono.just(new ReviewStats(1L, 2, 8.5, 8.0, 9.0, Map.of("8", 1L, "9", 1L), 0)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieSummary.class)
+                .consumeWith(movieSummaryEntityExchangeResult -> {
+                            var movieSummary = movieSummaryEntityExchangeResult.getResponseBody();
+                            assertEquals("Batman Begins", movieSummary.getMovieInfo().getName());
+                            assertEquals(2, movieSummary.getReviewStats().getCount());
+                            assertEquals(8.5, movieSummary.getReviewStats().getAverage());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieSummaryById_StreamIgnored() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfoEntity(anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))));
 
+        when(reviewsRestClient.retrieveReviewStats(anyString()))
+                .thenReturn(Mono.just(new ReviewStats(1L, 2, 8.5, 8.0, 9.0, Map.of("8", 1L, "9", 1L), 0)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary&stream=true", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieSummary.class)
+                .value(movieSummary -> assertEquals(2, movieSummary.getReviewStats().getCount()));
+    }
+
+    @Test
+    void retrieveMovieById_Streamed() {
+
+        var reviewList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review(null, 2L, "Excellent Movie", 8.0));
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+                .thenReturn(Mono.just(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        when(reviewsRestClient.retrieveReviews(anyString()))
+                .thenReturn(Flux.fromIterable(reviewList));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?stream=true", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assertEquals(3, movie.getReviewList().size());
+                            assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieById_Streamed_NoReviews() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+                .thenReturn(Mono.just(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        when(reviewsRestClient.retrieveReviews(anyString()))
+                .thenReturn(Flux.empty());
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?stream=true", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assertEquals(0, movie.getReviewList().size());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieById_Streamed_404() {
+
+        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+                .thenReturn(Mono.error(new MoviesInfoClientException("MovieNotFound", 404)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?stream=true", "abc")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("MovieNotFound");
+    }
 }
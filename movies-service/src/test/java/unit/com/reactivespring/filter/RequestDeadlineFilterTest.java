@@ -0,0 +1,59 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.util.Deadline;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestDeadlineFilterTest {
+
+    private final RequestDeadlineFilter requestDeadlineFilter =
+            new RequestDeadlineFilter(Duration.ofSeconds(5), Duration.ofSeconds(30));
+
+    @Test
+    void defaultDeadline() {
+        //when
+        var deadline = deadlineOf(MockServerHttpRequest.get("/v1/movies/abc"));
+
+        //then
+        assertTrue(deadline.isPresent());
+        assertTrue(deadline.get().remaining().compareTo(Duration.ofSeconds(5)) <= 0);
+    }
+
+    @Test
+    void streamedViewHasNoDefaultDeadline() {
+        //when
+        var deadline = deadlineOf(MockServerHttpRequest.get("/v1/movies/abc?stream=true"));
+
+        //then
+        assertTrue(deadline.isEmpty());
+    }
+
+    @Test
+    void streamedViewAskingForADeadline() {
+        //when
+        var deadline = deadlineOf(MockServerHttpRequest.get("/v1/movies/abc?stream=true")
+                .header(Deadline.TIMEOUT_HEADER, "60000"));
+
+        //then
+        // capped at maxTimeout
+        assertTrue(deadline.isPresent());
+        assertTrue(deadline.get().remaining().compareTo(Duration.ofSeconds(30)) <= 0);
+    }
+
+    private Optional<Deadline> deadlineOf(MockServerHttpRequest.BaseBuilder<?> request) {
+        var deadline = new AtomicReference<Optional<Deadline>>();
+        requestDeadlineFilter.filter(MockServerWebExchange.from(request), exchange -> Mono.deferContextual(context -> {
+            deadline.set(context.getOrEmpty(Deadline.class));
+            return Mono.<Void>empty();
+        })).block();
+        return deadline.get();
+    }
+}
@@ -0,0 +1,79 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewsServerException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RetryUtilTest {
+
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    @Test
+    void retriedUntilTheFirstElement() {
+        //given
+        // fails twice before emitting anything, then succeeds
+        var reviews = Flux.defer(() -> subscriptions.incrementAndGet() <= 2
+                ? Flux.<Review>error(new ReviewsServerException("Service Unavailable"))
+                : Flux.just(review("a"), review("b")));
+
+        //when
+        StepVerifier.withVirtualTime(() -> reviews.transform(RetryUtil::retryBeforeFirstElement))
+                .thenAwait(Duration.ofSeconds(2))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        //then
+        assertEquals(3, subscriptions.get());
+    }
+
+    @Test
+    void notRetriedOnceAnElementWasSent() {
+        //given
+        // the first subscription fails after the first review, a second one would send it again
+        var reviews = Flux.defer(() -> subscriptions.incrementAndGet() == 1
+                ? Flux.concat(Flux.just(review("a")), Flux.error(new ReviewsServerException("Service Unavailable")))
+                : Flux.just(review("a"), review("b")));
+
+        //when
+        StepVerifier.withVirtualTime(() -> reviews.transform(RetryUtil::retryBeforeFirstElement))
+                .expectNextMatches(review -> review.getReviewId().equals("a"))
+                .thenAwait(Duration.ofSeconds(3))
+                .verifyError(ReviewsServerException.class);
+
+        //then
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void eachSubscriptionMayRetry() {
+        //given
+        var reviews = Flux.defer(() -> subscriptions.incrementAndGet() % 2 == 1
+                ? Flux.<Review>error(new ReviewsServerException("Service Unavailable"))
+                : Flux.just(review("a")))
+                .transform(RetryUtil::retryBeforeFirstElement);
+
+        //when
+        StepVerifier.withVirtualTime(() -> reviews)
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.withVirtualTime(() -> reviews)
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        //then
+        assertEquals(4, subscriptions.get());
+    }
+
+    private static Review review(String reviewId) {
+        return new Review(reviewId, 1L, "Awesome Movie", 9.0);
+    }
+}